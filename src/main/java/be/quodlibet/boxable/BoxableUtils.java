@@ -25,6 +25,6 @@ public class BoxableUtils {
 	 */
 	@Deprecated
 	public static final PDType0Font loadFont(PDDocument document, String fontPath) throws IOException {
-		return PDType0Font.load(document, BoxableUtils.class.getClassLoader().getResourceAsStream(fontPath));
+		return FontUtils.getTrueTypeFontCache().load(document, fontPath);
 	}
 }
@@ -14,12 +14,12 @@ import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
 
+import be.quodlibet.boxable.layout.CellLayout;
 import be.quodlibet.boxable.line.LineStyle;
+import be.quodlibet.boxable.text.Token;
 import be.quodlibet.boxable.text.WrappingFunction;
-import be.quodlibet.boxable.utils.FontUtils;
-import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import be.quodlibet.boxable.utils.FontContext;
 
 public class Cell<T extends PDPage> {
 
@@ -29,35 +29,19 @@ public class Cell<T extends PDPage> {
 
 	private URL url = null;
 
-	private PDFont font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
-	private PDFont fontBold = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
+	// fonts, colors, paddings, borders and alignment, shared with the other
+	// cells of the table which look the same
+	private CellStyle style;
 
-	private float fontSize = 8;
-	private Color fillColor;
-	private Color textColor = Color.BLACK;
 	private final Row<T> row;
 	private WrappingFunction wrappingFunction;
 	private boolean isHeaderCell = false;
 	private boolean isColspanCell = false;
 
-	// default padding
-	private float leftPadding = 5f;
-	private float rightPadding = 5f;
-	private float topPadding = 5f;
-	private float bottomPadding = 5f;
-
-	// default border
-	private LineStyle leftBorderStyle = new LineStyle(Color.BLACK, 1);
-	private LineStyle rightBorderStyle = new LineStyle(Color.BLACK, 1);
-	private LineStyle topBorderStyle = new LineStyle(Color.BLACK, 1);
-	private LineStyle bottomBorderStyle = new LineStyle(Color.BLACK, 1);
-
 	private Paragraph paragraph = null;
 	private float lineSpacing = 1;
 	private boolean textRotated = false;
-
-	private HorizontalAlignment align;
-	private VerticalAlignment valign;
+	private boolean noWrap;
 
 	float horizontalFreeSpace = 0;
 	float verticalFreeSpace = 0;
@@ -116,15 +100,11 @@ public class Cell<T extends PDPage> {
 			throw new IllegalArgumentException(
 					"Cell Width=" + getWidth() + " can't be bigger than row width=" + row.getWidth());
 		}
-		//check if we have new default font
-		if(!FontUtils.getDefaultfonts().isEmpty()){
-			font = FontUtils.getDefaultfonts().get("font");
-			fontBold = FontUtils.getDefaultfonts().get("fontBold");
-		}
+		// the default style uses the default fonts if there are any
+		this.style = row.shareCellStyle(row.getDefaultCellStyle().withAlign(align).withValign(valign));
 		this.text = text == null ? "" : text;
-		this.align = align;
-		this.valign = valign;
 		this.wrappingFunction = null;
+		this.noWrap = row.isNoWrap();
 	}
 
 	/**
@@ -135,7 +115,7 @@ public class Cell<T extends PDPage> {
 	 * @return {@link Color} of the cell's text
 	 */
 	public Color getTextColor() {
-		return textColor;
+		return style.getTextColor();
 	}
 
 	/**
@@ -147,7 +127,7 @@ public class Cell<T extends PDPage> {
 	 *            designated text {@link Color}
 	 */
 	public void setTextColor(Color textColor) {
-		this.textColor = textColor;
+		setSharedStyle(style.withTextColor(textColor));
 	}
 
 	/**
@@ -158,7 +138,7 @@ public class Cell<T extends PDPage> {
 	 * @return Fill {@link Color} for the cell
 	 */
 	public Color getFillColor() {
-		return fillColor;
+		return style.getFillColor();
 	}
 
 	/**
@@ -170,7 +150,7 @@ public class Cell<T extends PDPage> {
 	 *            Fill {@link Color} for the cell
 	 */
 	public void setFillColor(Color fillColor) {
-		this.fillColor = fillColor;
+		setSharedStyle(style.withFillColor(fillColor));
 	}
 
 	/**
@@ -192,8 +172,8 @@ public class Cell<T extends PDPage> {
 	 */
 	public float getInnerWidth() {
 		return getWidth() - getLeftPadding() - getRightPadding()
-				- (leftBorderStyle == null ? 0 : leftBorderStyle.getWidth())
-				- (rightBorderStyle == null ? 0 : rightBorderStyle.getWidth());
+				- (getLeftBorder() == null ? 0 : getLeftBorder().getWidth())
+				- (getRightBorder() == null ? 0 : getRightBorder().getWidth());
 	}
 
 	/**
@@ -204,8 +184,8 @@ public class Cell<T extends PDPage> {
 	 */
 	public float getInnerHeight() {
 		return getHeight() - getBottomPadding() - getTopPadding()
-				- (topBorderStyle == null ? 0 : topBorderStyle.getWidth())
-				- (bottomBorderStyle == null ? 0 : bottomBorderStyle.getWidth());
+				- (getTopBorder() == null ? 0 : getTopBorder().getWidth())
+				- (getBottomBorder() == null ? 0 : getBottomBorder().getWidth());
 	}
 
 	/**
@@ -232,6 +212,7 @@ public class Cell<T extends PDPage> {
 
 		// paragraph invalidated
 		paragraph = null;
+		row.invalidateLayout();
 	}
 
 	/**
@@ -244,13 +225,13 @@ public class Cell<T extends PDPage> {
 	 *             if <code>font</code> is not set.
 	 */
 	public PDFont getFont() {
-		if (font == null) {
+		if (style.getFont() == null) {
 			throw new IllegalArgumentException("Font not set.");
 		}
 		if (isHeaderCell) {
-			return fontBold;
+			return style.getFontBold();
 		} else {
-			return font;
+			return style.getFont();
 		}
 	}
 
@@ -263,10 +244,11 @@ public class Cell<T extends PDPage> {
 	 *            {@link PDFont} for current cell
 	 */
 	public void setFont(PDFont font) {
-		this.font = font;
+		setSharedStyle(style.withFont(font));
 
 		// paragraph invalidated
 		paragraph = null;
+		row.invalidateLayout();
 	}
 
 	/**
@@ -277,7 +259,7 @@ public class Cell<T extends PDPage> {
 	 * @return {@link PDFont} size for current cell (in points).
 	 */
 	public float getFontSize() {
-		return fontSize;
+		return style.getFontSize();
 	}
 
 	/**
@@ -289,10 +271,11 @@ public class Cell<T extends PDPage> {
 	 *            {@link PDFont} size for current cell (in points).
 	 */
 	public void setFontSize(float fontSize) {
-		this.fontSize = fontSize;
+		setSharedStyle(style.withFontSize(fontSize));
 
 		// paragraph invalidated
 		paragraph = null;
+		row.invalidateLayout();
 	}
 
 	/**
@@ -311,24 +294,10 @@ public class Cell<T extends PDPage> {
 	 */
 	public Paragraph getParagraph() {
 		if (paragraph == null) {
-			// if it is header cell then use font bold
-			if (isHeaderCell) {
-				if (isTextRotated()) {
-					paragraph = new Paragraph(text, fontBold, fontSize, getInnerHeight(), align, textColor, null,
-							wrappingFunction, lineSpacing);
-				} else {
-					paragraph = new Paragraph(text, fontBold, fontSize, getInnerWidth(), align, textColor, null,
-							wrappingFunction, lineSpacing);
-				}
-			} else {
-				if (isTextRotated()) {
-					paragraph = new Paragraph(text, font, fontSize, getInnerHeight(), align, textColor, null,
-							wrappingFunction, lineSpacing);
-				} else {
-					paragraph = new Paragraph(text, font, fontSize, getInnerWidth(), align, textColor, null,
-							wrappingFunction, lineSpacing);
-				}
-			}
+			final float paragraphWidth = isTextRotated() ? getInnerHeight() : getInnerWidth();
+			paragraph = new Paragraph(text, getParagraphFont(), getFontSize(), paragraphWidth, getAlign(),
+					getTextColor(), null, wrappingFunction, lineSpacing, getFontContext());
+			paragraph.setNoWrap(isNoWrap());
 		}
 		return paragraph;
 	}
@@ -373,10 +342,18 @@ public class Cell<T extends PDPage> {
 			return height;
 		}
 
+		if (isNoWrap() && !isTextRotated()) {
+			// a single line, so the height is known from the font metrics
+			// without laying out the text
+			return getFontContext().getHeight(getParagraphFont(), getFontSize()) + getTopPadding()
+					+ getBottomPadding() + (getTopBorder() == null ? 0 : getTopBorder().getWidth())
+					+ (getBottomBorder() == null ? 0 : getBottomBorder().getWidth());
+		}
+
 		if (isTextRotated()) {
 			try {
 				// TODO: maybe find more optimal way then this
-				return getFont().getStringWidth(getText()) / 1000 * getFontSize() + getTopPadding()
+				return getFontContext().getStringWidth(getFont(), getText()) / 1000 * getFontSize() + getTopPadding()
 						+ (getTopBorder() == null ? 0 : getTopBorder().getWidth()) + getBottomPadding()
 						+ (getBottomBorder() == null ? 0 : getBottomBorder().getWidth());
 			} catch (final IOException e) {
@@ -399,6 +376,7 @@ public class Cell<T extends PDPage> {
 	 */
 	public void setHeight(final Float height) {
 		this.height = height;
+		row.invalidateLayout();
 	}
 
 	/**
@@ -409,7 +387,10 @@ public class Cell<T extends PDPage> {
 	 * @return {@link Paragraph}'s height
 	 */
 	public float getTextHeight() {
-		return getParagraph().getHeight();
+		final Paragraph paragraph = getParagraph();
+		// the lines are needed to draw the cell, so even a large text is wrapped only once
+		paragraph.getLines();
+		return paragraph.getHeight();
 	}
 
 	/**
@@ -431,7 +412,7 @@ public class Cell<T extends PDPage> {
 	 * @return Cell's left padding (in points).
 	 */
 	public float getLeftPadding() {
-		return leftPadding;
+		return style.getLeftPadding();
 	}
 
 	/**
@@ -443,10 +424,11 @@ public class Cell<T extends PDPage> {
 	 *            Cell's left padding (in points).
 	 */
 	public void setLeftPadding(float cellLeftPadding) {
-		this.leftPadding = cellLeftPadding;
+		setSharedStyle(style.withPadding(cellLeftPadding, getRightPadding(), getTopPadding(), getBottomPadding()));
 
 		// paragraph invalidated
 		paragraph = null;
+		row.invalidateLayout();
 	}
 
 	/**
@@ -457,7 +439,7 @@ public class Cell<T extends PDPage> {
 	 * @return Cell's right padding (in points).
 	 */
 	public float getRightPadding() {
-		return rightPadding;
+		return style.getRightPadding();
 	}
 
 	/**
@@ -469,10 +451,11 @@ public class Cell<T extends PDPage> {
 	 *            Cell's right padding (in points).
 	 */
 	public void setRightPadding(float cellRightPadding) {
-		this.rightPadding = cellRightPadding;
+		setSharedStyle(style.withPadding(getLeftPadding(), cellRightPadding, getTopPadding(), getBottomPadding()));
 
 		// paragraph invalidated
 		paragraph = null;
+		row.invalidateLayout();
 	}
 
 	/**
@@ -483,7 +466,7 @@ public class Cell<T extends PDPage> {
 	 * @return Cell's top padding (in points).
 	 */
 	public float getTopPadding() {
-		return topPadding;
+		return style.getTopPadding();
 	}
 
 	/**
@@ -495,7 +478,8 @@ public class Cell<T extends PDPage> {
 	 *            Cell's top padding (in points).
 	 */
 	public void setTopPadding(float cellTopPadding) {
-		this.topPadding = cellTopPadding;
+		setSharedStyle(style.withPadding(getLeftPadding(), getRightPadding(), cellTopPadding, getBottomPadding()));
+		row.invalidateLayout();
 	}
 
 	/**
@@ -506,7 +490,7 @@ public class Cell<T extends PDPage> {
 	 * @return Cell's bottom padding (in points).
 	 */
 	public float getBottomPadding() {
-		return bottomPadding;
+		return style.getBottomPadding();
 	}
 
 	/**
@@ -518,7 +502,8 @@ public class Cell<T extends PDPage> {
 	 *            Cell's bottom padding (in points).
 	 */
 	public void setBottomPadding(float cellBottomPadding) {
-		this.bottomPadding = cellBottomPadding;
+		setSharedStyle(style.withPadding(getLeftPadding(), getRightPadding(), getTopPadding(), cellBottomPadding));
+		row.invalidateLayout();
 	}
 
 	/**
@@ -571,12 +556,58 @@ public class Cell<T extends PDPage> {
 		}
 	}
 
+	/**
+	 * <p>
+	 * Gets the {@link FontContext} of the cell's table.
+	 * </p>
+	 *
+	 * @return {@link FontContext} fonts and font metrics are looked up in
+	 */
+	FontContext getFontContext() {
+		return row.getFontContext();
+	}
+
+	/**
+	 * <p>
+	 * Discards the measured layout of the cell's row after the cell's geometry
+	 * changed.
+	 * </p>
+	 */
+	void invalidateLayout() {
+		row.invalidateLayout();
+	}
+
+	/**
+	 * <p>
+	 * Measures the cell and its wrapped text. Only called by {@link Row} when
+	 * its {@link Row#getLayout() layout} is built, after the row's height is
+	 * known.
+	 * </p>
+	 *
+	 * @param x
+	 *            Horizontal position of the cell's left edge
+	 * @return immutable {@link CellLayout} of the cell
+	 */
+	CellLayout createLayout(float x) {
+		final Paragraph paragraph = getParagraph();
+		// wrap the text first, the free space depends on the line widths
+		final int lineCount = paragraph.getLines().size();
+		final List<List<Token>> lines = new ArrayList<>(lineCount);
+		final float[] lineWidths = new float[lineCount];
+		for (int i = 0; i < lineCount; i++) {
+			lines.add(paragraph.getLineTokens(i));
+			lineWidths[i] = paragraph.getLineWidth(i);
+		}
+		return new CellLayout(x, getWidth(), getCellHeight(), getInnerHeight(), getHorizontalFreeSpace(),
+				getVerticalFreeSpace(), lines, lineWidths, paragraph.getMaxLineWidth());
+	}
+
 	public HorizontalAlignment getAlign() {
-		return align;
+		return style.getAlign();
 	}
 
 	public VerticalAlignment getValign() {
-		return valign;
+		return style.getValign();
 	}
 
 	public boolean isHeaderCell() {
@@ -585,49 +616,92 @@ public class Cell<T extends PDPage> {
 
 	public void setHeaderCell(boolean isHeaderCell) {
 		this.isHeaderCell = isHeaderCell;
+		row.invalidateLayout();
 	}
 
 	public WrappingFunction getWrappingFunction() {
 		return getParagraph().getWrappingFunction();
 	}
 
+	/**
+	 * <p>
+	 * Returns whether the cell's text is drawn in a single line which is never
+	 * wrapped, see {@link #setNoWrap(boolean)}.
+	 * </p>
+	 *
+	 * @return {@code true} if the text is never wrapped
+	 */
+	public boolean isNoWrap() {
+		return noWrap;
+	}
+
+	/**
+	 * <p>
+	 * Sets whether the cell's text is never wrapped. The text is drawn as a
+	 * single line of plain text, which is cut with an ellipsis if it is wider
+	 * than the cell, and the cell's height follows from its font and paddings
+	 * alone. New cells take this setting from their table, see
+	 * {@link Table#setNoWrap(boolean)}.
+	 * </p>
+	 *
+	 * @param noWrap
+	 *            {@code true} to draw the text in a single line
+	 */
+	public void setNoWrap(boolean noWrap) {
+		this.noWrap = noWrap;
+
+		// paragraph invalidated
+		paragraph = null;
+		row.invalidateLayout();
+	}
+
+	private PDFont getParagraphFont() {
+		// if it is header cell then use font bold
+		return isHeaderCell ? style.getFontBold() : style.getFont();
+	}
+
 	public void setWrappingFunction(WrappingFunction wrappingFunction) {
 		this.wrappingFunction = wrappingFunction;
 
 		// paragraph invalidated
 		paragraph = null;
+		row.invalidateLayout();
 	}
 
 	public LineStyle getLeftBorder() {
-		return leftBorderStyle;
+		return style.getLeftBorder();
 	}
 
 	public LineStyle getRightBorder() {
-		return rightBorderStyle;
+		return style.getRightBorder();
 	}
 
 	public LineStyle getTopBorder() {
-		return topBorderStyle;
+		return style.getTopBorder();
 	}
 
 	public LineStyle getBottomBorder() {
-		return bottomBorderStyle;
+		return style.getBottomBorder();
 	}
 
 	public void setLeftBorderStyle(LineStyle leftBorder) {
-		this.leftBorderStyle = leftBorder;
+		setSharedStyle(style.withBorders(leftBorder, getRightBorder(), getTopBorder(), getBottomBorder()));
+		row.invalidateLayout();
 	}
 
 	public void setRightBorderStyle(LineStyle rightBorder) {
-		this.rightBorderStyle = rightBorder;
+		setSharedStyle(style.withBorders(getLeftBorder(), rightBorder, getTopBorder(), getBottomBorder()));
+		row.invalidateLayout();
 	}
 
 	public void setTopBorderStyle(LineStyle topBorder) {
-		this.topBorderStyle = topBorder;
+		setSharedStyle(style.withBorders(getLeftBorder(), getRightBorder(), topBorder, getBottomBorder()));
+		row.invalidateLayout();
 	}
 
 	public void setBottomBorderStyle(LineStyle bottomBorder) {
-		this.bottomBorderStyle = bottomBorder;
+		setSharedStyle(style.withBorders(getLeftBorder(), getRightBorder(), getTopBorder(), bottomBorder));
+		row.invalidateLayout();
 	}
 
 	/**
@@ -639,10 +713,8 @@ public class Cell<T extends PDPage> {
 	 * @see LineStyle Rendering line attributes
 	 */
 	public void setBorderStyle(LineStyle border) {
-		this.leftBorderStyle = border;
-		this.rightBorderStyle = border;
-		this.topBorderStyle = border;
-		this.bottomBorderStyle = border;
+		setSharedStyle(style.withBorders(border, border, border, border));
+		row.invalidateLayout();
 	}
 
 	public boolean isTextRotated() {
@@ -651,10 +723,11 @@ public class Cell<T extends PDPage> {
 
 	public void setTextRotated(boolean textRotated) {
 		this.textRotated = textRotated;
+		row.invalidateLayout();
 	}
 
 	public PDFont getFontBold() {
-		return fontBold;
+		return style.getFontBold();
 	}
 
 	/**
@@ -667,7 +740,8 @@ public class Cell<T extends PDPage> {
 	 *            The {@linkplain PDFont font} to use for bold text
 	 */
 	public void setFontBold(final PDFont fontBold) {
-		this.fontBold = fontBold;
+		setSharedStyle(style.withFontBold(fontBold));
+		row.invalidateLayout();
 	}
 
 	public boolean isColspanCell() {
@@ -679,34 +753,78 @@ public class Cell<T extends PDPage> {
 	}
 
 	public void setAlign(HorizontalAlignment align) {
-		this.align = align;
+		setSharedStyle(style.withAlign(align));
+		row.invalidateLayout();
 	}
 
 	public void setValign(VerticalAlignment valign) {
-		this.valign = valign;
+		setSharedStyle(style.withValign(valign));
+		row.invalidateLayout();
+	}
+
+	/**
+	 * <p>
+	 * Gets the {@link CellStyle} of the cell, which may be shared with other
+	 * cells.
+	 * </p>
+	 *
+	 * @return {@link CellStyle} of the cell
+	 */
+	public CellStyle getStyle() {
+		return style;
 	}
 
 	/**
 	 * <p>
-	 * Copies the style of an existing cell to this cell
+	 * Replaces the whole style of the cell, for example with the style of
+	 * another cell.
+	 * </p>
+	 *
+	 * @param style
+	 *            {@link CellStyle} of the cell
+	 */
+	public void setStyle(CellStyle style) {
+		setSharedStyle(style);
+
+		// paragraph invalidated
+		paragraph = null;
+		row.invalidateLayout();
+	}
+
+	private void setSharedStyle(CellStyle style) {
+		if (style != this.style) {
+			this.style = row.shareCellStyle(style);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Copies the style of an existing cell to this cell. If the copied style
+	 * doesn't differ from the source cell's, both cells share the same
+	 * {@link CellStyle}.
 	 * </p>
 	 *
 	 * @param sourceCell Source {@link Cell} from which cell style will be copied.
 	 */
 	public void copyCellStyle(Cell sourceCell) {
-		Boolean leftBorder = this.leftBorderStyle == null;
-		setBorderStyle(sourceCell.getTopBorder());
-		if (leftBorder) {
-			this.leftBorderStyle = null;// if left border wasn't set, don't set
-										// it now
+		final LineStyle border = sourceCell.getTopBorder();
+		// if left border wasn't set, don't set it now
+		final CellStyle copied = style
+				.withBorders(getLeftBorder() == null ? null : border, border, border, border)
+				.withFont(sourceCell.getFont())
+				.withFontBold(sourceCell.getFontBold())
+				.withFontSize(sourceCell.getFontSize())
+				.withFillColor(sourceCell.getFillColor())
+				.withTextColor(sourceCell.getTextColor())
+				.withAlign(sourceCell.getAlign())
+				.withValign(sourceCell.getValign());
+		// the paragraph isn't invalidated, like before the style was shared
+		if (copied.equals(sourceCell.getStyle())) {
+			this.style = sourceCell.getStyle();
+		} else {
+			this.style = row.shareCellStyle(copied);
 		}
-		this.font = sourceCell.getFont();// otherwise paragraph gets invalidated
-		this.fontBold = sourceCell.getFontBold();
-		this.fontSize = sourceCell.getFontSize();
-		setFillColor(sourceCell.getFillColor());
-		setTextColor(sourceCell.getTextColor());
-		setAlign(sourceCell.getAlign());
-		setValign(sourceCell.getValign());
+		row.invalidateLayout();
 	}
 
 	/**
@@ -744,6 +862,7 @@ public class Cell<T extends PDPage> {
 
 	public void setWidth(float width) {
 		this.width = width;
+		row.invalidateLayout();
 	}
 
 	public float getLineSpacing() {
@@ -752,6 +871,7 @@ public class Cell<T extends PDPage> {
 
 	public void setLineSpacing(float lineSpacing) {
 		this.lineSpacing = lineSpacing;
+		row.invalidateLayout();
 	}
 
 	public void addContentDrawnListener(CellContentDrawnListener<T> listener) {
@@ -0,0 +1,258 @@
+package be.quodlibet.boxable;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import be.quodlibet.boxable.line.LineStyle;
+
+/**
+ * <p>
+ * Immutable style of a {@link Cell}: its fonts, colors, paddings, borders and
+ * alignment. Cells with the same style share one instance instead of each
+ * holding its own fonts and borders, and changing the style of a cell replaces
+ * its instance with another one.
+ * </p>
+ * <p>
+ * Fonts are compared by identity, borders by their color, width and dash
+ * pattern.
+ * </p>
+ */
+public final class CellStyle {
+
+	private static final LineStyle DEFAULT_BORDER = new LineStyle(Color.BLACK, 1);
+
+	private final PDFont font;
+	private final PDFont fontBold;
+	private final float fontSize;
+	private final Color fillColor;
+	private final Color textColor;
+
+	private final float leftPadding;
+	private final float rightPadding;
+	private final float topPadding;
+	private final float bottomPadding;
+
+	private final LineStyle leftBorder;
+	private final LineStyle rightBorder;
+	private final LineStyle topBorder;
+	private final LineStyle bottomBorder;
+
+	private final HorizontalAlignment align;
+	private final VerticalAlignment valign;
+
+	/**
+	 * <p>
+	 * Creates the default style of a cell with the given fonts: 8pt black text,
+	 * no fill, 5pt padding, 1pt black borders, aligned to the top left.
+	 * </p>
+	 *
+	 * @param font
+	 *            {@link PDFont} of the cell's text
+	 * @param fontBold
+	 *            {@link PDFont} of the text of header cells
+	 */
+	public CellStyle(PDFont font, PDFont fontBold) {
+		this(font, fontBold, 8, null, Color.BLACK, 5f, 5f, 5f, 5f, DEFAULT_BORDER, DEFAULT_BORDER, DEFAULT_BORDER,
+				DEFAULT_BORDER, HorizontalAlignment.LEFT, VerticalAlignment.TOP);
+	}
+
+	private CellStyle(PDFont font, PDFont fontBold, float fontSize, Color fillColor, Color textColor,
+			float leftPadding, float rightPadding, float topPadding, float bottomPadding, LineStyle leftBorder,
+			LineStyle rightBorder, LineStyle topBorder, LineStyle bottomBorder, HorizontalAlignment align,
+			VerticalAlignment valign) {
+		this.font = font;
+		this.fontBold = fontBold;
+		this.fontSize = fontSize;
+		this.fillColor = fillColor;
+		this.textColor = textColor;
+		this.leftPadding = leftPadding;
+		this.rightPadding = rightPadding;
+		this.topPadding = topPadding;
+		this.bottomPadding = bottomPadding;
+		this.leftBorder = leftBorder;
+		this.rightBorder = rightBorder;
+		this.topBorder = topBorder;
+		this.bottomBorder = bottomBorder;
+		this.align = align;
+		this.valign = valign;
+	}
+
+	public PDFont getFont() {
+		return font;
+	}
+
+	public PDFont getFontBold() {
+		return fontBold;
+	}
+
+	public float getFontSize() {
+		return fontSize;
+	}
+
+	public Color getFillColor() {
+		return fillColor;
+	}
+
+	public Color getTextColor() {
+		return textColor;
+	}
+
+	public float getLeftPadding() {
+		return leftPadding;
+	}
+
+	public float getRightPadding() {
+		return rightPadding;
+	}
+
+	public float getTopPadding() {
+		return topPadding;
+	}
+
+	public float getBottomPadding() {
+		return bottomPadding;
+	}
+
+	public LineStyle getLeftBorder() {
+		return leftBorder;
+	}
+
+	public LineStyle getRightBorder() {
+		return rightBorder;
+	}
+
+	public LineStyle getTopBorder() {
+		return topBorder;
+	}
+
+	public LineStyle getBottomBorder() {
+		return bottomBorder;
+	}
+
+	public HorizontalAlignment getAlign() {
+		return align;
+	}
+
+	public VerticalAlignment getValign() {
+		return valign;
+	}
+
+	public CellStyle withFont(PDFont font) {
+		if (font == this.font) {
+			return this;
+		}
+		return new CellStyle(font, fontBold, fontSize, fillColor, textColor, leftPadding, rightPadding, topPadding,
+				bottomPadding, leftBorder, rightBorder, topBorder, bottomBorder, align, valign);
+	}
+
+	public CellStyle withFontBold(PDFont fontBold) {
+		if (fontBold == this.fontBold) {
+			return this;
+		}
+		return new CellStyle(font, fontBold, fontSize, fillColor, textColor, leftPadding, rightPadding, topPadding,
+				bottomPadding, leftBorder, rightBorder, topBorder, bottomBorder, align, valign);
+	}
+
+	public CellStyle withFontSize(float fontSize) {
+		if (fontSize == this.fontSize) {
+			return this;
+		}
+		return new CellStyle(font, fontBold, fontSize, fillColor, textColor, leftPadding, rightPadding, topPadding,
+				bottomPadding, leftBorder, rightBorder, topBorder, bottomBorder, align, valign);
+	}
+
+	public CellStyle withFillColor(Color fillColor) {
+		if (Objects.equals(fillColor, this.fillColor)) {
+			return this;
+		}
+		return new CellStyle(font, fontBold, fontSize, fillColor, textColor, leftPadding, rightPadding, topPadding,
+				bottomPadding, leftBorder, rightBorder, topBorder, bottomBorder, align, valign);
+	}
+
+	public CellStyle withTextColor(Color textColor) {
+		if (Objects.equals(textColor, this.textColor)) {
+			return this;
+		}
+		return new CellStyle(font, fontBold, fontSize, fillColor, textColor, leftPadding, rightPadding, topPadding,
+				bottomPadding, leftBorder, rightBorder, topBorder, bottomBorder, align, valign);
+	}
+
+	public CellStyle withPadding(float leftPadding, float rightPadding, float topPadding, float bottomPadding) {
+		if (leftPadding == this.leftPadding && rightPadding == this.rightPadding && topPadding == this.topPadding
+				&& bottomPadding == this.bottomPadding) {
+			return this;
+		}
+		return new CellStyle(font, fontBold, fontSize, fillColor, textColor, leftPadding, rightPadding, topPadding,
+				bottomPadding, leftBorder, rightBorder, topBorder, bottomBorder, align, valign);
+	}
+
+	public CellStyle withBorders(LineStyle leftBorder, LineStyle rightBorder, LineStyle topBorder,
+			LineStyle bottomBorder) {
+		if (sameBorder(leftBorder, this.leftBorder) && sameBorder(rightBorder, this.rightBorder)
+				&& sameBorder(topBorder, this.topBorder) && sameBorder(bottomBorder, this.bottomBorder)) {
+			return this;
+		}
+		return new CellStyle(font, fontBold, fontSize, fillColor, textColor, leftPadding, rightPadding, topPadding,
+				bottomPadding, leftBorder, rightBorder, topBorder, bottomBorder, align, valign);
+	}
+
+	public CellStyle withAlign(HorizontalAlignment align) {
+		if (align == this.align) {
+			return this;
+		}
+		return new CellStyle(font, fontBold, fontSize, fillColor, textColor, leftPadding, rightPadding, topPadding,
+				bottomPadding, leftBorder, rightBorder, topBorder, bottomBorder, align, valign);
+	}
+
+	public CellStyle withValign(VerticalAlignment valign) {
+		if (valign == this.valign) {
+			return this;
+		}
+		return new CellStyle(font, fontBold, fontSize, fillColor, textColor, leftPadding, rightPadding, topPadding,
+				bottomPadding, leftBorder, rightBorder, topBorder, bottomBorder, align, valign);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(System.identityHashCode(font), System.identityHashCode(fontBold), fontSize, fillColor,
+				textColor, leftPadding, rightPadding, topPadding, bottomPadding, borderHash(leftBorder),
+				borderHash(rightBorder), borderHash(topBorder), borderHash(bottomBorder), align, valign);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CellStyle)) {
+			return false;
+		}
+		CellStyle other = (CellStyle) obj;
+		return font == other.font && fontBold == other.fontBold && fontSize == other.fontSize
+				&& Objects.equals(fillColor, other.fillColor) && Objects.equals(textColor, other.textColor)
+				&& leftPadding == other.leftPadding && rightPadding == other.rightPadding
+				&& topPadding == other.topPadding && bottomPadding == other.bottomPadding
+				&& sameBorder(leftBorder, other.leftBorder) && sameBorder(rightBorder, other.rightBorder)
+				&& sameBorder(topBorder, other.topBorder) && sameBorder(bottomBorder, other.bottomBorder)
+				&& align == other.align && valign == other.valign;
+	}
+
+	// LineStyle#equals ignores the dash pattern
+	private static boolean sameBorder(LineStyle a, LineStyle b) {
+		if (a == b) {
+			return true;
+		}
+		if (a == null || b == null) {
+			return false;
+		}
+		return a.equals(b) && Arrays.equals(a.getDashArray(), b.getDashArray())
+				&& a.getDashPhase() == b.getDashPhase();
+	}
+
+	private static int borderHash(LineStyle border) {
+		return border == null ? 0 : 31 * border.hashCode() + Arrays.hashCode(border.getDashArray());
+	}
+}
@@ -1,8 +1,13 @@
 package be.quodlibet.boxable;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.pdfbox.pdmodel.PDPage;
 
 import be.quodlibet.boxable.image.Image;
+import be.quodlibet.boxable.layout.CellLayout;
+import be.quodlibet.boxable.text.Token;
 
 public class ImageCell<T extends PDPage> extends Cell<T> {
 
@@ -24,6 +29,7 @@ public class ImageCell<T extends PDPage> extends Cell<T> {
 
 	public void scaleToFit() {
 		img = img.scale(getInnerWidth());
+		invalidateLayout();
 	}
 
 	ImageCell(Row<T> row, float width, Image image, boolean isCalculated, HorizontalAlignment align,
@@ -37,6 +43,12 @@ public class ImageCell<T extends PDPage> extends Cell<T> {
 		this.valign = valign;
 	}
 
+	@Override
+	public boolean isNoWrap() {
+		// an image has no text to wrap
+		return false;
+	}
+
 	@Override
 	public float getTextHeight() {
 		return img.getHeight();
@@ -63,4 +75,10 @@ public class ImageCell<T extends PDPage> extends Cell<T> {
 	public Image getImage() {
 		return img;
 	}
+
+	@Override
+	CellLayout createLayout(float x) {
+		return new CellLayout(x, getWidth(), getCellHeight(), getInnerHeight(), getHorizontalFreeSpace(),
+				getVerticalFreeSpace(), Collections.<List<Token>> emptyList(), new float[0], 0);
+	}
 }
@@ -6,25 +6,32 @@ package be.quodlibet.boxable;
 
 import java.awt.Color;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Stack;
 
 import be.quodlibet.boxable.utils.PageContentStreamOptimized;
 import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
 
+import be.quodlibet.boxable.text.LineBreakCache;
+import be.quodlibet.boxable.text.LineBreaks;
 import be.quodlibet.boxable.text.PipelineLayer;
 import be.quodlibet.boxable.text.Token;
+import be.quodlibet.boxable.text.TokenBuffer;
+import be.quodlibet.boxable.text.TokenCursor;
 import be.quodlibet.boxable.text.TokenType;
-import be.quodlibet.boxable.text.Tokenizer;
 import be.quodlibet.boxable.text.WrappingFunction;
-import be.quodlibet.boxable.utils.FontUtils;
+import be.quodlibet.boxable.utils.FontContext;
+import be.quodlibet.boxable.utils.GlyphAdvances;
 import be.quodlibet.boxable.utils.PDStreamUtils;
-import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 
 public class Paragraph {
 
@@ -35,6 +42,7 @@ public class Paragraph {
 	private final PDFont fontBold;
 	private final PDFont fontItalic;
 	private final PDFont fontBoldItalic;
+	private final FontContext fontContext;
 	private final WrappingFunction wrappingFunction;
 	private HorizontalAlignment align;
 	private TextType textType;
@@ -44,13 +52,18 @@ public class Paragraph {
 	private final static int DEFAULT_TAB = 4;
 	private final static int DEFAULT_TAB_AND_BULLET = 6;
 	private final static int BULLET_SPACE = 2;
+	private final static String ELLIPSIS = "\u2026";
+	// for fonts which have no glyph for the ellipsis
+	private final static String ELLIPSIS_FALLBACK = "...";
+	// texts of at least this many chars are written without keeping their lines
+	private final static int LARGE_TEXT = 1 << 16;
 
 	private boolean drawDebug;
-	private final Map<Integer, Float> lineWidths = new HashMap<>();
-	private Map<Integer, List<Token>> mapLineTokens = new LinkedHashMap<>();
-	private float maxLineWidth = Integer.MIN_VALUE;
-	private List<Token> tokens;
-	private List<String> lines;
+	private boolean noWrap;
+	private LineBreaks lineBreaks;
+	private Map<Integer, List<Token>> mapLineTokens;
+	// number of lines of a large text which was wrapped without keeping them
+	private int streamedLineCount = -1;
 	private Float spaceWidth;
 
 	public Paragraph(String text, PDFont font, float fontSize, float width, final HorizontalAlignment align) {
@@ -82,19 +95,48 @@ public class Paragraph {
 
 	public Paragraph(String text, PDFont font, float fontSize, float width, final HorizontalAlignment align,
 			final Color color, final TextType textType, WrappingFunction wrappingFunction, float lineSpacing) {
+		this(text, font, fontSize, width, align, color, textType, wrappingFunction, lineSpacing,
+				FontContext.shared());
+	}
+
+	/**
+	 * <p>
+	 * Constructs a paragraph whose bold and italic fonts and font metrics are
+	 * looked up in the given {@link FontContext}.
+	 * </p>
+	 *
+	 * @param text
+	 *            text of the paragraph
+	 * @param font
+	 *            {@link PDFont} of the text
+	 * @param fontSize
+	 *            font size of the text
+	 * @param width
+	 *            width the text is wrapped to
+	 * @param align
+	 *            {@link HorizontalAlignment} of the lines
+	 * @param color
+	 *            {@link Color} of the text
+	 * @param textType
+	 *            {@link TextType} of the text, may be {@code null}
+	 * @param wrappingFunction
+	 *            {@link WrappingFunction} or {@code null} for the default one
+	 * @param lineSpacing
+	 *            line spacing as a factor of the font height
+	 * @param fontContext
+	 *            {@link FontContext} of the paragraph's document
+	 */
+	public Paragraph(String text, PDFont font, float fontSize, float width, final HorizontalAlignment align,
+			final Color color, final TextType textType, WrappingFunction wrappingFunction, float lineSpacing,
+			FontContext fontContext) {
+		this.fontContext = fontContext;
+		// check if we have different default font for italic and bold text
+		this.fontBold = fontContext.getFontBold();
+		this.fontItalic = fontContext.getFontItalic();
+		this.fontBoldItalic = fontContext.getFontBoldItalic();
 		this.color = color;
 		this.text = text;
 		this.font = font;
-		// check if we have different default font for italic and bold text
-		if (FontUtils.getDefaultfonts().isEmpty()) {
-			fontBold = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
-			fontItalic = new PDType1Font(Standard14Fonts.FontName.HELVETICA_OBLIQUE);
-			fontBoldItalic = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD_OBLIQUE);
-		} else {
-			fontBold = FontUtils.getDefaultfonts().get("fontBold");
-			fontBoldItalic = FontUtils.getDefaultfonts().get("fontBoldItalic");
-			fontItalic = FontUtils.getDefaultfonts().get("fontItalic");
-		}
 		this.fontSize = fontSize;
 		this.width = width;
 		this.textType = textType;
@@ -105,32 +147,344 @@ public class Paragraph {
 
 	public List<String> getLines() {
 		// memoize this function because it is very expensive
-		if (lines != null) {
-			return lines;
+		if (lineBreaks != null) {
+			return lineBreaks.getLines();
+		}
+		mapLineTokens = null;
+
+		lineBreaks = wrapSingleLine();
+		if (lineBreaks == null && noWrap) {
+			lineBreaks = truncateToSingleLine();
+		}
+		if (lineBreaks != null) {
+			return lineBreaks.getLines();
 		}
 
+		// paragraphs with the same text and layout share their line breaks
+		final LineBreakCache cache = fontContext.getLineBreakCache();
+		final LineBreakKey key = cache == null ? null : new LineBreakKey(this);
+		if (key != null) {
+			lineBreaks = cache.get(key);
+			if (lineBreaks != null) {
+				return lineBreaks.getLines();
+			}
+		}
+
+		final LineIterator iterator = new LineIterator(true);
 		final List<String> result = new ArrayList<>();
+		while (iterator.hasNext()) {
+			result.add(iterator.next());
+		}
+		lineBreaks = iterator.toLineBreaks(result);
+		if (key != null) {
+			cache.put(key, lineBreaks);
+		}
+		return lineBreaks.getLines();
+
+	}
+
+	/**
+	 * <p>
+	 * Lays out a short plain text, which has no tags or control chars and fits
+	 * into the width, without the state machine of the {@link LineIterator}.
+	 * The text is only split at its wrap points and measured once. The line,
+	 * its width and its tokens are the same as the ones of the
+	 * {@link LineIterator}.
+	 * </p>
+	 *
+	 * @return the single line, no line if the text has no width, or
+	 *         {@code null} if the text has to be wrapped
+	 */
+	private LineBreaks wrapSingleLine() {
+		if (text == null) {
+			return null;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c == '<' || c < ' ') {
+				return null;
+			}
+		}
+		final TokenCursor cursor = new TokenCursor(text, wrappingFunction);
+		final TokenBuffer buffer = new TokenBuffer(text);
+		// width of all words before the last one, summed up like the PipelineLayer does
+		float widthBeforeLast = 0;
+		float widthLast = 0;
+		int last = -1;
+		try {
+			while (cursor.next()) {
+				// a text without tags only has words and possible wrap points
+				if (cursor.getType() != TokenType.TEXT) {
+					continue;
+				}
+				if (last >= 0) {
+					widthBeforeLast += widthLast;
+				}
+				last = buffer.add(TokenType.TEXT, cursor.getStart(), cursor.getEnd());
+				widthLast = buffer.getWidth(last, font, fontContext) / 1000f * fontSize;
+				if (widthLast > width || widthBeforeLast + widthLast > width) {
+					return null;
+				}
+			}
+			if (last < 0) {
+				return new LineBreaks(new ArrayList<String>(), buffer, new int[0], new int[0], new float[0],
+						Integer.MIN_VALUE);
+			}
+			final int lastStart = buffer.getStart(last);
+			final int lastEnd = buffer.getEnd(last);
+			int trimmedEnd = lastEnd;
+			while (trimmedEnd > lastStart && text.charAt(trimmedEnd - 1) <= ' ') {
+				trimmedEnd--;
+			}
+			// the line has to fit without the trailing whitespace of the last word
+			final float trimmedWidth = widthBeforeLast + (trimmedEnd == lastEnd ? widthLast
+					: fontContext.getStringWidth(font, text, lastStart, trimmedEnd) / 1000f * fontSize);
+			if (trimmedWidth > width) {
+				return null;
+			}
+			if (trimmedWidth <= 0) {
+				// like the LineIterator, a text without width has no line
+				return new LineBreaks(new ArrayList<String>(), buffer, new int[0], new int[0], new float[0],
+						Integer.MIN_VALUE);
+			}
+			// but the last line of the LineIterator keeps it
+			final float lineWidth = widthBeforeLast + widthLast;
+			final int[] lineTokens = new int[buffer.size()];
+			for (int i = 0; i < lineTokens.length; i++) {
+				lineTokens[i] = i;
+			}
+			return new LineBreaks(Collections.singletonList(text), buffer, lineTokens,
+					new int[] { lineTokens.length }, new float[] { lineWidth }, lineWidth);
+		} catch (IOException e) {
+			// the LineIterator reports it
+			return null;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Lays out the text of a paragraph which is never wrapped as a single line
+	 * of plain text: tags are left out and line breaks become spaces. A text
+	 * that doesn't fit is cut at the last char which leaves room for an
+	 * ellipsis. The cut is found by a binary search over the widths of the
+	 * text's prefixes, which are summed up only until the text is wider than
+	 * the paragraph.
+	 * </p>
+	 *
+	 * @return the single line, no line if the text is empty
+	 */
+	private LineBreaks truncateToSingleLine() {
+		final String plainText = toPlainText(text);
+		if (plainText.isEmpty()) {
+			return new LineBreaks(new ArrayList<String>(), new TokenBuffer(""), new int[0], new int[0],
+					new float[0], Integer.MIN_VALUE);
+		}
+		try {
+			final GlyphAdvances advances = fontContext.getGlyphAdvances(font);
+			final float available = width * 1000f / fontSize;
+			// prefixEnds[i] is the end of the i-th prefix, prefixWidths[i] its width
+			final int[] prefixEnds = new int[plainText.length() + 1];
+			final float[] prefixWidths = new float[plainText.length() + 1];
+			int prefixes = 1;
+			float textWidth = 0;
+			int i = 0;
+			while (i < plainText.length() && textWidth <= available) {
+				final int codePoint = plainText.codePointAt(i);
+				// control chars have no glyphs, they are drawn as spaces
+				textWidth += advances.getWidth(codePoint < ' ' ? ' ' : codePoint);
+				i += Character.charCount(codePoint);
+				prefixEnds[prefixes] = i;
+				prefixWidths[prefixes] = textWidth;
+				prefixes++;
+			}
+
+			String line;
+			if (textWidth <= available) {
+				line = plainText;
+			} else {
+				String ellipsis = ELLIPSIS;
+				float ellipsisWidth;
+				try {
+					ellipsisWidth = advances.getWidth(ellipsis);
+				} catch (IllegalArgumentException e) {
+					ellipsis = ELLIPSIS_FALLBACK;
+					ellipsisWidth = advances.getWidth(ellipsis);
+				}
+				// longest prefix which fits together with the ellipsis
+				int low = 0;
+				int high = prefixes - 1;
+				while (low < high) {
+					final int middle = (low + high + 1) >>> 1;
+					if (prefixWidths[middle] + ellipsisWidth <= available) {
+						low = middle;
+					} else {
+						high = middle - 1;
+					}
+				}
+				int end = prefixEnds[low];
+				while (end > 0 && plainText.charAt(end - 1) <= ' ') {
+					end--;
+				}
+				line = plainText.substring(0, end) + ellipsis;
+			}
+			line = replaceControlChars(line);
+
+			final TokenBuffer buffer = new TokenBuffer(line, 1);
+			final int token = buffer.add(TokenType.TEXT, 0, line.length());
+			final float lineWidth = buffer.getWidth(token, font, fontContext) / 1000f * fontSize;
+			return new LineBreaks(Collections.singletonList(line), buffer, new int[] { token }, new int[] { 1 },
+					new float[] { lineWidth }, lineWidth);
+		} catch (final IOException e) {
+			throw new IllegalStateException("Unable to truncate text", e);
+		}
+	}
+
+	private static String toPlainText(final String text) {
+		if (text == null || text.indexOf('<') < 0) {
+			return text == null ? "" : text;
+		}
+		final StringBuilder plain = new StringBuilder(text.length());
+		final TokenCursor cursor = new TokenCursor(text, null);
+		boolean lineBreak = false;
+		while (cursor.next()) {
+			if (cursor.getType() == TokenType.TEXT && cursor.getEnd() > cursor.getStart()) {
+				// <br>, <p> and <li> separate the words they break
+				if (lineBreak && plain.length() > 0 && plain.charAt(plain.length() - 1) != ' ') {
+					plain.append(' ');
+				}
+				lineBreak = false;
+				plain.append(text, cursor.getStart(), cursor.getEnd());
+			} else if (cursor.getType() == TokenType.WRAP_POINT) {
+				lineBreak = true;
+			}
+		}
+		return plain.toString();
+	}
 
-		// text and wrappingFunction are immutable, so we only ever need to compute tokens once
-		if (tokens == null) {
-			tokens = Tokenizer.tokenize(text, wrappingFunction);
+	private static String replaceControlChars(final String line) {
+		StringBuilder replaced = null;
+		for (int i = 0; i < line.length(); i++) {
+			if (line.charAt(i) < ' ') {
+				if (replaced == null) {
+					replaced = new StringBuilder(line);
+				}
+				replaced.setCharAt(i, ' ');
+			}
 		}
+		return replaced == null ? line : replaced.toString();
+	}
+
+	/**
+	 * <p>
+	 * Returns the wrapped lines one by one. Unless {@link #getLines()} was
+	 * called before, the text is wrapped while the lines are read and neither
+	 * the lines nor the tokens of the text are kept, so even a very large text
+	 * needs little memory.
+	 * </p>
+	 * <p>
+	 * The paragraph must not be changed while its lines are read.
+	 * </p>
+	 *
+	 * @return {@link Iterator} over the lines of the paragraph
+	 */
+	public Iterator<String> lineIterator() {
+		if (lineBreaks != null) {
+			return lineBreaks.getLines().iterator();
+		}
+		return new LineIterator(false);
+	}
+
+	/**
+	 * <p>
+	 * Wraps the text while it is tokenized, one token at a time. If the lines
+	 * are not kept by the paragraph, the tokens of finished lines are dropped
+	 * from the buffer.
+	 * </p>
+	 */
+	private final class LineIterator implements Iterator<String> {
+
+		// buffers are compacted when they hold at least this many tokens
+		private static final int COMPACT_SIZE = 256;
+
+		private final boolean keepLines;
+
+		private final TokenCursor cursor;
+
+		private final TokenBuffer tokens;
 
-		int lineCounter = 0;
-		boolean italic = false;
-		boolean bold = false;
-		boolean listElement = false;
-		PDFont currentFont = font;
-		int orderListElement = 1;
-		int numberOfOrderedLists = 0;
-		int listLevel = 0;
-		Stack<HTMLListNode> stack= new Stack<>();
+		private final PipelineLayer textInLine;
 
-		final PipelineLayer textInLine = new PipelineLayer();
-		final PipelineLayer sinceLastWrapPoint = new PipelineLayer();
+		private final PipelineLayer sinceLastWrapPoint;
 
-		for (final Token token : tokens) {
-			switch (token.getType()) {
+		// lines which are wrapped but weren't returned yet
+		private final Deque<String> pending = new ArrayDeque<>();
+
+		private int compactSize = COMPACT_SIZE;
+
+		private boolean finished;
+
+		private boolean italic = false;
+		private boolean bold = false;
+		private boolean listElement = false;
+		private PDFont currentFont = font;
+		private int orderListElement = 1;
+		private int numberOfOrderedLists = 0;
+		private int listLevel = 0;
+		private final Stack<HTMLListNode> stack = new Stack<>();
+
+		// the kept lines are ranges of lineTokens, which are indexes of the
+		// token buffer: line i ends at lineEnds[i] and starts where line i - 1 ends
+		private int[] lineTokens;
+		private int lineTokenCount;
+		private int[] lineEnds;
+		private float[] lineWidths;
+		private int lineCount;
+		private float maxLineWidth = Integer.MIN_VALUE;
+
+		LineIterator(final boolean keepLines) {
+			this.keepLines = keepLines;
+			this.cursor = new TokenCursor(text, wrappingFunction);
+			this.tokens = new TokenBuffer(cursor.getText());
+			this.textInLine = new PipelineLayer(tokens, fontContext);
+			this.sinceLastWrapPoint = new PipelineLayer(tokens, fontContext);
+			if (keepLines) {
+				lineTokens = new int[16];
+				lineEnds = new int[8];
+				lineWidths = new float[8];
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (pending.isEmpty() && !finished) {
+				if (!keepLines && tokens.size() >= compactSize) {
+					tokens.compact(textInLine, sinceLastWrapPoint);
+					compactSize = Math.max(COMPACT_SIZE, 2 * tokens.size());
+				}
+				if (cursor.next()) {
+					wrap(tokens.add(cursor.getType(), cursor.getStart(), cursor.getEnd()));
+				} else {
+					finish();
+				}
+			}
+			return !pending.isEmpty();
+		}
+
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return pending.poll();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private void wrap(final int token) {
+			switch (tokens.getType(token)) {
 			case OPEN_TAG:
 				if (isBold(token)) {
 					bold = true;
@@ -140,7 +494,7 @@ public class Paragraph {
 					currentFont = getFont(bold, italic);
 				} else if (isList(token)) {
 					listLevel++;
-					if (token.getData().equals("ol")) {
+					if (tokens.dataEquals(token, "ol")) {
 						numberOfOrderedLists++;
 						if(listLevel > 1){
 							stack.add(new HTMLListNode(orderListElement-1, stack.isEmpty() ? String.valueOf(orderListElement-1)+"." : stack.peek().getValue() + String.valueOf(orderListElement-1) + "."));
@@ -151,24 +505,16 @@ public class Paragraph {
 						// check if you have some text before this list, if you don't then you really don't need extra line break for that
 						if (textInLine.trimmedWidth() > 0) {
 							// this is our line
-							result.add(textInLine.trimmedText());
-							lineWidths.put(lineCounter, textInLine.trimmedWidth());
-							mapLineTokens.put(lineCounter, textInLine.tokens());
-							maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+							addLine(textInLine);
 							textInLine.reset();
-							lineCounter++;
 						}
-					} else if (token.getData().equals("ul")) {
+					} else if (tokens.dataEquals(token, "ul")) {
 						textInLine.push(sinceLastWrapPoint);
 						// check if you have some text before this list, if you don't then you really don't need extra line break for that
 						if (textInLine.trimmedWidth() > 0) {
 							// this is our line
-							result.add(textInLine.trimmedText());
-							lineWidths.put(lineCounter, textInLine.trimmedWidth());
-							mapLineTokens.put(lineCounter, textInLine.tokens());
-							maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+							addLine(textInLine);
 							textInLine.reset();
-							lineCounter++;
 						}
 					}
 				}
@@ -185,7 +531,7 @@ public class Paragraph {
 					sinceLastWrapPoint.push(token);
 				} else if (isList(token)) {
 					listLevel--;
-					if (token.getData().equals("ol")) {
+					if (tokens.dataEquals(token, "ol")) {
 						numberOfOrderedLists--;
 						// reset elements
 						if(numberOfOrderedLists>0){
@@ -196,30 +542,22 @@ public class Paragraph {
 					// ensure extra space after each lists
 					// no need to worry about current line text because last closing <li> tag already done that
 					if(listLevel == 0){
-						result.add(" ");
-						lineWidths.put(lineCounter, 0.0f);
-						mapLineTokens.put(lineCounter, new ArrayList<Token>());
-						lineCounter++;
+						addEmptyLine();
 					}
 				} else if (isListElement(token)) {
 					// wrap at last wrap point?
 					if (textInLine.width() + sinceLastWrapPoint.trimmedWidth() > width) {
 						// this is our line
-						result.add(textInLine.trimmedText());
-						lineWidths.put(lineCounter, textInLine.trimmedWidth());
-						mapLineTokens.put(lineCounter, textInLine.tokens());
-						maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+						addLine(textInLine);
 						textInLine.reset();
-						lineCounter++;
 						// wrapping at last wrap point
 						if (numberOfOrderedLists>0) {
 							String orderingNumber = stack.isEmpty() ? String.valueOf(orderListElement) + "." : stack.pop().getValue() + ".";
 							stack.add(new HTMLListNode(orderListElement, orderingNumber));
 							try {
 								float tab = indentLevel(DEFAULT_TAB);
-								float orderingNumberAndTab = font.getStringWidth(orderingNumber) + tab;
-								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING, String
-										.valueOf(orderingNumberAndTab / 1000 * getFontSize())));
+								float orderingNumberAndTab = fontContext.getStringWidth(font, orderingNumber) + tab;
+								textInLine.push(currentFont, fontSize, tokens.addPadding(orderingNumberAndTab / 1000 * getFontSize()));
 							} catch (IOException e) {
 								e.printStackTrace();
 							}
@@ -228,8 +566,7 @@ public class Paragraph {
 							try {
 								// if it's not left aligned then ignore list and list element and deal with it as normal text where <li> mimic <br> behaviour
 								float tabBullet = getAlign().equals(HorizontalAlignment.LEFT) ? indentLevel(DEFAULT_TAB*Math.max(listLevel - 1, 0) + DEFAULT_TAB_AND_BULLET) : indentLevel(DEFAULT_TAB);
-								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING,
-										String.valueOf(tabBullet / 1000 * getFontSize())));
+								textInLine.push(currentFont, fontSize, tokens.addPadding(tabBullet / 1000 * getFontSize()));
 							} catch (IOException e) {
 								e.printStackTrace();
 							}
@@ -239,50 +576,31 @@ public class Paragraph {
 					// wrapping at this must-have wrap point
 					textInLine.push(sinceLastWrapPoint);
 					// this is our line
-					result.add(textInLine.trimmedText());
-					lineWidths.put(lineCounter, textInLine.trimmedWidth());
-					mapLineTokens.put(lineCounter, textInLine.tokens());
-					maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+					addLine(textInLine);
 					textInLine.reset();
-					lineCounter++;
 					listElement = false;
 				}
 				if (isParagraph(token)) {
 					if (textInLine.width() + sinceLastWrapPoint.trimmedWidth() > width) {
 						// this is our line
-						result.add(textInLine.trimmedText());
-						lineWidths.put(lineCounter, textInLine.trimmedWidth());
-						maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
-						mapLineTokens.put(lineCounter, textInLine.tokens());
-						lineCounter++;
+						addLine(textInLine);
 						textInLine.reset();
 					}
 					// wrapping at this must-have wrap point
 					textInLine.push(sinceLastWrapPoint);
 					// this is our line
-					result.add(textInLine.trimmedText());
-					lineWidths.put(lineCounter, textInLine.trimmedWidth());
-					mapLineTokens.put(lineCounter, textInLine.tokens());
-					maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+					addLine(textInLine);
 					textInLine.reset();
-					lineCounter++;
 
 					// extra spacing because it's a paragraph
-					result.add(" ");
-					lineWidths.put(lineCounter, 0.0f);
-					mapLineTokens.put(lineCounter, new ArrayList<Token>());
-					lineCounter++;
+					addEmptyLine();
 				}
 				break;
 			case POSSIBLE_WRAP_POINT:
 				if (textInLine.width() + sinceLastWrapPoint.trimmedWidth() > width) {
 					// this is our line
 					if (!textInLine.isEmpty()) {
-						result.add(textInLine.trimmedText());
-						lineWidths.put(lineCounter, textInLine.trimmedWidth());
-						maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
-						mapLineTokens.put(lineCounter, textInLine.tokens());
-						lineCounter++;
+						addLine(textInLine);
 						textInLine.reset();
 					}
 					// wrapping at last wrap point
@@ -291,8 +609,7 @@ public class Paragraph {
 							try {
 								float tab = getAlign().equals(HorizontalAlignment.LEFT) ? indentLevel(DEFAULT_TAB*Math.max(listLevel - 1, 0) + DEFAULT_TAB) : indentLevel(DEFAULT_TAB);
 								String orderingNumber = stack.isEmpty() ? String.valueOf(orderListElement) + "." : stack.peek().getValue() + "." + String.valueOf(orderListElement-1) + ".";
-								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING,
-										String.valueOf((tab + font.getStringWidth(orderingNumber)) / 1000 * getFontSize())));
+								textInLine.push(currentFont, fontSize, tokens.addPadding((tab + fontContext.getStringWidth(font, orderingNumber)) / 1000 * getFontSize()));
 							} catch (IOException e) {
 								e.printStackTrace();
 							}
@@ -300,8 +617,7 @@ public class Paragraph {
 							try {
 								// if it's not left aligned then ignore list and list element and deal with it as normal text where <li> mimic <br> behavior
 								float tabBullet = getAlign().equals(HorizontalAlignment.LEFT) ? indentLevel(DEFAULT_TAB*Math.max(listLevel - 1, 0) + DEFAULT_TAB_AND_BULLET)  : indentLevel(DEFAULT_TAB);
-								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING,
-										String.valueOf(tabBullet / 1000 * getFontSize())));
+								textInLine.push(currentFont, fontSize, tokens.addPadding(tabBullet / 1000 * getFontSize()));
 							} catch (IOException e) {
 								// TODO Auto-generated catch block
 								e.printStackTrace();
@@ -317,12 +633,8 @@ public class Paragraph {
 				// wrap at last wrap point?
 				if (textInLine.width() + sinceLastWrapPoint.trimmedWidth() > width) {
 					// this is our line
-					result.add(textInLine.trimmedText());
-					lineWidths.put(lineCounter, textInLine.trimmedWidth());
-					mapLineTokens.put(lineCounter, textInLine.tokens());
-					maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+					addLine(textInLine);
 					textInLine.reset();
-					lineCounter++;
 					// wrapping at last wrap point
 					if (listElement) {
 						if(!getAlign().equals(HorizontalAlignment.LEFT)) {
@@ -333,9 +645,8 @@ public class Paragraph {
 							String orderingNumber = stack.isEmpty() ? String.valueOf("1") + "." : stack.pop().getValue() + ". ";
 							try {
 								float tab = indentLevel(DEFAULT_TAB);
-								float orderingNumberAndTab = font.getStringWidth(orderingNumber) + tab;
-								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING, String
-										.valueOf(orderingNumberAndTab / 1000 * getFontSize())));
+								float orderingNumberAndTab = fontContext.getStringWidth(font, orderingNumber) + tab;
+								textInLine.push(currentFont, fontSize, tokens.addPadding(orderingNumberAndTab / 1000 * getFontSize()));
 							} catch (IOException e) {
 								e.printStackTrace();
 							}
@@ -343,8 +654,7 @@ public class Paragraph {
 							try {
 								// if it's not left aligned then ignore list and list element and deal with it as normal text where <li> mimic <br> behaviour
 								float tabBullet = getAlign().equals(HorizontalAlignment.LEFT) ? indentLevel(DEFAULT_TAB*Math.max(listLevel - 1, 0) + DEFAULT_TAB_AND_BULLET) : indentLevel(DEFAULT_TAB);
-								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING,
-										String.valueOf(tabBullet / 1000 * getFontSize())));
+								textInLine.push(currentFont, fontSize, tokens.addPadding(tabBullet / 1000 * getFontSize()));
 							} catch (IOException e) {
 								e.printStackTrace();
 							}
@@ -356,10 +666,7 @@ public class Paragraph {
 					// check if you have some text before this paragraph, if you don't then you really don't need extra line break for that
 					if (textInLine.trimmedWidth() > 0) {
 						// extra spacing because it's a paragraph
-						result.add(" ");
-						lineWidths.put(lineCounter, 0.0f);
-						mapLineTokens.put(lineCounter, new ArrayList<Token>());
-						lineCounter++;
+						addEmptyLine();
 					}
 				} else if (isListElement(token)) {
 					listElement = true;
@@ -367,8 +674,7 @@ public class Paragraph {
 					try {
 						// if it's not left aligned then ignore list and list element and deal with it as normal text where <li> mimic <br> behaviour
 						float tab = getAlign().equals(HorizontalAlignment.LEFT) ? indentLevel(DEFAULT_TAB*Math.max(listLevel - 1, 0) + DEFAULT_TAB) : indentLevel(DEFAULT_TAB);
-						textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING,
-								String.valueOf(tab / 1000 * getFontSize())));
+						textInLine.push(currentFont, fontSize, tokens.addPadding(tab / 1000 * getFontSize()));
 						if (numberOfOrderedLists>0) {
 							// if it's ordering list then move depending on your: ordering number + ". "
 							String orderingNumber;
@@ -377,11 +683,11 @@ public class Paragraph {
 							} else {
 								orderingNumber = String.valueOf(orderListElement) + ". ";
 							}
-							textInLine.push(currentFont, fontSize, Token.text(TokenType.ORDERING, orderingNumber));
+							textInLine.push(currentFont, fontSize, tokens.add(TokenType.ORDERING, orderingNumber));
 							orderListElement++;
 						} else {
 							// if it's unordered list then just move by bullet character (take care of alignment!)
-							textInLine.push(currentFont, fontSize, Token.text(TokenType.BULLET, " "));
+							textInLine.push(currentFont, fontSize, tokens.add(TokenType.BULLET, " "));
 						}
 					} catch (IOException e) {
 						e.printStackTrace();
@@ -389,12 +695,8 @@ public class Paragraph {
 				} else {
 					// wrapping at this must-have wrap point
 					textInLine.push(sinceLastWrapPoint);
-					result.add(textInLine.trimmedText());
-					lineWidths.put(lineCounter, textInLine.trimmedWidth());
-					mapLineTokens.put(lineCounter, textInLine.tokens());
-					maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+					addLine(textInLine);
 					textInLine.reset();
-					lineCounter++;
 					if(listLevel>0){
 						// preserve current indent
 						try {
@@ -407,14 +709,13 @@ public class Paragraph {
 								} else {
 									orderingNumber = String.valueOf(orderListElement) + ". ";
 								}
-								float tabAndOrderingNumber = tab + font.getStringWidth(orderingNumber);
-								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING, String.valueOf(tabAndOrderingNumber / 1000 * getFontSize())));
+								float tabAndOrderingNumber = tab + fontContext.getStringWidth(font, orderingNumber);
+								textInLine.push(currentFont, fontSize, tokens.addPadding(tabAndOrderingNumber / 1000 * getFontSize()));
 								orderListElement++;
 							} else {
 								if(getAlign().equals(HorizontalAlignment.LEFT)){
 									float tab = indentLevel(DEFAULT_TAB*Math.max(listLevel - 1, 0) + DEFAULT_TAB + BULLET_SPACE);
-									textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING,
-											String.valueOf(tab / 1000 * getFontSize())));
+									textInLine.push(currentFont, fontSize, tokens.addPadding(tab / 1000 * getFontSize()));
 								}
 							}
 						} catch (IOException e) {
@@ -425,8 +726,11 @@ public class Paragraph {
 				break;
 			case TEXT:
 				try {
-					String word = token.getData();
-					float wordWidth = token.getWidth(currentFont);
+					// the word and its parts are ranges of the token's text
+					final CharSequence chars = tokens.getChars(token);
+					int wordStart = tokens.getStart(token);
+					final int wordEnd = tokens.getEnd(token);
+					float wordWidth = tokens.getWidth(token, currentFont, fontContext);
 					if(wordWidth / 1000f * fontSize > width && width > font.getAverageFontWidth() / 1000f * fontSize) {
 						// you need to check if you have already something in your line
 						boolean alreadyTextInLine = false;
@@ -437,37 +741,30 @@ public class Paragraph {
 						float width = 0;
 						float firstPartWordWidth = 0;
 						float restOfTheWordWidth = 0;
-						String lastTextToken = word;
-						StringBuilder firstPartOfWord = new StringBuilder();
-						StringBuilder restOfTheWord = new StringBuilder();
-						for (int i = 0; i < lastTextToken.length(); i++) {
-							char c = lastTextToken.charAt(i);
+						// the first part of the word ends here, the rest of the word follows
+						int firstPartEnd = wordStart;
+						for (int i = wordStart; i < wordEnd; i++) {
 							try {
-								width += (currentFont.getStringWidth(String.valueOf(c)) / 1000f * fontSize);
+								width += (fontContext.getStringWidth(currentFont, chars, i, i + 1) / 1000f * fontSize);
 							} catch (IOException e) {
 								e.printStackTrace();
 							}
 							if(alreadyTextInLine){
-								if (width < this.width - textInLine.trimmedWidth()) {
-									firstPartOfWord.append(c);
+								if (width < Paragraph.this.width - textInLine.trimmedWidth()) {
+									firstPartEnd = i + 1;
 									firstPartWordWidth = Math.max(width, firstPartWordWidth);
 								} else {
-									restOfTheWord.append(c);
 									restOfTheWordWidth = Math.max(width, restOfTheWordWidth);
 								}
 							} else {
-								if (width < this.width) {
-									firstPartOfWord.append(c);
+								if (width < Paragraph.this.width) {
+									firstPartEnd = i + 1;
 									firstPartWordWidth = Math.max(width, firstPartWordWidth);
 								} else {
-									if(i==0){
-										firstPartOfWord.append(c);
-										for (int j = 1; j< lastTextToken.length(); j++){
-											restOfTheWord.append(lastTextToken.charAt(j));
-										}
+									if(i==wordStart){
+										firstPartEnd = i + 1;
 										break;
 									} else {
-										restOfTheWord.append(c);
 										restOfTheWordWidth = Math.max(width, restOfTheWordWidth);
 
 									}
@@ -476,20 +773,15 @@ public class Paragraph {
 						}
 						// reset
 						alreadyTextInLine = false;
-						sinceLastWrapPoint.push(currentFont, fontSize,
-								Token.text(TokenType.TEXT, firstPartOfWord.toString()));
+						sinceLastWrapPoint.push(currentFont, fontSize, tokens.addPart(token, wordStart, firstPartEnd));
 						textInLine.push(sinceLastWrapPoint);
 						// this is our line
-						result.add(textInLine.trimmedText());
-						lineWidths.put(lineCounter, textInLine.trimmedWidth());
-						mapLineTokens.put(lineCounter, textInLine.tokens());
-						maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+						addLine(textInLine);
 						textInLine.reset();
-						lineCounter++;
-						word = restOfTheWord.toString();
-						wordWidth = currentFont.getStringWidth(word);
+						wordStart = firstPartEnd;
+						wordWidth = fontContext.getStringWidth(currentFont, chars, wordStart, wordEnd);
 						}
-						sinceLastWrapPoint.push(currentFont, fontSize, Token.text(TokenType.TEXT, word));
+						sinceLastWrapPoint.push(currentFont, fontSize, tokens.addPart(token, wordStart, wordEnd));
 					} else {
 						sinceLastWrapPoint.push(currentFont, fontSize, token);
 					}
@@ -500,39 +792,80 @@ public class Paragraph {
 				break;
 			}
 		}
-		if (sinceLastWrapPoint.trimmedWidth() + textInLine.trimmedWidth() > 0)
 
-		{
-			textInLine.push(sinceLastWrapPoint);
-			result.add(textInLine.trimmedText());
-			lineWidths.put(lineCounter, textInLine.trimmedWidth());
-			mapLineTokens.put(lineCounter, textInLine.tokens());
-			maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+		private void finish() {
+			if (sinceLastWrapPoint.trimmedWidth() + textInLine.trimmedWidth() > 0) {
+				textInLine.push(sinceLastWrapPoint);
+				addLine(textInLine);
+			}
+			finished = true;
 		}
 
-		lines = result;
-		return result;
+		private void addLine(final PipelineLayer line) {
+			pending.add(line.trimmedText());
+			if (keepLines) {
+				storeLine(line);
+			}
+		}
 
-	}
+		// empty line between paragraphs and after lists
+		private void addEmptyLine() {
+			pending.add(" ");
+			if (keepLines) {
+				storeEmptyLine();
+			}
+		}
 
-	private static boolean isItalic(final Token token) {
-		return "i".equals(token.getData());
-	}
+		// the lines must be read before
+		LineBreaks toLineBreaks(final List<String> lines) {
+			return new LineBreaks(lines, tokens, lineTokens, lineEnds, lineWidths, maxLineWidth);
+		}
 
-	private static boolean isBold(final Token token) {
-		return "b".equals(token.getData());
-	}
+		private void storeLine(final PipelineLayer line) {
+			final float lineWidth = line.trimmedWidth();
+			if (lineTokenCount + line.tokenCount() > lineTokens.length) {
+				lineTokens = Arrays.copyOf(lineTokens, Math.max(lineTokens.length * 2, lineTokenCount + line.tokenCount()));
+			}
+			for (int i = 0; i < line.tokenCount(); i++) {
+				lineTokens[lineTokenCount++] = line.token(i);
+			}
+			endLine(lineWidth);
+			maxLineWidth = Math.max(maxLineWidth, lineWidth);
+		}
 
-	private static boolean isParagraph(final Token token) {
-		return "p".equals(token.getData());
-	}
+		private void storeEmptyLine() {
+			endLine(0.0f);
+		}
 
-	private static boolean isListElement(final Token token) {
-		return "li".equals(token.getData());
-	}
+		private void endLine(final float lineWidth) {
+			if (lineCount + 1 == lineWidths.length) {
+				lineWidths = Arrays.copyOf(lineWidths, lineWidths.length * 2);
+				lineEnds = Arrays.copyOf(lineEnds, lineEnds.length * 2);
+			}
+			lineWidths[lineCount] = lineWidth;
+			lineEnds[lineCount] = lineTokenCount;
+			lineCount++;
+		}
 
-	private static boolean isList(final Token token) {
-		return "ul".equals(token.getData()) || "ol".equals(token.getData());
+		private boolean isItalic(final int token) {
+			return tokens.dataEquals(token, "i");
+		}
+
+		private boolean isBold(final int token) {
+			return tokens.dataEquals(token, "b");
+		}
+
+		private boolean isParagraph(final int token) {
+			return tokens.dataEquals(token, "p");
+		}
+
+		private boolean isListElement(final int token) {
+			return tokens.dataEquals(token, "li");
+		}
+
+		private boolean isList(final int token) {
+			return tokens.dataEquals(token, "ul") || tokens.dataEquals(token, "ol");
+		}
 	}
 
 	private float indentLevel(int numberOfSpaces) throws IOException {
@@ -564,8 +897,9 @@ public class Paragraph {
 			PDStreamUtils.rect(stream, cursorX, cursorY, width, 1, Color.RED);
 		}
 
-		for (String line : getLines()) {
-			line = line.trim();
+		final Iterator<String> lineIterator = isStreamed() ? new LineIterator(false) : getLines().iterator();
+		while (lineIterator.hasNext()) {
+			final String line = lineIterator.next().trim();
 
 			float textX = cursorX;
 			switch (align) {
@@ -588,10 +922,10 @@ public class Paragraph {
 				case STRIKEOUT:
 					throw new UnsupportedOperationException("Not implemented.");
 				case UNDERLINE:
-					float y = (float) (cursorY - FontUtils.getHeight(font, fontSize)
-							- FontUtils.getDescent(font, fontSize) - 1.5);
+					float y = (float) (cursorY - fontContext.getHeight(font, fontSize)
+							- fontContext.getDescent(font, fontSize) - 1.5);
 					try {
-						float titleWidth = font.getStringWidth(line) / 1000 * fontSize;
+						float titleWidth = fontContext.getStringWidth(font, line) / 1000 * fontSize;
 						stream.moveTo(textX, y);
 						stream.lineTo(textX + titleWidth, y);
 						stream.stroke();
@@ -612,15 +946,38 @@ public class Paragraph {
 	}
 
 	public float getHeight() {
-		if (getLines().size() == 0) {
+		final int lineCount = countLines();
+		if (lineCount == 0) {
 			return 0;
 		} else {
-			return (getLines().size() - 1) * getLineSpacing() * getFontHeight() + getFontHeight();
+			return (lineCount - 1) * getLineSpacing() * getFontHeight() + getFontHeight();
+		}
+	}
+
+	private int countLines() {
+		if (!isStreamed()) {
+			return getLines().size();
+		}
+		if (streamedLineCount < 0) {
+			int count = 0;
+			final Iterator<String> lineIterator = new LineIterator(false);
+			while (lineIterator.hasNext()) {
+				lineIterator.next();
+				count++;
+			}
+			streamedLineCount = count;
 		}
+		return streamedLineCount;
+	}
+
+	// large texts which weren't wrapped yet are wrapped while they are
+	// written or measured, instead of keeping all their lines and tokens
+	private boolean isStreamed() {
+		return lineBreaks == null && !noWrap && text != null && text.length() >= LARGE_TEXT;
 	}
 
 	public float getFontHeight() {
-		return FontUtils.getHeight(font, fontSize);
+		return fontContext.getHeight(font, fontSize);
 	}
 
 	/**
@@ -665,7 +1022,8 @@ public class Paragraph {
 	// font, fontSize, width, and align are non-final and used in getLines(),
 	// so if they are mutated, getLines() needs to be recomputed
 	private void invalidateLineWrapping() {
-		lines = null;
+		lineBreaks = null;
+		streamedLineCount = -1;
 	}
 
 	/**
@@ -694,7 +1052,7 @@ public class Paragraph {
 
 	private float getHorizontalFreeSpace(final String text) {
 		try {
-			final float tw = font.getStringWidth(text.trim()) / 1000 * fontSize;
+			final float tw = fontContext.getStringWidth(font, text.trim()) / 1000 * fontSize;
 			return width - tw;
 		} catch (IOException e) {
 			throw new IllegalStateException("Unable to calculate text width", e);
@@ -734,19 +1092,65 @@ public class Paragraph {
 		this.drawDebug = drawDebug;
 	}
 
+	public boolean isNoWrap() {
+		return noWrap;
+	}
+
+	/**
+	 * <p>
+	 * Sets whether the text is never wrapped. Such a paragraph always has a
+	 * single line of plain text: its tags are left out and line breaks, like
+	 * {@code <br>}, are drawn as spaces. A text which is wider than the
+	 * paragraph is cut and ends with an ellipsis.
+	 * </p>
+	 *
+	 * @param noWrap
+	 *            {@code true} to draw the text in a single line
+	 */
+	public void setNoWrap(boolean noWrap) {
+		invalidateLineWrapping();
+		this.noWrap = noWrap;
+	}
+
 	public WrappingFunction getWrappingFunction() {
 		return wrappingFunction == null ? DEFAULT_WRAP_FUNC : wrappingFunction;
 	}
 
 	public float getMaxLineWidth() {
-		return maxLineWidth;
+		getLines();
+		return lineBreaks.getMaxLineWidth();
 	}
 
 	public float getLineWidth(int key) {
-		return lineWidths.get(key);
+		getLines();
+		return lineBreaks.getLineWidth(key);
+	}
+
+	/**
+	 * <p>
+	 * Returns the tokens of a wrapped line. The {@link Token} objects are
+	 * created when this method is called, wrapping the text doesn't create
+	 * them.
+	 * </p>
+	 *
+	 * @param line
+	 *            index of the line
+	 * @return tokens of the line
+	 */
+	public List<Token> getLineTokens(int line) {
+		getLines();
+		return lineBreaks.getLineTokens(line);
 	}
 
 	public Map<Integer, List<Token>> getMapLineTokens() {
+		getLines();
+		if (mapLineTokens == null) {
+			final Map<Integer, List<Token>> map = new LinkedHashMap<>();
+			for (int line = 0; line < lineBreaks.getLineCount(); line++) {
+				map.put(line, getLineTokens(line));
+			}
+			mapLineTokens = map;
+		}
 		return mapLineTokens;
 	}
 
@@ -758,4 +1162,64 @@ public class Paragraph {
 		this.lineSpacing = lineSpacing;
 	}
 
+	/**
+	 * <p>
+	 * Everything the line breaks of a paragraph depend on. Fonts and the
+	 * wrapping function are compared by identity.
+	 * </p>
+	 */
+	private static final class LineBreakKey {
+
+		private final String text;
+		private final PDFont font;
+		private final PDFont fontBold;
+		private final PDFont fontItalic;
+		private final PDFont fontBoldItalic;
+		private final float fontSize;
+		private final float width;
+		private final HorizontalAlignment align;
+		private final WrappingFunction wrappingFunction;
+		private final int hash;
+
+		LineBreakKey(final Paragraph paragraph) {
+			this.text = paragraph.text;
+			this.font = paragraph.font;
+			this.fontBold = paragraph.fontBold;
+			this.fontItalic = paragraph.fontItalic;
+			this.fontBoldItalic = paragraph.fontBoldItalic;
+			this.fontSize = paragraph.fontSize;
+			this.width = paragraph.width;
+			this.align = paragraph.align;
+			this.wrappingFunction = paragraph.wrappingFunction;
+			int h = text == null ? 0 : text.hashCode();
+			h = 31 * h + System.identityHashCode(font);
+			h = 31 * h + Float.floatToIntBits(fontSize);
+			h = 31 * h + Float.floatToIntBits(width);
+			h = 31 * h + (align == null ? 0 : align.hashCode());
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof LineBreakKey)) {
+				return false;
+			}
+			final LineBreakKey other = (LineBreakKey) obj;
+			return hash == other.hash && font == other.font && fontBold == other.fontBold
+					&& fontItalic == other.fontItalic && fontBoldItalic == other.fontBoldItalic
+					&& Float.floatToIntBits(fontSize) == Float.floatToIntBits(other.fontSize)
+					&& Float.floatToIntBits(width) == Float.floatToIntBits(other.width) && align == other.align
+					&& wrappingFunction == other.wrappingFunction
+					&& (text == null ? other.text == null : text.equals(other.text));
+		}
+	}
+
 }
@@ -13,6 +13,9 @@ import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
 
 import be.quodlibet.boxable.image.Image;
+import be.quodlibet.boxable.layout.CellLayout;
+import be.quodlibet.boxable.layout.RowLayout;
+import be.quodlibet.boxable.utils.FontContext;
 
 public class Row<T extends PDPage> {
 
@@ -22,6 +25,8 @@ public class Row<T extends PDPage> {
 	private boolean headerRow = false;
 	float height;
 	private float lineSpacing = 1;
+	private boolean heightMeasured = false;
+	private RowLayout layout;
 
 	Row(Table<T> table, List<Cell<T>> cells, float height) {
 		this.table = table;
@@ -35,6 +40,22 @@ public class Row<T extends PDPage> {
 		this.height = height;
 	}
 
+	CellStyle getDefaultCellStyle() {
+		return table.getDefaultCellStyle();
+	}
+
+	CellStyle shareCellStyle(CellStyle style) {
+		return table.shareCellStyle(style);
+	}
+
+	FontContext getFontContext() {
+		return table.getFontContext();
+	}
+
+	boolean isNoWrap() {
+		return table.isNoWrap();
+	}
+
 	/**
 	 * <p>
 	 * Creates a cell with provided width, cell value and default left top
@@ -56,6 +77,7 @@ public class Row<T extends PDPage> {
 		setBorders(cell, cells.isEmpty());
 		cell.setLineSpacing(lineSpacing);
 		cells.add(cell);
+		invalidateLayout();
 		return cell;
 	}
 
@@ -74,6 +96,7 @@ public class Row<T extends PDPage> {
 		ImageCell<T> cell = new ImageCell<>(this, width, img, true);
 		setBorders(cell, cells.isEmpty());
 		cells.add(cell);
+		invalidateLayout();
 		return cell;
 	}
 
@@ -81,6 +104,7 @@ public class Row<T extends PDPage> {
 		Cell<T> cell = new ImageCell<T>(this, width, img, true, align, valign);
 		setBorders(cell, cells.isEmpty());
 		cells.add(cell);
+		invalidateLayout();
 		return cell;
 	}
 
@@ -111,6 +135,7 @@ public class Row<T extends PDPage> {
 				pageBottomMargin);
 		setBorders(cell, cells.isEmpty());
 		cells.add(cell);
+		invalidateLayout();
 		return cell;
 	}
 
@@ -139,6 +164,7 @@ public class Row<T extends PDPage> {
 		setBorders(cell, cells.isEmpty());
 		cell.setLineSpacing(lineSpacing);
 		cells.add(cell);
+		invalidateLayout();
 		return cell;
 	}
 
@@ -156,6 +182,7 @@ public class Row<T extends PDPage> {
 		Cell<T> cell = new Cell<T>(this, headerCellWidth, value, false);
 		setBorders(cell, cells.isEmpty());
 		cells.add(cell);
+		invalidateLayout();
 		return cell;
 	}
 
@@ -204,24 +231,63 @@ public class Row<T extends PDPage> {
 	/**
 	 * <p>
 	 * Gets maximal height of the cells in current row therefore row's height.
+	 * The cells are only measured again after something that changes their
+	 * geometry was modified.
 	 * </p>
 	 * 
 	 * @return Row's height
 	 */
 	public float getHeight() {
-		float maxheight = 0.0f;
-		for (Cell<T> cell : this.cells) {
-			float cellHeight = cell.getCellHeight();
+		if (!heightMeasured) {
+			float maxheight = 0.0f;
+			for (Cell<T> cell : this.cells) {
+				float cellHeight = cell.getCellHeight();
+
+				if (cellHeight > maxheight) {
+					maxheight = cellHeight;
+				}
+			}
 
-			if (cellHeight > maxheight) {
-				maxheight = cellHeight;
+			if (maxheight > height) {
+				this.height = maxheight;
 			}
+			heightMeasured = true;
 		}
+		return height;
+	}
 
-		if (maxheight > height) {
-			this.height = maxheight;
+	/**
+	 * <p>
+	 * Gets the measured layout of this row and its cells. The layout is
+	 * computed once and reused until a cell or the row is changed in a way that
+	 * affects its geometry.
+	 * </p>
+	 * 
+	 * @return immutable {@link RowLayout} of this row
+	 */
+	public RowLayout getLayout() {
+		if (layout == null) {
+			float rowHeight = getHeight();
+			List<CellLayout> cellLayouts = new ArrayList<>(cells.size());
+			float x = table.getMargin();
+			for (Cell<T> cell : cells) {
+				cellLayouts.add(cell.createLayout(x));
+				x += cell.getWidth();
+			}
+			layout = new RowLayout(rowHeight, cellLayouts);
 		}
-		return height;
+		return layout;
+	}
+
+	/**
+	 * <p>
+	 * Discards the measured height and layout, so they are computed again the
+	 * next time they are needed.
+	 * </p>
+	 */
+	void invalidateLayout() {
+		heightMeasured = false;
+		layout = null;
 	}
 
 	public float getLineHeight() throws IOException {
@@ -230,6 +296,7 @@ public class Row<T extends PDPage> {
 
 	public void setHeight(float height) {
 		this.height = height;
+		invalidateLayout();
 	}
 
 	public List<Cell<T>> getCells() {
@@ -242,6 +309,7 @@ public class Row<T extends PDPage> {
 
 	public void setCells(List<Cell<T>> cells) {
 		this.cells = cells;
+		invalidateLayout();
 	}
 
 	public float getWidth() {
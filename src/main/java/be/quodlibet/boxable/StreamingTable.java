@@ -0,0 +1,103 @@
+package be.quodlibet.boxable;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+import be.quodlibet.boxable.page.PageProvider;
+
+/**
+ * <p>
+ * A {@link BaseTable} that draws its rows while they are being created instead
+ * of keeping all of them until {@link #draw()} is called.
+ * </p>
+ * <p>
+ * As soon as a new row is created, every completed data row that was created
+ * before it is laid out, paginated and drawn on the current page, and then
+ * released. Header rows are kept, so they are still repeated on every page
+ * break. The memory used by the table therefore doesn't grow with the number
+ * of rows.
+ * </p>
+ * <p>
+ * Because rows are released once drawn, {@link #getRows()} only returns the
+ * rows that are not drawn yet and rows can't be modified anymore once the next
+ * row has been created. Call {@link #draw()} after the last row to draw the
+ * remaining rows and end the table.
+ * </p>
+ */
+public class StreamingTable extends BaseTable {
+
+    public StreamingTable(float yStart, float yStartNewPage, float bottomMargin, float width, float margin, PDDocument document, PDPage currentPage, boolean drawLines, boolean drawContent) throws IOException {
+        super(yStart, yStartNewPage, bottomMargin, width, margin, document, currentPage, drawLines, drawContent);
+    }
+
+    public StreamingTable(float yStart, float yStartNewPage, float pageTopMargin, float bottomMargin, float width, float margin, PDDocument document, PDPage currentPage, boolean drawLines, boolean drawContent) throws IOException {
+        super(yStart, yStartNewPage, pageTopMargin, bottomMargin, width, margin, document, currentPage, drawLines, drawContent);
+    }
+
+    public StreamingTable(float yStart, float yStartNewPage, float pageTopMargin, float bottomMargin, float width, float margin, PDDocument document, PDPage currentPage, boolean drawLines, boolean drawContent, final PageProvider<PDPage> pageProvider) throws IOException {
+        super(yStart, yStartNewPage, pageTopMargin, bottomMargin, width, margin, document, currentPage, drawLines, drawContent, pageProvider);
+    }
+
+    @Override
+    public Row<PDPage> createRow(float height) {
+        flushCompletedRows();
+        return super.createRow(height);
+    }
+
+    @Override
+    public Row<PDPage> createRow(List<Cell<PDPage>> cells, float height) {
+        flushCompletedRows();
+        return super.createRow(cells, height);
+    }
+
+    /**
+     * <p>
+     * Draws all rows that are not drawn yet and releases them. The table is
+     * not ended, so new rows can still be created afterwards.
+     * </p>
+     *
+     * @throws IOException if underlying stream has problem being written to.
+     */
+    public void flush() throws IOException {
+        List<Row<PDPage>> pending = getRows();
+        drawRows(pending);
+        pending.clear();
+    }
+
+    /**
+     * <p>
+     * Draws the remaining rows and ends the table.
+     * </p>
+     *
+     * @return Y position of the table
+     * @throws IOException if underlying stream has problem being written to.
+     */
+    @Override
+    public float draw() throws IOException {
+        float yEnd = super.draw();
+        getRows().clear();
+        return yEnd;
+    }
+
+    /**
+     * <p>
+     * Draws the pending rows once the last one of them is a completed data
+     * row. Header rows are held back until the first data row is known,
+     * because the header and the first data row have to fit on the same page.
+     * </p>
+     */
+    private void flushCompletedRows() {
+        List<Row<PDPage>> pending = getRows();
+        if (pending.isEmpty() || pending.get(pending.size() - 1).isHeaderRow()) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to draw table rows", e);
+        }
+    }
+}
@@ -4,25 +4,39 @@
  */
 package be.quodlibet.boxable;
 
+import be.quodlibet.boxable.layout.CellLayout;
+import be.quodlibet.boxable.layout.PagePlan;
+import be.quodlibet.boxable.layout.ParallelLayout;
+import be.quodlibet.boxable.layout.RowLayout;
+import be.quodlibet.boxable.layout.TablePlan;
 import be.quodlibet.boxable.line.LineStyle;
 import be.quodlibet.boxable.page.PageProvider;
 import be.quodlibet.boxable.text.Token;
 import be.quodlibet.boxable.text.WrappingFunction;
+import be.quodlibet.boxable.utils.FontContext;
 import be.quodlibet.boxable.utils.FontUtils;
+import be.quodlibet.boxable.utils.GeometryCollector;
 import be.quodlibet.boxable.utils.PDStreamUtils;
+import be.quodlibet.boxable.utils.PageContentContext;
 import be.quodlibet.boxable.utils.PageContentStreamOptimized;
+import be.quodlibet.boxable.utils.PageStreamCompressor;
 import java.awt.Color;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.pdmodel.interactive.action.PDActionURI;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
@@ -40,6 +54,7 @@ public abstract class Table<T extends PDPage> {
     private List<PDOutlineItem> bookmarks;
     private List<Row<T>> header = new ArrayList<>();
     private List<Row<T>> rows = new ArrayList<>();
+    private Row<T> firstRow;
 
     private final float yStartNewPage;
     private float yStart;
@@ -62,6 +77,29 @@ public abstract class Table<T extends PDPage> {
 
     private boolean drawDebug;
 
+    private boolean noWrap = false;
+
+    private ForkJoinPool layoutPool;
+
+    private PageStreamCompressor streamCompressor;
+
+    private boolean coalesceGeometry = false;
+    private boolean deferredDrawing = false;
+
+    private PageContentContext contentContext;
+    private GeometryCollector geometry;
+    private PageContentStreamOptimized geometryContentStream;
+
+    private boolean repeatHeaderAsForm = false;
+    private PDFormXObject headerForm;
+    private float headerFormYEnd;
+
+    // styles of the table's cells, every distinct style is held once
+    private final Map<CellStyle, CellStyle> cellStyles = new HashMap<>();
+    private CellStyle defaultCellStyle;
+
+    private FontContext fontContext;
+
     /**
      * @deprecated Use one of the constructors that pass a {@link PageProvider}
      * @param yStart Y position where {@link Table} will start
@@ -149,6 +187,75 @@ public abstract class Table<T extends PDPage> {
         return document;
     }
 
+    /**
+     * <p>
+     * Returns the {@link FontContext} the fonts and font metrics of this table
+     * are looked up in. Unless another one is set, every table has a context
+     * of its own for its document.
+     * </p>
+     *
+     * @return {@link FontContext} of the table
+     */
+    public FontContext getFontContext() {
+        if (fontContext == null) {
+            fontContext = new FontContext(getDocument());
+        }
+        return fontContext;
+    }
+
+    /**
+     * <p>
+     * Sets the {@link FontContext} the fonts and font metrics of this table are
+     * looked up in, for example to share the default fonts of a document
+     * between its tables. It has to be set before the first cell is created.
+     * </p>
+     *
+     * @param fontContext
+     *            {@link FontContext} of the table's document
+     */
+    public void setFontContext(FontContext fontContext) {
+        this.fontContext = fontContext;
+        this.defaultCellStyle = null;
+    }
+
+    /**
+     * <p>
+     * Returns the style new cells of this table start with. It uses the
+     * default fonts of the table's {@link FontContext}.
+     * </p>
+     *
+     * @return shared default {@link CellStyle}
+     */
+    CellStyle getDefaultCellStyle() {
+        final FontContext context = getFontContext();
+        final PDFont font = context.getFont();
+        final PDFont fontBold = context.getFontBold();
+        if (defaultCellStyle == null || defaultCellStyle.getFont() != font
+                || defaultCellStyle.getFontBold() != fontBold) {
+            defaultCellStyle = shareCellStyle(new CellStyle(font, fontBold));
+        }
+        return defaultCellStyle;
+    }
+
+    /**
+     * <p>
+     * Returns the instance of the given style which is shared by the cells of
+     * this table.
+     * </p>
+     *
+     * @param style
+     *            {@link CellStyle} of a cell
+     * @return equal {@link CellStyle} which is shared by the table's cells
+     */
+    CellStyle shareCellStyle(CellStyle style) {
+        final CellStyle shared = cellStyles.get(style);
+        if (shared != null) {
+            return shared;
+        }
+        cellStyles.put(style, style);
+        return style;
+    }
+
     public void drawTitle(String title, PDFont font, int fontSize, float tableWidth, float height, String alignment,
             float freeSpaceForPageBreak, boolean drawHeaderMargin) throws IOException {
         drawTitle(title, font, fontSize, tableWidth, height, alignment, freeSpaceForPageBreak, null, drawHeaderMargin);
@@ -161,7 +268,6 @@ public abstract class Table<T extends PDPage> {
         ensureStreamIsOpen();
 
         if (isEndOfPage(freeSpaceForPageBreak)) {
-            this.tableContentStream.close();
             pageBreak();
             tableStartedAtNewPage = true;
         }
@@ -171,16 +277,19 @@ public abstract class Table<T extends PDPage> {
             // "row"
             yStart -= height;
         } else {
-            PageContentStreamOptimized articleTitle = createPdPageContentStream();
+            PageContentStreamOptimized articleTitle = contentContext != null ? tableContentStream
+                    : createPdPageContentStream();
             Paragraph paragraph = new Paragraph(title, font, fontSize, tableWidth, HorizontalAlignment.get(alignment),
-                    wrappingFunction);
+                    Color.BLACK, null, wrappingFunction, 1, getFontContext());
             paragraph.setDrawDebug(drawDebug);
             yStart = paragraph.write(articleTitle, margin, yStart);
             if (paragraph.getHeight() < height) {
                 yStart -= (height - paragraph.getHeight());
             }
 
-            articleTitle.close();
+            if (contentContext == null) {
+                articleTitle.close();
+            }
 
             if (drawDebug) {
                 // margin
@@ -221,9 +330,92 @@ public abstract class Table<T extends PDPage> {
      *
      */
     public float draw() throws IOException {
+        drawRows(rows);
+
+        endTable();
+        if (streamCompressor != null) {
+            streamCompressor.await();
+        }
+        return yStart;
+    }
+
+    /**
+     * <p>
+     * Computes on which pages and at which positions the rows of the table
+     * will be drawn, using the same page break rules as {@link #draw()}, but
+     * without drawing anything or changing the table. The rows are measured
+     * once and their heights are cached, so paginating the table again is
+     * cheap as long as the rows don't change.
+     * </p>
+     *
+     * @return {@link TablePlan} starting on the current page at the current Y
+     * position
+     */
+    public TablePlan paginate() {
+        if (layoutPool != null) {
+            ParallelLayout.measure(rows, layoutPool, getFontContext());
+        }
+        float minimumHeight = getMinimumHeight();
+
+        List<PagePlan> pages = new ArrayList<>();
+        int[] rowPages = new int[rows.size()];
+        float[] rowPositions = new float[rows.size()];
+        float y = yStart;
+        float pageYStart = yStart;
+        int firstRowOfPage = 0;
+        boolean headerRepeated = false;
+        for (int i = 0; i < rows.size(); i++) {
+            Row<T> row = rows.get(i);
+            float rowHeight = row.getHeight();
+            boolean isHeaderRow = header.contains(row);
+            // header rows move to the next page together with the first data
+            // row, data rows move when they don't fit themselves
+            float freeSpaceForPageBreak = isHeaderRow ? minimumHeight : rowHeight;
+            if (y - freeSpaceForPageBreak <= pageBottomMargin) {
+                pages.add(new PagePlan(firstRowOfPage, i, headerRepeated, pageYStart, y));
+                firstRowOfPage = i;
+                pageYStart = yStartNewPage - pageTopMargin;
+                y = pageYStart;
+                headerRepeated = !isHeaderRow && !header.isEmpty();
+                if (headerRepeated) {
+                    for (Row<T> headerRow : header) {
+                        y -= headerRow.getHeight();
+                    }
+                }
+            }
+            rowPages[i] = pages.size();
+            rowPositions[i] = y;
+            y -= rowHeight;
+        }
+        pages.add(new PagePlan(firstRowOfPage, rows.size(), headerRepeated, pageYStart, y));
+        return new TablePlan(pages, rowPages, rowPositions);
+    }
+
+    /**
+     * <p>
+     * Draws the given rows below the rows that were drawn before, breaking
+     * pages and repeating the header rows where needed. The table is not
+     * ended, so more rows can be drawn afterwards.
+     * </p>
+     *
+     * @param rowsToDraw rows that will be drawn in the given order
+     * @throws IOException if underlying stream has problem being written to.
+     */
+    protected void drawRows(List<Row<T>> rowsToDraw) throws IOException {
         ensureStreamIsOpen();
 
-        for (Row<T> row : rows) {
+        if (layoutPool != null) {
+            // wrap the text of all rows in parallel, drawing then only reads
+            // the cached results
+            ParallelLayout.measure(rowsToDraw, layoutPool, getFontContext());
+        }
+
+        // the first row ever drawn keeps its top border
+        if (firstRow == null && !rowsToDraw.isEmpty()) {
+            firstRow = rowsToDraw.get(0);
+        }
+
+        for (Row<T> row : rowsToDraw) {
             if (header.contains(row)) {
                 // check if header row height and first data row height can fit
                 // the page
@@ -235,19 +427,16 @@ public abstract class Table<T extends PDPage> {
             }
             drawRow(row);
         }
-
-        endTable();
-        return yStart;
     }
 
     private void drawRow(Row<T> row) throws IOException {
-        // row.getHeight is currently an extremely expensive function so get the value
-        // once during drawing and reuse it, since it will not change during drawing
+        // the row is measured once, afterwards its height is cached until the
+        // geometry of one of its cells changes
         float rowHeight = row.getHeight();
 
         // if it is not header row or first row in the table then remove row's
         // top border
-        if (row != header && row != rows.get(0)) {
+        if (row != header && row != firstRow) {
             if (!isEndOfPage(rowHeight)) {
                 row.removeTopBorders();
             }
@@ -280,8 +469,12 @@ public abstract class Table<T extends PDPage> {
 
             // redraw all headers on each currentPage
             if (!header.isEmpty()) {
-                for (Row<T> headerRow : header) {
-                    drawRow(headerRow);
+                if (repeatHeaderAsForm && headerCanBeStamped()) {
+                    stampHeader();
+                } else {
+                    for (Row<T> headerRow : header) {
+                        drawRow(headerRow);
+                    }
                 }
                 // after you draw all header rows on next page please keep
                 // removing top borders to avoid double border drawing
@@ -293,7 +486,7 @@ public abstract class Table<T extends PDPage> {
             }
         }
         // if it is first row in the table, we have to draw the top border
-        if (row == rows.get(0)) {
+        if (row == firstRow) {
             removeTopBorders = false;
         }
 
@@ -303,7 +496,7 @@ public abstract class Table<T extends PDPage> {
 
         // if it is header row or first row in the table, we have to draw the
         // top border
-        if (row == rows.get(0)) {
+        if (row == firstRow) {
             removeTopBorders = false;
         }
 
@@ -311,13 +504,90 @@ public abstract class Table<T extends PDPage> {
             row.removeTopBorders();
         }
 
+        // borders are final now, drawing only reads the measured layout
+        RowLayout layout = row.getLayout();
+
         if (drawLines) {
-            drawVerticalLines(row, rowHeight);
+            drawVerticalLines(row, layout);
         }
 
         if (drawContent) {
-            drawCellContent(row, rowHeight);
+            drawCellContent(row, layout);
+        }
+    }
+
+    /**
+     * <p>
+     * Draws the repeated header rows on the current page with a single
+     * reference to a {@link PDFormXObject}. The header rows are drawn into the
+     * form the first time they are repeated, on all following pages only the
+     * form is drawn again.
+     * </p>
+     *
+     * @throws IOException if underlying stream has problem being written to.
+     */
+    private void stampHeader() throws IOException {
+        if (headerForm == null) {
+            // header rows are drawn at the same position on every new page, so
+            // they are drawn on a blank page with the same size first and its
+            // content becomes the form
+            PDRectangle mediaBox = getCurrentPage().getMediaBox();
+            PDPage headerPage = new PDPage(new PDRectangle(mediaBox.getLowerLeftX(), mediaBox.getLowerLeftY(),
+                    mediaBox.getWidth(), mediaBox.getHeight()));
+            headerPage.setResources(new PDResources());
+
+            PageContentStreamOptimized pageContentStream = tableContentStream;
+            // the form has a single stream, so its borders and fills are drawn
+            // in place instead of being collected for the page
+            GeometryCollector pageGeometry = geometry;
+            geometry = null;
+            tableContentStream = new PageContentStreamOptimized(new PDPageContentStream(document, headerPage,
+                    PDPageContentStream.AppendMode.OVERWRITE, true));
+            if (deferredDrawing) {
+                tableContentStream.deferText();
+            }
+            try {
+                for (Row<T> headerRow : header) {
+                    drawRow(headerRow);
+                }
+            } finally {
+                tableContentStream.close();
+                tableContentStream = pageContentStream;
+                geometry = pageGeometry;
+            }
+            PDFormXObject form = new PDFormXObject(headerPage.getCOSObject().getCOSStream(COSName.CONTENTS));
+            form.setResources(headerPage.getResources());
+            form.setBBox(headerPage.getMediaBox());
+            headerForm = form;
+            headerFormYEnd = yStart;
+        } else {
+            yStart = headerFormYEnd;
         }
+        tableContentStream.drawForm(headerForm);
+    }
+
+    /**
+     * <p>
+     * Header rows can only be repeated as a {@link PDFormXObject} if drawing
+     * them doesn't depend on the page they are drawn on, so none of them has a
+     * bookmark, a link, a content drawn listener or an inner table.
+     * </p>
+     *
+     * @return {@code true} if the header rows can be drawn as a form
+     */
+    private boolean headerCanBeStamped() {
+        for (Row<T> headerRow : header) {
+            if (headerRow.getBookmark() != null) {
+                return false;
+            }
+            for (Cell<T> cell : headerRow.getCells()) {
+                if (cell instanceof TableCell || cell.getUrl() != null
+                        || !cell.getCellContentDrawnListeners().isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     /**
@@ -351,21 +621,51 @@ public abstract class Table<T extends PDPage> {
     }
 
     private PageContentStreamOptimized createPdPageContentStream() throws IOException {
+        if (streamCompressor != null) {
+            return streamCompressor.open(getDocument(), getCurrentPage());
+        }
         return new PageContentStreamOptimized(
                 new PDPageContentStream(getDocument(), getCurrentPage(),
                         PDPageContentStream.AppendMode.APPEND, true));
     }
 
-    private void drawCellContent(Row<T> row, float rowHeight) throws IOException {
+    /**
+     * <p>
+     * Opens the content stream the table is drawn to on the current page. If
+     * the geometry is coalesced, a stream for the borders and fills is opened
+     * before it, so they end up below the text of the table. If drawing is
+     * deferred, the text of the page is drawn once the stream is closed.
+     * </p>
+     *
+     * @return content stream for the text of the table
+     * @throws IOException if the content stream can't be created
+     */
+    private PageContentStreamOptimized createTableContentStream() throws IOException {
+        if (coalesceGeometry || deferredDrawing) {
+            geometryContentStream = contentContext != null ? contentContext.getUnderlayStream(getCurrentPage())
+                    : createPdPageContentStream();
+            geometry = new GeometryCollector();
+        }
+        PageContentStreamOptimized stream = contentContext != null
+                ? contentContext.getContentStream(getCurrentPage()) : createPdPageContentStream();
+        if (deferredDrawing) {
+            stream.deferText();
+        }
+        return stream;
+    }
+
+    private void drawCellContent(Row<T> row, RowLayout layout) throws IOException {
 
-        // position into first cell (horizontal)
-        float cursorX = margin;
+        float cursorX;
         float cursorY;
 
-        for (Cell<T> cell : row.getCells()) {
-            // remember horizontal cursor position, so we can advance to the
-            // next cell easily later
-            float cellStartX = cursorX;
+        List<Cell<T>> cells = row.getCells();
+        for (int i = 0; i < cells.size(); i++) {
+            Cell<T> cell = cells.get(i);
+            CellLayout cellLayout = layout.getCell(i);
+            // position into the cell (horizontal)
+            float cellStartX = cellLayout.getX();
+            cursorX = cellStartX;
             if (cell instanceof ImageCell) {
                 final ImageCell<T> imageCell = (ImageCell<T>) cell;
 
@@ -377,10 +677,10 @@ public abstract class Table<T extends PDPage> {
                     case TOP:
                         break;
                     case MIDDLE:
-                        cursorY -= cell.getVerticalFreeSpace() / 2;
+                        cursorY -= cellLayout.getVerticalFreeSpace() / 2;
                         break;
                     case BOTTOM:
-                        cursorY -= cell.getVerticalFreeSpace();
+                        cursorY -= cellLayout.getVerticalFreeSpace();
                         break;
                 }
 
@@ -389,12 +689,12 @@ public abstract class Table<T extends PDPage> {
                 // image cell horizontal alignment
                 switch (cell.getAlign()) {
                     case CENTER:
-                        cursorX += cell.getHorizontalFreeSpace() / 2;
+                        cursorX += cellLayout.getHorizontalFreeSpace() / 2;
                         break;
                     case LEFT:
                         break;
                     case RIGHT:
-                        cursorX += cell.getHorizontalFreeSpace();
+                        cursorX += cellLayout.getHorizontalFreeSpace();
                         break;
                 }
                 imageCell.getImage().draw(document, tableContentStream, cursorX, cursorY);
@@ -432,10 +732,10 @@ public abstract class Table<T extends PDPage> {
                     case TOP:
                         break;
                     case MIDDLE:
-                        cursorY -= cell.getVerticalFreeSpace() / 2;
+                        cursorY -= cellLayout.getVerticalFreeSpace() / 2;
                         break;
                     case BOTTOM:
-                        cursorY -= cell.getVerticalFreeSpace();
+                        cursorY -= cellLayout.getVerticalFreeSpace();
                         break;
                 }
 
@@ -443,7 +743,11 @@ public abstract class Table<T extends PDPage> {
                 tableCell.setXPosition(cursorX);
                 tableCell.setYPosition(cursorY);
                 this.tableContentStream.endText();
-                tableCell.draw(currentPage);
+                if (contentContext != null) {
+                    tableCell.draw(currentPage, contentContext);
+                } else {
+                    tableCell.draw(currentPage);
+                }
             } else {
                 // no text without font
                 if (cell.getFont() == null) {
@@ -467,38 +771,36 @@ public abstract class Table<T extends PDPage> {
                     // cell.getWidth() - 5, yStart, 5, cell.getHeight(),
                     // Color.GREEN);
 
-                    cursorY = yStart - cell.getInnerHeight() - cell.getTopPadding()
+                    cursorY = yStart - cellLayout.getInnerHeight() - cell.getTopPadding()
                             - (cell.getTopBorder() != null ? cell.getTopBorder().getWidth() : 0);
 
                     switch (cell.getAlign()) {
                         case CENTER:
-                            cursorY += cell.getVerticalFreeSpace() / 2;
+                            cursorY += cellLayout.getVerticalFreeSpace() / 2;
                             break;
                         case LEFT:
                             break;
                         case RIGHT:
-                            cursorY += cell.getVerticalFreeSpace();
+                            cursorY += cellLayout.getVerticalFreeSpace();
                             break;
                     }
                     // respect left padding and descend by font height to get
                     // position of the base line
                     cursorX += cell.getLeftPadding()
                             + (cell.getLeftBorder() == null ? 0 : cell.getLeftBorder().getWidth())
-                            + FontUtils.getHeight(cell.getFont(), cell.getFontSize())
-                            + FontUtils.getDescent(cell.getFont(), cell.getFontSize());
+                            + getFontContext().getHeight(cell.getFont(), cell.getFontSize())
+                            + getFontContext().getDescent(cell.getFont(), cell.getFontSize());
 
                     switch (cell.getValign()) {
                         case TOP:
                             break;
                         case MIDDLE:
-                            cursorX += cell.getHorizontalFreeSpace() / 2;
+                            cursorX += cellLayout.getHorizontalFreeSpace() / 2;
                             break;
                         case BOTTOM:
-                            cursorX += cell.getHorizontalFreeSpace();
+                            cursorX += cellLayout.getHorizontalFreeSpace();
                             break;
                     }
-                    // make tokenize method just in case
-                    cell.getParagraph().getLines();
                 } else {
                     // debugging mode - drawing (default!) padding of rotated
                     // cells
@@ -519,8 +821,8 @@ public abstract class Table<T extends PDPage> {
                     // position at top of current cell descending by font height
                     // - font descent, because we are
                     // positioning the base line here
-                    cursorY = yStart - cell.getTopPadding() - FontUtils.getHeight(cell.getFont(), cell.getFontSize())
-                            - FontUtils.getDescent(cell.getFont(), cell.getFontSize())
+                    cursorY = yStart - cell.getTopPadding() - getFontContext().getHeight(cell.getFont(), cell.getFontSize())
+                            - getFontContext().getDescent(cell.getFont(), cell.getFontSize())
                             - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth());
 
                     if (drawDebug) {
@@ -545,12 +847,12 @@ public abstract class Table<T extends PDPage> {
                     // problem, just add it ;)
                     switch (cell.getAlign()) {
                         case CENTER:
-                            cursorX += cell.getHorizontalFreeSpace() / 2;
+                            cursorX += cellLayout.getHorizontalFreeSpace() / 2;
                             break;
                         case LEFT:
                             break;
                         case RIGHT:
-                            cursorX += cell.getHorizontalFreeSpace();
+                            cursorX += cellLayout.getHorizontalFreeSpace();
                             break;
                     }
 
@@ -558,10 +860,10 @@ public abstract class Table<T extends PDPage> {
                         case TOP:
                             break;
                         case MIDDLE:
-                            cursorY -= cell.getVerticalFreeSpace() / 2;
+                            cursorY -= cellLayout.getVerticalFreeSpace() / 2;
                             break;
                         case BOTTOM:
-                            cursorY -= cell.getVerticalFreeSpace();
+                            cursorY -= cellLayout.getVerticalFreeSpace();
                             break;
                     }
                   
@@ -597,11 +899,11 @@ public abstract class Table<T extends PDPage> {
                 this.tableContentStream.setRotated(cell.isTextRotated());
 
                 // print all lines of the cell
-                for (Map.Entry<Integer, List<Token>> entry : cell.getParagraph().getMapLineTokens().entrySet()) {
+                List<List<Token>> lines = cellLayout.getLines();
+                for (int line = 0; line < lines.size(); line++) {
 
                     // calculate the width of this line
-                    float freeSpaceWithinLine = cell.getParagraph().getMaxLineWidth()
-                            - cell.getParagraph().getLineWidth(entry.getKey());
+                    float freeSpaceWithinLine = cellLayout.getMaxLineWidth() - cellLayout.getLineWidth(line);
                     // TODO: need to implemented rotated text yo!
                     if (cell.isTextRotated()) {
                         cursorY = lineStartY;
@@ -634,7 +936,7 @@ public abstract class Table<T extends PDPage> {
 
                     // iterate through tokens in current line
                     PDFont currentFont = cell.getParagraph().getFont(false, false);
-                    for (Token token : entry.getValue()) {
+                    for (Token token : lines.get(line)) {
                         switch (token.getType()) {
                             case OPEN_TAG:
                                 if ("b".equals(token.getData())) {
@@ -668,7 +970,7 @@ public abstract class Table<T extends PDPage> {
                                 break;
                             case BULLET:
                                 float widthOfSpace = currentFont.getSpaceWidth();
-                                float halfHeight = FontUtils.getHeight(currentFont, cell.getFontSize()) / 2;
+                                float halfHeight = getFontContext().getHeight(currentFont, cell.getFontSize()) / 2;
                                 if (cell.isTextRotated()) {
                                     PDStreamUtils.rect(tableContentStream, cursorX + halfHeight, cursorY,
                                             token.getWidth(currentFont) / 1000 * cell.getFontSize(),
@@ -714,33 +1016,29 @@ public abstract class Table<T extends PDPage> {
                 }
             }
 
-            PDRectangle rectangle = new PDRectangle(cellStartX, yStart - cell.getHeight(), cell.getWidth(), cell.getHeight());
+            PDRectangle rectangle = new PDRectangle(cellStartX, yStart - layout.getHeight(), cellLayout.getWidth(),
+                    layout.getHeight());
             cell.notifyContentDrawnListeners(getDocument(), getCurrentPage(), rectangle);
-
-            // set cursor to the start of this cell plus its width to advance to
-            // the next cell
-            cursorX = cellStartX + cell.getWidth();
         }
         // Set Y position for next row
-        yStart = yStart - rowHeight;
+        yStart = yStart - layout.getHeight();
 
     }
 
-    private void drawVerticalLines(Row<T> row, float rowHeight) throws IOException {
-        float xStart = margin;
+    private void drawVerticalLines(Row<T> row, RowLayout layout) throws IOException {
+        float rowHeight = layout.getHeight();
 
-        Iterator<Cell<T>> cellIterator = row.getCells().iterator();
-        while (cellIterator.hasNext()) {
-            Cell<T> cell = cellIterator.next();
+        List<Cell<T>> cells = row.getCells();
+        for (int i = 0; i < cells.size(); i++) {
+            Cell<T> cell = cells.get(i);
+            float xStart = layout.getCell(i).getX();
 
-            float cellWidth = cellIterator.hasNext()
+            float cellWidth = i < cells.size() - 1
                     ? cell.getWidth()
                     : this.width - (xStart - margin);
             fillCellColor(cell, yStart, xStart, rowHeight, cellWidth);
 
             drawCellBorders(rowHeight, cell, xStart);
-
-            xStart += cellWidth;
         }
 
     }
@@ -781,6 +1079,10 @@ public abstract class Table<T extends PDPage> {
     }
 
     private void drawLine(float xStart, float yStart, float xEnd, float yEnd, LineStyle border) throws IOException {
+        if (geometry != null) {
+            geometry.addLine(xStart, yStart, xEnd, yEnd, border);
+            return;
+        }
         PDStreamUtils.setLineStyles(tableContentStream, border);
         tableContentStream.moveTo(xStart, yStart);
         tableContentStream.lineTo(xEnd, yEnd);
@@ -791,12 +1093,15 @@ public abstract class Table<T extends PDPage> {
             throws IOException {
 
         if (cell.getFillColor() != null) {
-            this.tableContentStream.setNonStrokingColor(cell.getFillColor());
-
             // y start is bottom pos
             yStart = yStart - rowHeight;
             float height = rowHeight - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth());
 
+            if (geometry != null) {
+                geometry.addRect(xStart, yStart, cellWidth, height, cell.getFillColor());
+                return;
+            }
+            this.tableContentStream.setNonStrokingColor(cell.getFillColor());
             this.tableContentStream.addRect(xStart, yStart, cellWidth, height);
             this.tableContentStream.fill();
         }
@@ -804,12 +1109,24 @@ public abstract class Table<T extends PDPage> {
 
     private void ensureStreamIsOpen() throws IOException {
         if (tableContentStream == null) {
-            tableContentStream = createPdPageContentStream();
+            tableContentStream = createTableContentStream();
         }
     }
 
     private void endTable() throws IOException {
-        this.tableContentStream.close();
+        if (geometry != null) {
+            geometry.drawTo(geometryContentStream);
+            if (contentContext == null) {
+                geometryContentStream.close();
+            }
+            geometry = null;
+            geometryContentStream = null;
+        }
+        // shared streams are closed by their context once the page is
+        // finished
+        if (contentContext == null) {
+            this.tableContentStream.close();
+        }
     }
 
     public T getCurrentPage() {
@@ -829,10 +1146,10 @@ public abstract class Table<T extends PDPage> {
     }
 
     private void pageBreak() throws IOException {
-        tableContentStream.close();
+        endTable();
         this.yStart = yStartNewPage - pageTopMargin;
         this.currentPage = createNewPage();
-        this.tableContentStream = createPdPageContentStream();
+        this.tableContentStream = createTableContentStream();
     }
 
     private void addBookmark(PDOutlineItem bookmark) {
@@ -946,6 +1263,164 @@ public abstract class Table<T extends PDPage> {
         this.drawDebug = drawDebug;
     }
 
+    public boolean isNoWrap() {
+        return noWrap;
+    }
+
+    /**
+     * <p>
+     * Sets whether the text of the cells created afterwards is never wrapped,
+     * for listings with one line per cell like logs or transactions. Each
+     * cell draws its text as a single line which is cut with an ellipsis if
+     * it doesn't fit, and its height follows from its font and paddings
+     * alone. So rows are measured without laying out their text, and all rows
+     * whose cells look the same have the same height. Single cells can still
+     * be changed with {@link Cell#setNoWrap(boolean)}.
+     * </p>
+     *
+     * @param noWrap {@code true} to draw the text of new cells in a single
+     * line
+     */
+    public void setNoWrap(boolean noWrap) {
+        this.noWrap = noWrap;
+    }
+
+    public ForkJoinPool getLayoutPool() {
+        return layoutPool;
+    }
+
+    /**
+     * <p>
+     * Sets the {@link ForkJoinPool} on which the rows are measured before they
+     * are drawn. If set, the text of all cells is tokenized and wrapped in
+     * parallel, while the content stream is still written on the calling
+     * thread. By default ({@code null}), cells are measured one by one while
+     * they are drawn.
+     * </p>
+     *
+     * @param layoutPool {@link ForkJoinPool} used to measure the rows or
+     * {@code null} to measure them while drawing
+     * @see ParallelLayout
+     */
+    public void setLayoutPool(ForkJoinPool layoutPool) {
+        this.layoutPool = layoutPool;
+    }
+
+    /**
+     * <p>
+     * Sets the {@link ExecutorService} on which the content streams of the
+     * pages are compressed. If set, every page is compressed in the background
+     * as soon as the table continues on the next page, and {@link #draw()}
+     * waits until all pages are compressed. The document is byte-identical to
+     * one drawn without an executor. By default ({@code null}), pages are
+     * compressed while they are drawn.
+     * </p>
+     *
+     * @param executor {@link ExecutorService} used to compress the pages or
+     * {@code null} to compress them while drawing
+     * @see PageStreamCompressor
+     */
+    public void setContentStreamExecutor(ExecutorService executor) {
+        if (tableContentStream != null) {
+            throw new IllegalStateException("The content stream executor can't be changed once drawing started");
+        }
+        this.streamCompressor = executor == null ? null : new PageStreamCompressor(executor);
+    }
+
+    public PageContentContext getContentContext() {
+        return contentContext;
+    }
+
+    /**
+     * <p>
+     * Sets the {@link PageContentContext} whose shared content streams the
+     * table is drawn into, instead of appending a content stream of its own to
+     * every page. The inner tables of {@link TableCell}s are drawn into the
+     * same streams. The context has to be closed once all tables are drawn.
+     * By default ({@code null}), the table appends its own content streams.
+     * </p>
+     *
+     * @param contentContext {@link PageContentContext} shared with other
+     * tables or {@code null} to use own content streams
+     */
+    public void setContentContext(PageContentContext contentContext) {
+        if (tableContentStream != null) {
+            throw new IllegalStateException("The content context can't be changed once drawing started");
+        }
+        this.contentContext = contentContext;
+    }
+
+    public boolean isCoalesceGeometry() {
+        return coalesceGeometry;
+    }
+
+    /**
+     * <p>
+     * Sets whether the borders and fills of the cells are collected for each
+     * page and drawn in one batch below the table, instead of one path per
+     * cell edge and background. Touching borders with the same style and
+     * touching fills with the same color are merged, which makes the content
+     * streams of large tables a lot smaller and faster to render while they
+     * look the same. By default ({@code false}) every border and fill is drawn
+     * right away.
+     * </p>
+     *
+     * @param coalesceGeometry {@code true} to collect and merge the borders and
+     * fills of each page
+     * @see GeometryCollector
+     */
+    public void setCoalesceGeometry(boolean coalesceGeometry) {
+        if (tableContentStream != null) {
+            throw new IllegalStateException("Coalescing the geometry can't be changed once drawing started");
+        }
+        this.coalesceGeometry = coalesceGeometry;
+    }
+
+    public boolean isDeferredDrawing() {
+        return deferredDrawing;
+    }
+
+    /**
+     * <p>
+     * Sets whether the operators of each page are sorted by the state they
+     * need instead of being written cell by cell. All fills of a page are
+     * drawn first, then all borders grouped by their {@link LineStyle}, as
+     * with {@link #setCoalesceGeometry(boolean)}, then images, and finally all
+     * text in a single text object grouped by font, size and color. This
+     * removes most of the operators which switch between text and graphics
+     * and set colors, fonts and line styles over and over again. By default
+     * ({@code false}) every cell is drawn completely before the next one.
+     * </p>
+     *
+     * @param deferredDrawing {@code true} to sort the operators of each page
+     */
+    public void setDeferredDrawing(boolean deferredDrawing) {
+        if (tableContentStream != null) {
+            throw new IllegalStateException("Deferring the drawing can't be changed once drawing started");
+        }
+        this.deferredDrawing = deferredDrawing;
+    }
+
+    public boolean isRepeatHeaderAsForm() {
+        return repeatHeaderAsForm;
+    }
+
+    /**
+     * <p>
+     * Sets whether the header rows which are repeated on every new page are
+     * drawn only once into a {@link PDFormXObject}, which is then placed on
+     * each page. This makes the document smaller and drawing faster for long
+     * tables. Header rows with bookmarks, links, content drawn listeners or
+     * inner tables are always drawn again on every page.
+     * </p>
+     *
+     * @param repeatHeaderAsForm {@code true} to repeat the header rows as a
+     * form
+     */
+    public void setRepeatHeaderAsForm(boolean repeatHeaderAsForm) {
+        this.repeatHeaderAsForm = repeatHeaderAsForm;
+    }
+
     public boolean tableIsBroken() {
         return tableIsBroken;
     }
@@ -1,8 +1,9 @@
 package be.quodlibet.boxable;
 
+import java.awt.Color;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import be.quodlibet.boxable.utils.PageContentStreamOptimized;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -17,9 +18,10 @@ import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import be.quodlibet.boxable.layout.CellLayout;
 import be.quodlibet.boxable.text.Token;
-import be.quodlibet.boxable.utils.FontUtils;
 import be.quodlibet.boxable.utils.PDStreamUtils;
+import be.quodlibet.boxable.utils.PageContentContext;
 
 public class TableCell<T extends PDPage> extends Cell<T> {
 
@@ -32,7 +34,7 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 	private float height = 0;
 	private final PDDocument doc;
 	private final PDPage page;
-	private float marginBetweenElementsY = FontUtils.getHeight(getFont(), getFontSize());
+	private float marginBetweenElementsY = getFontContext().getHeight(getFont(), getFontSize());
 	private final HorizontalAlignment align;
 	private final VerticalAlignment valign;
 
@@ -40,6 +42,8 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 //	private PDFont font = FontUtils.getDefaultfonts().get("font");
 //	private PDFont fontBold = FontUtils.getDefaultfonts().get("fontBold");
 	private PageContentStreamOptimized tableCellContentStream;
+	// shared content streams while drawing, null if the cell has its own
+	private PageContentContext contentContext;
 
 	// page margins
 	private final float pageTopMargin;
@@ -87,8 +91,9 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 		try {
 			// please consider the cell's paddings
 			float tableWidth = this.width - getLeftPadding() - getRightPadding();
-			tableCellContentStream = new PageContentStreamOptimized(new PDPageContentStream(doc, page,
-					PDPageContentStream.AppendMode.APPEND, true));
+			// nothing is drawn while calculating the height, not even the
+			// caption, which only moves yStart here and is written by draw(),
+			// so no content stream is needed
 			// check if there is some additional text outside inner table
 			String[] outerTableText = tableData.split("<table");
 			// don't forget to attach splited tag
@@ -111,14 +116,15 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 							if (captionTag != null) {
 								caption = captionTag.text();
 								tableTitle = new Paragraph(caption, getFontBold(), tableTitleFontSize, tableWidth,
-										HorizontalAlignment.CENTER, null);
+										HorizontalAlignment.CENTER, Color.BLACK, null, null, 1, getFontContext());
 								yStart -= tableTitle.getHeight() + marginBetweenElementsY;
 							}
 							height += (captionTag != null ? tableTitle.getHeight() + marginBetweenElementsY : 0);
 							createInnerTable(tableWidth, document, page, false);
 						} else {
 							// make paragraph and get tokens
-							outerTextParagraph = new Paragraph(chunkie, getFont(), 8, (int) tableWidth);
+							outerTextParagraph = new Paragraph(chunkie, getFont(), 8, (int) tableWidth, HorizontalAlignment.LEFT,
+									Color.BLACK, null, null, 1, getFontContext());
 							outerTextParagraph.getLines();
 							height += (outerTextParagraph != null
 									? outerTextParagraph.getHeight() + marginBetweenElementsY : 0);
@@ -127,14 +133,14 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 					}
 				} else {
 					// make paragraph and get tokens
-					outerTextParagraph = new Paragraph(element, getFont(), 8, (int) tableWidth);
+					outerTextParagraph = new Paragraph(element, getFont(), 8, (int) tableWidth, HorizontalAlignment.LEFT,
+							Color.BLACK, null, null, 1, getFontContext());
 					outerTextParagraph.getLines();
 					height += (outerTextParagraph != null ? outerTextParagraph.getHeight() + marginBetweenElementsY
 							: 0);
 					yStart = writeOrCalculateParagraph(outerTextParagraph, true);
 				}
 			}
-			tableCellContentStream.close();
 		} catch (IOException e) {
 			logger.warn("Cannot create table in TableCell. Table data: '{}' " + tableData + e);
 		}
@@ -144,6 +150,8 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 
 		BaseTable table = new BaseTable(yStart, PDRectangle.A4.getHeight() - pageTopMargin, pageTopMargin,
 				pageBottomMargin, tableWidth, xStart, doc, currentPage, true, true);
+		table.setContentContext(contentContext);
+		table.setFontContext(getFontContext());
 		document.outputSettings().prettyPrint(false);
 		Element htmlTable = document.select("table").first();
 
@@ -209,15 +217,16 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 
 		// position at top of current cell descending by font height - font
 		// descent, because we are positioning the base line here
-		float cursorY = yStart - getTopPadding() - FontUtils.getHeight(getFont(), getFontSize())
-				- FontUtils.getDescent(getFont(), getFontSize()) - (getTopBorder() == null ? 0 : getTopBorder().getWidth());
+		float cursorY = yStart - getTopPadding() - getFontContext().getHeight(getFont(), getFontSize())
+				- getFontContext().getDescent(getFont(), getFontSize()) - (getTopBorder() == null ? 0 : getTopBorder().getWidth());
 		float cursorX = xStart;
 
 		// loop through tokens
-		for (Map.Entry<Integer, List<Token>> entry : paragraph.getMapLineTokens().entrySet()) {
+		final int lineCount = paragraph.getLines().size();
+		for (int line = 0; line < lineCount; line++) {
 
 			// calculate the width of this line
-			float freeSpaceWithinLine = paragraph.getMaxLineWidth() - paragraph.getLineWidth(entry.getKey());
+			float freeSpaceWithinLine = paragraph.getMaxLineWidth() - paragraph.getLineWidth(line);
 			if (isTextRotated()) {
 				switch (align) {
 				case CENTER:
@@ -246,7 +255,7 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 
 			// iterate through tokens in current line
 			PDFont currentFont = paragraph.getFont(false, false);
-			for (Token token : entry.getValue()) {
+			for (Token token : paragraph.getLineTokens(line)) {
 				switch (token.getType()) {
 				case OPEN_TAG:
 					if ("b".equals(token.getData())) {
@@ -267,7 +276,9 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 					break;
 				case ORDERING:
 					currentFont = paragraph.getFont(boldCounter > 0, italicCounter > 0);
-					tableCellContentStream.setFont(currentFont, getFontSize());
+					if (!onlyCalculateHeight) {
+						tableCellContentStream.setFont(currentFont, getFontSize());
+					}
 					if (isTextRotated()) {
 						// if it is not calculation then draw it
 						if (!onlyCalculateHeight) {
@@ -286,7 +297,7 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 					break;
 				case BULLET:
 					float widthOfSpace = currentFont.getSpaceWidth();
-					float halfHeight = FontUtils.getHeight(currentFont, getFontSize()) / 2;
+					float halfHeight = getFontContext().getHeight(currentFont, getFontSize()) / 2;
 					if (isTextRotated()) {
 						if (!onlyCalculateHeight) {
 							PDStreamUtils.rect(tableCellContentStream, cursorX + halfHeight, cursorY,
@@ -309,7 +320,9 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 					break;
 				case TEXT:
 					currentFont = paragraph.getFont(boldCounter > 0, italicCounter > 0);
-					tableCellContentStream.setFont(currentFont, getFontSize());
+					if (!onlyCalculateHeight) {
+						tableCellContentStream.setFont(currentFont, getFontSize());
+					}
 					if (isTextRotated()) {
 						if (!onlyCalculateHeight) {
 							tableCellContentStream.newLineAt(cursorX, cursorY);
@@ -328,7 +341,7 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 			}
 			// reset
 			cursorX = xStart;
-			cursorY -= FontUtils.getHeight(getFont(), getFontSize());
+			cursorY -= getFontContext().getHeight(getFont(), getFontSize());
 		}
 		return cursorY;
 	}
@@ -349,62 +362,94 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 	 *            {@link PDPage} where table cell be written on
 	 * 
 	 */
-	@SuppressWarnings({ "unused", "unchecked" })
 	public void draw(PDPage page) {
 		try {
-			// please consider the cell's paddings
-			float tableWidth = this.width - getLeftPadding() - getRightPadding();
 			tableCellContentStream = new PageContentStreamOptimized(new PDPageContentStream(doc, page,
 					PDPageContentStream.AppendMode.APPEND, true));
-			// check if there is some additional text outside inner table
-			String[] outerTableText = tableData.split("<table");
-			// don't forget to attach splited tag
-			for (int i = 1; i < outerTableText.length; i++) {
-				outerTableText[i] = "<table " + outerTableText[i];
-			}
-			Paragraph outerTextParagraph = null;
-			String caption = "";
-			height = 0;
-			height = (getTopBorder() == null ? 0 : getTopBorder().getWidth()) + getTopPadding();
-			for (String element : outerTableText) {
-				if (element.contains("</table")) {
-					String[] chunks = element.split("</table>");
-					for (String chunkie : chunks) {
-						if (chunkie.contains("<table")) {
-							// table title
-							Document document = Jsoup.parse(chunkie);
-							Element captionTag = document.select("caption").first();
-							Paragraph tableTitle = null;
-							if (captionTag != null) {
-								caption = captionTag.text();
-								tableTitle = new Paragraph(caption, getFontBold(), tableTitleFontSize, tableWidth,
-										HorizontalAlignment.CENTER, null);
-								yStart = tableTitle.write(tableCellContentStream, xStart, yStart)
-										- marginBetweenElementsY;
-							}
-							height += (captionTag != null ? tableTitle.getHeight() + marginBetweenElementsY : 0);
-							createInnerTable(tableWidth, document, page, true);
-						} else {
-							// make paragraph and get tokens
-							outerTextParagraph = new Paragraph(chunkie, getFont(), 8, (int) tableWidth);
-							outerTextParagraph.getLines();
-							height += (outerTextParagraph != null
-									? outerTextParagraph.getHeight() + marginBetweenElementsY : 0);
-							yStart = writeOrCalculateParagraph(outerTextParagraph, false);
+			drawContent(page);
+			tableCellContentStream.close();
+		} catch (IOException e) {
+			logger.warn("Cannot draw table for TableCell! Table data: '{}'" + tableData + e);
+		}
+	}
+
+	/**
+	 * <p>
+	 * This method draw table cell with proper X,Y position which are determined
+	 * in {@link Table#draw()} method into the shared content stream of the
+	 * page, the inner tables are drawn into the same stream
+	 * </p>
+	 * 
+	 * @param page
+	 *            {@link PDPage} where table cell be written on
+	 * @param contentContext
+	 *            {@link PageContentContext} sharing the content streams of
+	 *            the page
+	 * 
+	 */
+	public void draw(PDPage page, PageContentContext contentContext) {
+		this.contentContext = contentContext;
+		try {
+			tableCellContentStream = contentContext.getContentStream(page);
+			drawContent(page);
+		} catch (IOException e) {
+			logger.warn("Cannot draw table for TableCell! Table data: '{}'" + tableData + e);
+		} finally {
+			this.contentContext = null;
+		}
+	}
+
+	@SuppressWarnings({ "unused", "unchecked" })
+	private void drawContent(PDPage page) throws IOException {
+		// please consider the cell's paddings
+		float tableWidth = this.width - getLeftPadding() - getRightPadding();
+		// check if there is some additional text outside inner table
+		String[] outerTableText = tableData.split("<table");
+		// don't forget to attach splited tag
+		for (int i = 1; i < outerTableText.length; i++) {
+			outerTableText[i] = "<table " + outerTableText[i];
+		}
+		Paragraph outerTextParagraph = null;
+		String caption = "";
+		height = 0;
+		height = (getTopBorder() == null ? 0 : getTopBorder().getWidth()) + getTopPadding();
+		for (String element : outerTableText) {
+			if (element.contains("</table")) {
+				String[] chunks = element.split("</table>");
+				for (String chunkie : chunks) {
+					if (chunkie.contains("<table")) {
+						// table title
+						Document document = Jsoup.parse(chunkie);
+						Element captionTag = document.select("caption").first();
+						Paragraph tableTitle = null;
+						if (captionTag != null) {
+							caption = captionTag.text();
+							tableTitle = new Paragraph(caption, getFontBold(), tableTitleFontSize, tableWidth,
+									HorizontalAlignment.CENTER, Color.BLACK, null, null, 1, getFontContext());
+							yStart = tableTitle.write(tableCellContentStream, xStart, yStart)
+									- marginBetweenElementsY;
 						}
+						height += (captionTag != null ? tableTitle.getHeight() + marginBetweenElementsY : 0);
+						createInnerTable(tableWidth, document, page, true);
+					} else {
+						// make paragraph and get tokens
+						outerTextParagraph = new Paragraph(chunkie, getFont(), 8, (int) tableWidth, HorizontalAlignment.LEFT,
+								Color.BLACK, null, null, 1, getFontContext());
+						outerTextParagraph.getLines();
+						height += (outerTextParagraph != null
+								? outerTextParagraph.getHeight() + marginBetweenElementsY : 0);
+						yStart = writeOrCalculateParagraph(outerTextParagraph, false);
 					}
-				} else {
-					// make paragraph and get tokens
-					outerTextParagraph = new Paragraph(element, getFont(), 8, (int) tableWidth);
-					outerTextParagraph.getLines();
-					height += (outerTextParagraph != null ? outerTextParagraph.getHeight() + marginBetweenElementsY
-							: 0);
-					yStart = writeOrCalculateParagraph(outerTextParagraph, false);
 				}
+			} else {
+				// make paragraph and get tokens
+				outerTextParagraph = new Paragraph(element, getFont(), 8, (int) tableWidth, HorizontalAlignment.LEFT,
+						Color.BLACK, null, null, 1, getFontContext());
+				outerTextParagraph.getLines();
+				height += (outerTextParagraph != null ? outerTextParagraph.getHeight() + marginBetweenElementsY
+						: 0);
+				yStart = writeOrCalculateParagraph(outerTextParagraph, false);
 			}
-			tableCellContentStream.close();
-		} catch (IOException e) {
-			logger.warn("Cannot draw table for TableCell! Table data: '{}'" + tableData + e);
 		}
 	}
 
@@ -424,6 +469,12 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 		this.yStart = yStart;
 	}
 
+	@Override
+	public boolean isNoWrap() {
+		// the nested table lays out its own rows
+		return false;
+	}
+
 	@Override
 	public float getTextHeight() {
 		return height;
@@ -439,4 +490,9 @@ public class TableCell<T extends PDPage> extends Cell<T> {
 		return getInnerHeight() - width;
 	}
 
-}
\ No newline at end of file
+	@Override
+	CellLayout createLayout(float x) {
+		return new CellLayout(x, getWidth(), getCellHeight(), getInnerHeight(), getHorizontalFreeSpace(),
+				getVerticalFreeSpace(), Collections.<List<Token>> emptyList(), new float[0], 0);
+	}
+}
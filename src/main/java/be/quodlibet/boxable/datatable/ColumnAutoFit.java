@@ -0,0 +1,378 @@
+package be.quodlibet.boxable.datatable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import be.quodlibet.boxable.Cell;
+import be.quodlibet.boxable.utils.FontContext;
+import be.quodlibet.boxable.utils.GlyphAdvances;
+
+/**
+ * <p>
+ * Chooses the column widths of a {@link DataTable} from a sample of its rows.
+ * The texts of the sample are split into words, which are measured with the
+ * cached glyph widths of the {@link FontContext}, in parallel if a
+ * {@link ForkJoinPool} is given. Every column gets at least the width of its
+ * widest word and at most the width of its longest line. The remaining width
+ * of the table is handed out step by step to the column which reduces the
+ * estimated number of lines of the sample the most.
+ * </p>
+ * <p>
+ * The estimate wraps words at spaces and {@code <br>} tags and ignores other
+ * tags, which is close to, but not exactly, the wrapping of a
+ * {@link be.quodlibet.boxable.Paragraph}.
+ * </p>
+ */
+final class ColumnAutoFit {
+
+	// rows measured by a single task
+	private static final int ROWS_PER_TASK = 64;
+
+	// the free width is handed out in this many steps
+	private static final int STEPS = 100;
+
+	// marks a line break between the word widths of a cell
+	private static final float LINE_BREAK = -1;
+
+	private final FontContext fontContext;
+
+	private final float tableWidth;
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * @param fontContext
+	 *            {@link FontContext} which measures the texts
+	 * @param tableWidth
+	 *            width of the table
+	 * @param pool
+	 *            {@link ForkJoinPool} the rows are measured on or {@code null}
+	 *            to measure them on the calling thread
+	 */
+	ColumnAutoFit(final FontContext fontContext, final float tableWidth, final ForkJoinPool pool) {
+		this.fontContext = fontContext;
+		this.tableWidth = tableWidth;
+		this.pool = pool;
+	}
+
+	/**
+	 * <p>
+	 * Computes the widths of the columns.
+	 * </p>
+	 *
+	 * @param rows
+	 *            sampled rows, including the header row
+	 * @param templates
+	 *            template of every column of every row, which determines its
+	 *            font, font size, paddings and borders
+	 * @param columns
+	 *            number of columns
+	 * @return width of every column in percent of the table width
+	 */
+	float[] fit(final List<? extends List<String>> rows, final Cell[][] templates, final int columns) {
+		final float[][][] words = new float[rows.size()][][];
+		if (pool == null) {
+			measure(rows, templates, words, 0, rows.size());
+		} else {
+			warmUp(rows, templates);
+			pool.invoke(new MeasureRows(rows, templates, words, 0, rows.size()));
+		}
+
+		final float[] minWidths = new float[columns];
+		final float[] preferredWidths = new float[columns];
+		final float[] overheads = new float[columns];
+		for (int r = 0; r < words.length; r++) {
+			for (int c = 0; c < columns && c < words[r].length; c++) {
+				final Cell template = templates[r][c];
+				overheads[c] = Math.max(overheads[c], template.getWidth() - template.getInnerWidth());
+				float line = 0;
+				for (float word : words[r][c]) {
+					if (word == LINE_BREAK) {
+						line = 0;
+						continue;
+					}
+					minWidths[c] = Math.max(minWidths[c], word);
+					line += word;
+					preferredWidths[c] = Math.max(preferredWidths[c], line);
+				}
+			}
+		}
+		float minTotal = 0;
+		float preferredTotal = 0;
+		for (int c = 0; c < columns; c++) {
+			minWidths[c] += overheads[c];
+			preferredWidths[c] += overheads[c];
+			minTotal += minWidths[c];
+			preferredTotal += preferredWidths[c];
+		}
+
+		final float[] widths;
+		if (preferredTotal <= tableWidth) {
+			// every line fits, the free width is spread like the text
+			widths = scale(preferredWidths, preferredTotal);
+		} else if (minTotal >= tableWidth) {
+			// not even the words fit, they will be broken in any case
+			widths = scale(minWidths, minTotal);
+		} else {
+			widths = distribute(words, minWidths, preferredWidths, overheads, tableWidth - minTotal);
+		}
+		for (int c = 0; c < columns; c++) {
+			widths[c] = widths[c] * 100 / tableWidth;
+		}
+		return widths;
+	}
+
+	private float[] scale(final float[] widths, final float total) {
+		final float[] result = new float[widths.length];
+		for (int c = 0; c < widths.length; c++) {
+			result[c] = total > 0 ? widths[c] * tableWidth / total : tableWidth / widths.length;
+		}
+		return result;
+	}
+
+	private static float[] distribute(final float[][][] words, final float[] minWidths,
+			final float[] preferredWidths, final float[] overheads, final float freeWidth) {
+		final int columns = minWidths.length;
+		final float[] widths = Arrays.copyOf(minWidths, columns);
+		final int[][] lines = new int[words.length][columns];
+		for (int c = 0; c < columns; c++) {
+			countLines(words, c, widths[c] - overheads[c], lines, c);
+		}
+		final int[][] candidate = new int[words.length][1];
+		final float step = freeWidth / STEPS;
+		float free = freeWidth;
+		while (free > step / 2) {
+			int best = -1;
+			float bestGain = 0;
+			float bestStep = 0;
+			for (int c = 0; c < columns; c++) {
+				final float grow = Math.min(Math.min(step, free), preferredWidths[c] - widths[c]);
+				if (grow <= 0) {
+					continue;
+				}
+				countLines(words, c, widths[c] + grow - overheads[c], candidate, 0);
+				long saved = 0;
+				for (int r = 0; r < words.length; r++) {
+					saved += rowLines(lines[r], -1, 0) - rowLines(lines[r], c, candidate[r][0]);
+				}
+				final float gain = saved / grow;
+				if (gain > bestGain) {
+					best = c;
+					bestGain = gain;
+					bestStep = grow;
+				}
+			}
+			if (best < 0) {
+				break;
+			}
+			widths[best] += bestStep;
+			free -= bestStep;
+			countLines(words, best, widths[best] - overheads[best], lines, best);
+		}
+		// a single step doesn't save lines anymore, the rest is spread like
+		// the width which is still missing for the longest lines
+		float missing = 0;
+		for (int c = 0; c < columns; c++) {
+			missing += preferredWidths[c] - widths[c];
+		}
+		for (int c = 0; c < columns && free > 0 && missing > 0; c++) {
+			widths[c] += free * (preferredWidths[c] - widths[c]) / missing;
+		}
+		return widths;
+	}
+
+	// number of lines of a row, with the lines of one column replaced
+	private static int rowLines(final int[] lines, final int column, final int columnLines) {
+		int max = 0;
+		for (int c = 0; c < lines.length; c++) {
+			max = Math.max(max, c == column ? columnLines : lines[c]);
+		}
+		return max;
+	}
+
+	// wraps the words of a column to the width and stores the lines of every
+	// row in lines[row][index]
+	private static void countLines(final float[][][] words, final int column, final float width,
+			final int[][] lines, final int index) {
+		for (int r = 0; r < words.length; r++) {
+			lines[r][index] = column < words[r].length ? countLines(words[r][column], width) : 0;
+		}
+	}
+
+	private static int countLines(final float[] words, final float width) {
+		int count = 1;
+		float line = 0;
+		for (float word : words) {
+			if (word == LINE_BREAK) {
+				count++;
+				line = 0;
+			} else if (line + word <= width) {
+				line += word;
+			} else if (word <= width) {
+				count++;
+				line = word;
+			} else {
+				// words which are wider than the column are broken
+				final int parts = width > 0 ? (int) Math.ceil(word / width) : 1;
+				count += line > 0 ? parts : parts - 1;
+				line = word - (parts - 1) * width;
+			}
+		}
+		return count;
+	}
+
+	// measures rows [from, to), words[r][c] holds the widths of the words of
+	// cell c of row r, each including the space in front of it
+	private void measure(final List<? extends List<String>> rows, final Cell[][] templates, final float[][][] words,
+			final int from, final int to) {
+		for (int r = from; r < to; r++) {
+			final List<String> row = rows.get(r);
+			words[r] = new float[Math.min(row.size(), templates[r].length)][];
+			for (int c = 0; c < words[r].length; c++) {
+				final Cell template = templates[r][c];
+				final GlyphAdvances advances = fontContext.getGlyphAdvances(template.getFont());
+				try {
+					words[r][c] = measure(row.get(c), advances, template.getFontSize() / 1000f);
+				} catch (IOException e) {
+					throw new IllegalStateException("Unable to measure the column widths", e);
+				}
+			}
+		}
+	}
+
+	private static float[] measure(final String text, final GlyphAdvances advances, final float scale)
+			throws IOException {
+		float[] result = new float[8];
+		int count = 0;
+		final float space = width(advances, ' ') * scale;
+		float word = 0;
+		boolean spaced = false;
+		int i = 0;
+		while (i <= text.length()) {
+			final int codePoint = i < text.length() ? text.codePointAt(i) : ' ';
+			int next = i + Character.charCount(codePoint);
+			boolean lineBreak = false;
+			if (codePoint == '<') {
+				final int end = text.indexOf('>', i);
+				if (end > 0) {
+					final String tag = text.substring(i + 1, end).trim();
+					lineBreak = tag.equalsIgnoreCase("br") || tag.equalsIgnoreCase("br/");
+					next = end + 1;
+					if (!lineBreak) {
+						i = next;
+						continue;
+					}
+				}
+			}
+			if (lineBreak || codePoint <= ' ') {
+				if (count + 2 > result.length) {
+					result = Arrays.copyOf(result, result.length * 2);
+				}
+				if (word > 0) {
+					result[count++] = word + (spaced ? space : 0);
+					spaced = true;
+					word = 0;
+				}
+				if (lineBreak) {
+					result[count++] = LINE_BREAK;
+					spaced = false;
+				}
+			} else {
+				word += width(advances, codePoint) * scale;
+			}
+			i = next;
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	private static float width(final GlyphAdvances advances, final int codePoint) throws IOException {
+		try {
+			return advances.getWidth(codePoint);
+		} catch (IllegalArgumentException e) {
+			// the font can't encode the character, drawing the cell will report it
+			return 0;
+		}
+	}
+
+	// GlyphAdvances asks the font for widths it doesn't know yet, which isn't
+	// thread safe, so all characters of the sample are measured up front
+	private void warmUp(final List<? extends List<String>> rows, final Cell[][] templates) {
+		final boolean[] chars = new boolean[Character.MAX_VALUE + 1];
+		final TreeSet<Integer> supplementary = new TreeSet<>();
+		final Map<PDFont, Boolean> fonts = new IdentityHashMap<>();
+		for (int r = 0; r < rows.size(); r++) {
+			final List<String> row = rows.get(r);
+			for (int c = 0; c < row.size() && c < templates[r].length; c++) {
+				fonts.put(templates[r][c].getFont(), Boolean.TRUE);
+				final String text = row.get(c);
+				for (int i = 0; i < text.length(); i++) {
+					final char ch = text.charAt(i);
+					if (Character.isHighSurrogate(ch)) {
+						supplementary.add(text.codePointAt(i));
+					} else {
+						chars[ch] = true;
+					}
+				}
+			}
+		}
+		chars[' '] = true;
+		for (PDFont font : fonts.keySet()) {
+			final GlyphAdvances advances = fontContext.getGlyphAdvances(font);
+			try {
+				for (int ch = 0; ch < chars.length; ch++) {
+					if (chars[ch] && !Character.isSurrogate((char) ch)) {
+						width(advances, ch);
+					}
+				}
+				for (int codePoint : supplementary) {
+					width(advances, codePoint);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to measure the column widths", e);
+			}
+		}
+	}
+
+	private final class MeasureRows extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<? extends List<String>> rows;
+
+		private final Cell[][] templates;
+
+		private final float[][][] words;
+
+		private final int from;
+
+		private final int to;
+
+		MeasureRows(final List<? extends List<String>> rows, final Cell[][] templates, final float[][][] words,
+				final int from, final int to) {
+			this.rows = rows;
+			this.templates = templates;
+			this.words = words;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= ROWS_PER_TASK) {
+				measure(rows, templates, words, from, to);
+			} else {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new MeasureRows(rows, templates, words, from, middle),
+						new MeasureRows(rows, templates, words, middle, to));
+			}
+		}
+	}
+}
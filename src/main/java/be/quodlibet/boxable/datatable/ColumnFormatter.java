@@ -0,0 +1,25 @@
+package be.quodlibet.boxable.datatable;
+
+/**
+ * Formats the numbers of a {@link ColumnarData} column into the text of the cells
+ *
+ * @see DecimalColumnFormatter
+ */
+public interface ColumnFormatter {
+
+    /**
+     * Appends the text of a {@code double} value to the buffer
+     *
+     * @param value value of the cell
+     * @param out buffer the text is appended to
+     */
+    void format(double value, StringBuilder out);
+
+    /**
+     * Appends the text of a {@code long} value to the buffer
+     *
+     * @param value value of the cell
+     * @param out buffer the text is appended to
+     */
+    void format(long value, StringBuilder out);
+}
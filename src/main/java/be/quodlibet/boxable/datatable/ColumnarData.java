@@ -0,0 +1,141 @@
+package be.quodlibet.boxable.datatable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Data of a {@link DataTable} held column by column in primitive arrays, so
+ * numeric columns aren't boxed. Every numeric column has a
+ * {@link ColumnFormatter}, which appends the text of a value to a buffer
+ * that is reused for all cells.
+ * </p>
+ * <p>
+ * The arrays are not copied, they must not be changed until the data is
+ * added to the table, see {@link DataTable#addColumnsToTable(ColumnarData, boolean)}.
+ * </p>
+ */
+public class ColumnarData {
+
+	private final int rowCount;
+
+	private final List<Column> columns = new ArrayList<>();
+
+	/**
+	 * @param rowCount number of rows of every column, without header
+	 */
+	public ColumnarData(int rowCount) {
+		if (rowCount < 0) {
+			throw new IllegalArgumentException("The number of rows can't be negative");
+		}
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * <p>
+	 * Adds a column of {@code double} values.
+	 * </p>
+	 *
+	 * @param header header of the column
+	 * @param values value of every row
+	 * @param formatter {@link ColumnFormatter} of the values
+	 */
+	public void addColumn(String header, double[] values, ColumnFormatter formatter) {
+		checkRows(values.length);
+		columns.add(new Column(header, values, null, null, formatter));
+	}
+
+	/**
+	 * <p>
+	 * Adds a column of {@code long} values.
+	 * </p>
+	 *
+	 * @param header header of the column
+	 * @param values value of every row
+	 * @param formatter {@link ColumnFormatter} of the values
+	 */
+	public void addColumn(String header, long[] values, ColumnFormatter formatter) {
+		checkRows(values.length);
+		columns.add(new Column(header, null, values, null, formatter));
+	}
+
+	/**
+	 * <p>
+	 * Adds a column of texts, {@code null} values become empty cells.
+	 * </p>
+	 *
+	 * @param header header of the column
+	 * @param values text of every row
+	 */
+	public void addColumn(String header, String[] values) {
+		checkRows(values.length);
+		columns.add(new Column(header, null, null, values, null));
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public int getColumnCount() {
+		return columns.size();
+	}
+
+	/**
+	 * @param column index of the column
+	 * @return header of the column, an empty String if it has none
+	 */
+	public String getHeader(int column) {
+		String header = columns.get(column).header;
+		return header == null ? "" : header;
+	}
+
+	/**
+	 * <p>
+	 * Appends the text of a cell to the buffer.
+	 * </p>
+	 *
+	 * @param row index of the row
+	 * @param column index of the column
+	 * @param out buffer the text is appended to
+	 */
+	public void format(int row, int column, StringBuilder out) {
+		Column c = columns.get(column);
+		if (c.doubles != null) {
+			c.formatter.format(c.doubles[row], out);
+		} else if (c.longs != null) {
+			c.formatter.format(c.longs[row], out);
+		} else if (c.texts[row] != null) {
+			out.append(c.texts[row]);
+		}
+	}
+
+	private void checkRows(int length) {
+		if (length != rowCount) {
+			throw new IllegalArgumentException("Column has " + length + " rows instead of " + rowCount);
+		}
+	}
+
+	private static final class Column {
+
+		private final String header;
+
+		private final double[] doubles;
+
+		private final long[] longs;
+
+		private final String[] texts;
+
+		private final ColumnFormatter formatter;
+
+		Column(String header, double[] doubles, long[] longs, String[] texts, ColumnFormatter formatter) {
+			if (texts == null && formatter == null) {
+				throw new IllegalArgumentException("Numeric columns need a formatter");
+			}
+			this.header = header;
+			this.doubles = doubles;
+			this.longs = longs;
+			this.texts = texts;
+			this.formatter = formatter;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package be.quodlibet.boxable.datatable;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Makes a getter or a field a column of the {@link RowMapper} of its
+ * {@link DataRow} type, or sets the header, order and format of a record
+ * component.
+ * </p>
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target({ ElementType.METHOD, ElementType.FIELD })
+public @interface DataColumn {
+
+    /**
+     * @return header of the column, by default the property name split into
+     *         capitalized words
+     */
+    String header() default "";
+
+    /**
+     * @return position of the column, columns with the same position keep the
+     *         order they are declared in
+     */
+    int order() default Integer.MAX_VALUE;
+
+    /**
+     * @return number of fraction digits of a numeric column, which is formatted
+     *         by a {@link DecimalColumnFormatter} with the locale of the mapper,
+     *         -1 to format the value with {@link StringBuilder#append}
+     */
+    int fractionDigits() default -1;
+
+    /**
+     * @return {@link ColumnFormatter} of a numeric column, which has a public
+     *         constructor without arguments
+     */
+    Class<? extends ColumnFormatter> formatter() default ColumnFormatter.class;
+}
@@ -0,0 +1,30 @@
+package be.quodlibet.boxable.datatable;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Marks a bean or record whose objects are rows of a {@link DataTable}. A
+ * {@link RowMapper} named after the type with the suffix {@code RowMapper}
+ * is generated into its package at compile time, for a nested type the names
+ * of the enclosing types are prepended with {@code _}. The mappers are
+ * generated by the artifact of this library with the classifier
+ * {@code processor}, which has to be on the processor path of the compiler.
+ * </p>
+ * <p>
+ * The columns of a record are its components, and the columns of a bean are
+ * its getters and fields annotated with {@link DataColumn}, or all its public
+ * getters if there are none. Columns are in the order they are declared,
+ * unless {@link DataColumn#order()} is given. Other methods of a record
+ * annotated with {@link DataColumn} are columns too.
+ * </p>
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface DataRow {
+}
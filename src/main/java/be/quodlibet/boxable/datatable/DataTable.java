@@ -7,22 +7,32 @@ import be.quodlibet.boxable.Row;
 import be.quodlibet.boxable.Table;
 import be.quodlibet.boxable.VerticalAlignment;
 import be.quodlibet.boxable.line.LineStyle;
+import be.quodlibet.boxable.utils.FontContext;
 import be.quodlibet.boxable.utils.FontUtils;
 
 import java.awt.Color;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 
 /**
@@ -33,6 +43,9 @@ import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 public class DataTable {
 	public static final Boolean HASHEADER = true;
 	public static final Boolean NOHEADER = false;
+	// CSV files of this size and larger are mapped into memory
+	private static final long MAPPED_FILE_SIZE = 1 << 24;
+	public static final int ALL_ROWS = Integer.MAX_VALUE;
 	private Table table;
 	private List<Float> colWidths;
 	private final Cell headerCellTemplate;
@@ -42,6 +55,7 @@ public class DataTable {
 	private boolean copyFirstColumnCellTemplateOddToEven = false;
 	private boolean copyLastColumnCellTemplateOddToEven = false;
 	private UpdateCellProperty updateCellProperty = null;
+	private int autoFitRows = 0;
 
 	/**
 	 * <p>
@@ -114,6 +128,8 @@ public class DataTable {
 		dpage.setRotation(page.getRotation());
 		ddoc.addPage(dpage);
 		BaseTable dummyTable = new BaseTable(10f, 10f, 10f, table.getWidth(), 10f, ddoc, dpage, false, false);
+		// the templates use the fonts of the target document
+		dummyTable.setFontContext(table.getFontContext());
 		Row dr = dummyTable.createRow(0f);
 		headerCellTemplate = dr.createCell(10f, "A", HorizontalAlignment.CENTER, VerticalAlignment.MIDDLE);
 		if (this.colWidths == null) {
@@ -142,16 +158,17 @@ public class DataTable {
 	 */
 	private void setDefaultStyles() {
 		LineStyle thinline = new LineStyle(Color.BLACK, 0.75f);
+		final FontContext fontContext = table.getFontContext();
 		// Header style
 		headerCellTemplate.setFillColor(new Color(137, 218, 245));
 		headerCellTemplate.setTextColor(Color.BLACK);
-		headerCellTemplate.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD));
+		headerCellTemplate.setFont(fontContext.getStandardFont(Standard14Fonts.FontName.HELVETICA_BOLD));
 		headerCellTemplate.setBorderStyle(thinline);
 
 		// Normal cell style, all rows and columns are the same by default
 		defaultCellTemplate.setFillColor(new Color(242, 242, 242));
 		defaultCellTemplate.setTextColor(Color.BLACK);
-		defaultCellTemplate.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA));
+		defaultCellTemplate.setFont(fontContext.getStandardFont(Standard14Fonts.FontName.HELVETICA));
 		defaultCellTemplate.setBorderStyle(thinline);
 		Iterator<Cell> iterator = dataCellTemplateEvenList.iterator();
 		while (iterator.hasNext()){
@@ -207,6 +224,36 @@ public class DataTable {
 		this.colWidths = colWidths;
 	}
 
+	public int getAutoFitRows() {
+		return autoFitRows;
+	}
+
+	/**
+	 * <p>
+	 * Sets the number of data rows from which the column widths are chosen if
+	 * no column widths are given. The widths are chosen so that the sampled
+	 * rows need as few lines as possible: every column is at least as wide as
+	 * its widest word, and the remaining width goes to the columns where it
+	 * saves the most lines. The sampled rows are measured in parallel on the
+	 * layout pool of the {@link Table}, if it has one, see
+	 * {@link Table#setLayoutPool(java.util.concurrent.ForkJoinPool)}.
+	 * </p>
+	 * <p>
+	 * The sampled rows are held in memory until the widths are known. By
+	 * default ({@code 0}), the widths are taken from the texts of the first
+	 * row only.
+	 * </p>
+	 *
+	 * @param autoFitRows number of sampled data rows, {@link #ALL_ROWS} to
+	 * sample all of them or {@code 0} to size the columns by the first row
+	 */
+	public void setAutoFitRows(int autoFitRows) {
+		if (autoFitRows < 0) {
+			throw new IllegalArgumentException("The number of sampled rows can't be negative");
+		}
+		this.autoFitRows = autoFitRows;
+	}
+
 	/**
 	 * <p>
 	 * Get the Cell Template that will be applied to header cells.
@@ -358,28 +405,168 @@ public class DataTable {
 		if (data == null || data.isEmpty()) {
 			return;
 		}
-		StringBuilder output = new StringBuilder();
-		char separator = ';';
-
-		// Convert Map of arbitrary objects to a csv String
-		for (List<? extends Object> inputList : data) {
-			StringBuilder row = new StringBuilder();
-			for (Object v : inputList) {
-				String value = v.toString();
-				if (value.contains("" + separator)) {
-					// surround value with quotes if it contains the escape
-					// character
-					value = "\"" + value + "\"";
+		addRows(toCellValues(data.iterator()), hasHeader);
+	}
+
+	/**
+	 * <p>
+	 * Add rows of arbitrary objects to the Table. The values are converted
+	 * with {@code toString()}, {@code null} becomes an empty cell and line
+	 * breaks become {@code <br>}, like in {@link #addListToTable(List, Boolean)},
+	 * but the rows are added directly without building a CSV document.
+	 * </p>
+	 *
+	 * @param data {@link Table}'s data, one list of values per row
+	 * @param hasHeader boolean if the first row is the header of the {@link Table}
+	 * @throws IOException if a text can't be measured
+	 */
+	public void addRowsToTable(Iterable<? extends List<?>> data, boolean hasHeader) throws IOException {
+		addRowsToTable(data.iterator(), hasHeader);
+	}
+
+	/**
+	 * <p>
+	 * Add rows of arbitrary objects to the Table, see
+	 * {@link #addRowsToTable(Iterable, boolean)}. The rows are read one by
+	 * one, so they can be produced while the table is filled.
+	 * </p>
+	 *
+	 * @param rows iterator over the rows of the {@link Table}
+	 * @param hasHeader boolean if the first row is the header of the {@link Table}
+	 * @throws IOException if a text can't be measured
+	 */
+	public void addRowsToTable(Iterator<? extends List<?>> rows, boolean hasHeader) throws IOException {
+		addRows(toCellValues(rows), hasHeader);
+	}
+
+	/**
+	 * <p>
+	 * Add columnar data to the Table. Numbers are formatted by the
+	 * {@link ColumnFormatter} of their column into a buffer which is reused for
+	 * all cells, so neither the values are boxed nor is a text built for them
+	 * other than the one of the cell.
+	 * </p>
+	 *
+	 * @param data {@link ColumnarData} of the {@link Table}
+	 * @param hasHeader boolean if the headers of the columns are added as header of the {@link Table}
+	 * @throws IOException if a text can't be measured
+	 */
+	public void addColumnsToTable(final ColumnarData data, final boolean hasHeader) throws IOException {
+		final StringBuilder buffer = new StringBuilder(32);
+		addRows(new Iterator<List<String>>() {
+			private int row = hasHeader ? -1 : 0;
+
+			@Override
+			public boolean hasNext() {
+				return row < data.getRowCount();
+			}
+
+			@Override
+			public List<String> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				String[] values = new String[data.getColumnCount()];
+				for (int i = 0; i < values.length; i++) {
+					if (row < 0) {
+						values[i] = toCellValue(data.getHeader(i));
+					} else {
+						buffer.setLength(0);
+						data.format(row, i, buffer);
+						values[i] = toCellValue(buffer);
+					}
 				}
-				value = value.replaceAll("\n", "<br>");
-				row.append(value).append(separator);
+				row++;
+				return Arrays.asList(values);
 			}
-			// remove the last separator
-			row = new StringBuilder(row.substring(0, row.length() - 1));
-			output.append(row).append("\n");
-		}
 
-		addCsvToTable(output.toString(), hasHeader, separator);
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		}, hasHeader);
+	}
+
+	/**
+	 * <p>
+	 * Add objects to the Table, one row per object. The headers and the texts
+	 * of the cells are supplied by the {@link RowMapper}, usually the one
+	 * generated for a type annotated with {@link DataRow}.
+	 * </p>
+	 *
+	 * @param data objects of the rows of the {@link Table}
+	 * @param mapper {@link RowMapper} of the objects
+	 * @param hasHeader boolean if the headers of the mapper are added as header of the {@link Table}
+	 * @param <T> type of the objects
+	 * @throws IOException if a text can't be measured
+	 */
+	public <T> void addObjectsToTable(Iterable<? extends T> data, RowMapper<? super T> mapper, boolean hasHeader)
+			throws IOException {
+		addObjectsToTable(data.iterator(), mapper, hasHeader);
+	}
+
+	/**
+	 * <p>
+	 * Add objects to the Table, see
+	 * {@link #addObjectsToTable(Iterable, RowMapper, boolean)}. The objects are
+	 * read one by one, so they can be produced while the table is filled.
+	 * </p>
+	 *
+	 * @param data iterator over the objects of the rows of the {@link Table}
+	 * @param mapper {@link RowMapper} of the objects
+	 * @param hasHeader boolean if the headers of the mapper are added as header of the {@link Table}
+	 * @param <T> type of the objects
+	 * @throws IOException if a text can't be measured
+	 */
+	public <T> void addObjectsToTable(final Iterator<? extends T> data, final RowMapper<? super T> mapper,
+			final boolean hasHeader) throws IOException {
+		final StringBuilder buffer = new StringBuilder(32);
+		addRows(new Iterator<List<String>>() {
+			private boolean header = hasHeader;
+
+			@Override
+			public boolean hasNext() {
+				return header || data.hasNext();
+			}
+
+			@Override
+			public List<String> next() {
+				String[] values = new String[mapper.getColumnCount()];
+				if (header) {
+					for (int i = 0; i < values.length; i++) {
+						values[i] = toCellValue(mapper.getHeader(i));
+					}
+					header = false;
+				} else {
+					T row = data.next();
+					for (int i = 0; i < values.length; i++) {
+						buffer.setLength(0);
+						mapper.format(row, i, buffer);
+						values[i] = toCellValue(buffer);
+					}
+				}
+				return Arrays.asList(values);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		}, hasHeader);
+	}
+
+	/**
+	 * <p>
+	 * Creates a {@link RowSubscriber} which adds the rows it receives from an
+	 * asynchronous source to the Table, like
+	 * {@link #addRowsToTable(Iterable, boolean)} does.
+	 * </p>
+	 *
+	 * @param hasHeader boolean if the first row is the header of the {@link Table}
+	 * @return new {@link RowSubscriber}
+	 */
+	public RowSubscriber createRowSubscriber(boolean hasHeader) {
+		return new RowSubscriber(new RowWriter(hasHeader), table.getCurrentPage().getMediaBox().getHeight());
 	}
 
 	/**
@@ -393,20 +580,155 @@ public class DataTable {
 	 * @throws IOException parsing error
 	 */
 	public void addCsvToTable(String data, Boolean hasHeader, char separator) throws IOException {
-		Iterable<CSVRecord> records = CSVParser.parse(data, CSVFormat.EXCEL.withDelimiter(separator));
-		Boolean isHeader = hasHeader;
-		Boolean isFirst = true;
-		Boolean odd = true;
-		Map<Integer, Float> colWidths = new HashMap<>();
-		int numcols = 0;
-		int numrow = 0;
-		for (CSVRecord line : records) {
+		addCsvToTable(new StringReader(data), hasHeader, separator);
+	}
+
+	/**
+	 * <p>
+	 * Add a CSV document read from a {@link Reader} to the Table. The records
+	 * are parsed and added one by one, so together with a
+	 * {@link be.quodlibet.boxable.StreamingTable} the document is never held
+	 * in memory as a whole. The reader isn't closed.
+	 * </p>
+	 *
+	 * @param data {@link Reader} of the CSV document
+	 * @param hasHeader boolean if {@link Table} has header
+	 * @param separator {@code char} on which data will be parsed
+	 * @throws IOException if the document can't be read
+	 */
+	public void addCsvToTable(Reader data, Boolean hasHeader, char separator) throws IOException {
+		CSVParser parser = CSVFormat.EXCEL.withDelimiter(separator).parse(data);
+		addRows(recordValues(parser.iterator()), hasHeader);
+	}
+
+	/**
+	 * <p>
+	 * Add a CSV document read from an {@link InputStream} to the Table, see
+	 * {@link #addCsvToTable(Reader, Boolean, char)}. The stream isn't closed.
+	 * </p>
+	 *
+	 * @param data {@link InputStream} of the CSV document
+	 * @param charset {@link Charset} of the CSV document
+	 * @param hasHeader boolean if {@link Table} has header
+	 * @param separator {@code char} on which data will be parsed
+	 * @throws IOException if the document can't be read
+	 */
+	public void addCsvToTable(InputStream data, Charset charset, Boolean hasHeader, char separator)
+			throws IOException {
+		addCsvToTable(new InputStreamReader(data, charset), hasHeader, separator);
+	}
+
+	/**
+	 * <p>
+	 * Add a CSV file to the Table, see
+	 * {@link #addCsvToTable(Reader, Boolean, char)}. Large files are mapped
+	 * into memory and decoded incrementally instead of being read into the
+	 * heap.
+	 * </p>
+	 *
+	 * @param data {@link Path} of the CSV file
+	 * @param charset {@link Charset} of the CSV file
+	 * @param hasHeader boolean if {@link Table} has header
+	 * @param separator {@code char} on which data will be parsed
+	 * @throws IOException if the file can't be read
+	 */
+	public void addCsvToTable(Path data, Charset charset, Boolean hasHeader, char separator) throws IOException {
+		try (Reader reader = Files.size(data) < MAPPED_FILE_SIZE ? Files.newBufferedReader(data, charset)
+				: new MappedFileReader(data, charset)) {
+			addCsvToTable(reader, hasHeader, separator);
+		}
+	}
+
+	private void addRows(Iterator<List<String>> lines, boolean hasHeader) throws IOException {
+		RowWriter writer = new RowWriter(hasHeader);
+		while (lines.hasNext()) {
+			writer.add(lines.next());
+		}
+		writer.finish();
+	}
+
+	/**
+	 * <p>
+	 * Adds rows to the Table one by one. It keeps what the rows depend on
+	 * between them: the column widths, whether the next row is the header and
+	 * whether it is odd. While the column widths are sampled, see
+	 * {@link #setAutoFitRows(int)}, the rows are held back.
+	 * </p>
+	 */
+	final class RowWriter {
+		private final boolean hasHeader;
+		private List<List<String>> sample;
+		private final long sampleSize;
+		// the sample while its rows are written
+		private List<List<String>> fitSample;
+		private Boolean isHeader;
+		private Boolean isFirst = true;
+		private Boolean odd = true;
+		private final Map<Integer, Float> colWidths = new HashMap<>();
+		private int numcols = 0;
+		private int numrow = 0;
+
+		RowWriter(boolean hasHeader) {
+			this.hasHeader = hasHeader;
+			this.isHeader = hasHeader;
+			if (DataTable.this.colWidths == null && autoFitRows > 0) {
+				sample = new ArrayList<>();
+			}
+			sampleSize = (long) autoFitRows + (hasHeader ? 1 : 0);
+		}
+
+		/**
+		 * @param line texts of the cells of the row
+		 * @return the last row which was added to the table, {@code null} if
+		 * the row is held back
+		 * @throws IOException if a text can't be measured
+		 */
+		Row add(List<String> line) throws IOException {
+			if (sample == null) {
+				return write(line);
+			}
+			sample.add(line);
+			return sample.size() < sampleSize ? null : finishSample();
+		}
+
+		/**
+		 * <p>
+		 * Adds the rows which are still held back.
+		 * </p>
+		 *
+		 * @throws IOException if a text can't be measured
+		 */
+		void finish() throws IOException {
+			if (sample != null) {
+				finishSample();
+			}
+		}
 
+		private Row finishSample() throws IOException {
+			fitSample = sample;
+			sample = null;
+			Row row = null;
+			for (List<String> line : fitSample) {
+				row = write(line);
+			}
+			fitSample = null;
+			return row;
+		}
+
+		private Row write(List<String> line) throws IOException {
+			Row row;
 			if (isFirst) {
+				updateTemplateList(line.size());
 
 				// calculate the width of the columns
 				float totalWidth = 0.0f;
-				if (this.colWidths == null) {
+				if (fitSample != null) {
+					numcols = Math.max(line.size() - 1, 0);
+					float[] widths = autoFit(fitSample, hasHeader, numcols + 1);
+					for (int i = 0; i <= numcols; i++) {
+						colWidths.put(i, widths[i]);
+					}
+				} else if (DataTable.this.colWidths == null) {
                     
 					for (int i = 0; i < line.size(); i++) {
 						String cellValue = line.get(i);
@@ -435,18 +757,17 @@ public class DataTable {
 						colWidths.put(i, widthPct);
 					}
 				} else {
-					for (Float width : this.colWidths){
+					for (Float width : DataTable.this.colWidths){
 						totalWidth += width;
 					}
-					for (int i = 0; i < this.colWidths.size(); i++) {
+					for (int i = 0; i < DataTable.this.colWidths.size(); i++) {
 						// to
 						// percent
-						colWidths.put(i,this.colWidths.get(i) / (totalWidth / 100));
+						colWidths.put(i,DataTable.this.colWidths.get(i) / (totalWidth / 100));
 						numcols = i;
 					}
 
 				}
-				updateTemplateList(line.size());
 				isFirst = false;
 			}
 			if (isHeader) {
@@ -462,6 +783,7 @@ public class DataTable {
 				}
 				table.addHeaderRow(h);
 				isHeader = false;
+				row = h;
 			} else {
 				Row r = table.createRow(dataCellTemplateEvenList.get(0).getCellHeight());
 				for (int i = 0; i <= numcols; i++) {
@@ -483,9 +805,106 @@ public class DataTable {
 						updateCellProperty.updateCellPropertiesAtColumn(c,i,numrow);
 				}
 				numrow++;
+				row = r;
 			}
 			odd = !odd;
+			return row;
+		}
+	}
+
+	// the values of every record as list of the texts of the cells
+	private static Iterator<List<String>> recordValues(final Iterator<CSVRecord> records) {
+		return new Iterator<List<String>>() {
+			@Override
+			public boolean hasNext() {
+				return records.hasNext();
+			}
+
+			@Override
+			public List<String> next() {
+				final CSVRecord record = records.next();
+				return new AbstractList<String>() {
+					@Override
+					public String get(int index) {
+						return record.get(index);
+					}
+
+					@Override
+					public int size() {
+						return record.size();
+					}
+				};
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	// converts the values of every row to the texts of the cells
+	private static Iterator<List<String>> toCellValues(final Iterator<?> rows) {
+		return new Iterator<List<String>>() {
+			@Override
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+
+			@Override
+			public List<String> next() {
+				return toCellValues((List<?>) rows.next());
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	static List<String> toCellValues(List<?> row) {
+		List<String> values = new ArrayList<>(row.size());
+		for (Object value : row) {
+			values.add(toCellValue(value));
+		}
+		return values;
+	}
+
+	private static String toCellValue(Object value) {
+		if (value == null) {
+			return "";
+		}
+		String text = value.toString();
+		int lineBreak = text.indexOf('\n');
+		if (lineBreak < 0) {
+			return text;
+		}
+		StringBuilder result = new StringBuilder(text.length() + 8);
+		int start = 0;
+		while (lineBreak >= 0) {
+			result.append(text, start, lineBreak).append("<br>");
+			start = lineBreak + 1;
+			lineBreak = text.indexOf('\n', start);
+		}
+		return result.append(text, start, text.length()).toString();
+	}
+
+	// column widths in percent chosen from the sampled rows
+	private float[] autoFit(List<List<String>> sample, boolean hasHeader, int columns) {
+		Cell[][] templates = new Cell[sample.size()][columns];
+		for (int r = 0; r < sample.size(); r++) {
+			for (int i = 0; i < columns; i++) {
+				if (hasHeader && r == 0) {
+					templates[r][i] = headerCellTemplate;
+				} else {
+					// the rows alternate starting with an odd one, like in addRows
+					templates[r][i] = r % 2 == 0 ? dataCellTemplateOddList.get(i) : dataCellTemplateEvenList.get(i);
+				}
+			}
 		}
+		return new ColumnAutoFit(table.getFontContext(), table.getWidth(), table.getLayoutPool()).fit(sample,
+				templates, columns);
 	}
 
 	private void updateTemplateList(int size) {
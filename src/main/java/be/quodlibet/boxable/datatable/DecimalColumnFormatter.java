@@ -0,0 +1,207 @@
+package be.quodlibet.boxable.datatable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * <p>
+ * Formats numbers with a fixed number of fraction digits and the decimal and
+ * grouping separators of a {@link Locale}, like {@code 1.234.567,89}. The
+ * digits are appended to the buffer directly, without creating a
+ * {@link String} or a {@link java.text.NumberFormat} result for every value.
+ * </p>
+ * <p>
+ * {@code double} values are rounded half up by their exact binary value, like
+ * {@link java.text.DecimalFormat} with {@link RoundingMode#HALF_UP}, so
+ * {@code 7008.049999999999} is rounded to {@code 7008.0}. Values which are
+ * rounded to zero are formatted without minus sign. Instances are immutable and can be shared
+ * between columns and threads.
+ * </p>
+ */
+public class DecimalColumnFormatter implements ColumnFormatter {
+
+	private static final int MAX_FRACTION_DIGITS = 9;
+
+	// scaled doubles below this limit are rounded exactly enough as long
+	private static final double LONG_LIMIT = 1e15;
+
+	private static final long[] POWERS_OF_TEN = new long[MAX_FRACTION_DIGITS + 1];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private final int fractionDigits;
+
+	private final boolean grouping;
+
+	private final char zeroDigit;
+
+	private final char decimalSeparator;
+
+	private final char groupingSeparator;
+
+	private final char minusSign;
+
+	private final String nan;
+
+	private final String infinity;
+
+	/**
+	 * <p>
+	 * Creates a formatter which groups the integer digits by thousands.
+	 * </p>
+	 *
+	 * @param fractionDigits number of digits after the decimal separator, from
+	 * 0 to 9
+	 * @param locale {@link Locale} whose digits and separators are used
+	 */
+	public DecimalColumnFormatter(int fractionDigits, Locale locale) {
+		this(fractionDigits, true, locale);
+	}
+
+	/**
+	 * @param fractionDigits number of digits after the decimal separator, from
+	 * 0 to 9
+	 * @param grouping {@code true} to group the integer digits by thousands
+	 * @param locale {@link Locale} whose digits and separators are used
+	 */
+	public DecimalColumnFormatter(int fractionDigits, boolean grouping, Locale locale) {
+		if (fractionDigits < 0 || fractionDigits > MAX_FRACTION_DIGITS) {
+			throw new IllegalArgumentException("Fraction digits have to be between 0 and " + MAX_FRACTION_DIGITS);
+		}
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+		this.fractionDigits = fractionDigits;
+		this.grouping = grouping;
+		this.zeroDigit = symbols.getZeroDigit();
+		this.decimalSeparator = symbols.getDecimalSeparator();
+		this.groupingSeparator = symbols.getGroupingSeparator();
+		this.minusSign = symbols.getMinusSign();
+		this.nan = symbols.getNaN();
+		this.infinity = symbols.getInfinity();
+	}
+
+	public int getFractionDigits() {
+		return fractionDigits;
+	}
+
+	public boolean isGrouping() {
+		return grouping;
+	}
+
+	@Override
+	public void format(double value, StringBuilder out) {
+		if (Double.isNaN(value)) {
+			out.append(nan);
+			return;
+		}
+		if (Double.isInfinite(value)) {
+			if (value < 0) {
+				out.append(minusSign);
+			}
+			out.append(infinity);
+			return;
+		}
+		double scaled = Math.abs(value) * POWERS_OF_TEN[fractionDigits];
+		if (scaled >= LONG_LIMIT) {
+			// too large to be rounded as long, such values are rare in a table
+			formatExact(value, out);
+			return;
+		}
+		double integer = Math.floor(scaled);
+		double fraction = scaled - integer;
+		if (Math.abs(fraction - 0.5) <= Math.ulp(scaled)) {
+			// the scaled value is rounded itself, so it can't tell on which side
+			// of the tie the value is
+			formatExact(value, out);
+			return;
+		}
+		long units = (long) integer + (fraction > 0.5 ? 1 : 0);
+		if (units == 0) {
+			value = 0;
+		}
+		if (value < 0) {
+			out.append(minusSign);
+		}
+		appendInteger(units / POWERS_OF_TEN[fractionDigits], out);
+		appendFraction(units % POWERS_OF_TEN[fractionDigits], out);
+	}
+
+	@Override
+	public void format(long value, StringBuilder out) {
+		if (value < 0) {
+			out.append(minusSign);
+		}
+		// negated, because the absolute value of Long.MIN_VALUE is no long
+		appendNegatedInteger(value < 0 ? value : -value, out);
+		appendFraction(0, out);
+	}
+
+	private void formatExact(double value, StringBuilder out) {
+		BigDecimal rounded = new BigDecimal(value).abs().setScale(fractionDigits, RoundingMode.HALF_UP);
+		if (value < 0 && rounded.signum() != 0) {
+			out.append(minusSign);
+		}
+		StringBuilder digits = new StringBuilder(rounded.unscaledValue().toString());
+		// values below one have a zero before the decimal separator
+		while (digits.length() <= fractionDigits) {
+			digits.insert(0, '0');
+		}
+		int integerDigits = digits.length() - fractionDigits;
+		for (int i = 0; i < integerDigits; i++) {
+			if (grouping && i > 0 && (integerDigits - i) % 3 == 0) {
+				out.append(groupingSeparator);
+			}
+			out.append(digit(digits.charAt(i) - '0'));
+		}
+		if (fractionDigits > 0) {
+			out.append(decimalSeparator);
+			for (int i = integerDigits; i < digits.length(); i++) {
+				out.append(digit(digits.charAt(i) - '0'));
+			}
+		}
+	}
+
+	private void appendInteger(long value, StringBuilder out) {
+		appendNegatedInteger(-value, out);
+	}
+
+	// appends the digits of -value, which is zero or negative
+	private void appendNegatedInteger(long value, StringBuilder out) {
+		int start = out.length();
+		int count = 0;
+		do {
+			if (grouping && count > 0 && count % 3 == 0) {
+				out.append(groupingSeparator);
+			}
+			out.append(digit((int) -(value % 10)));
+			value /= 10;
+			count++;
+		} while (value != 0);
+		// the digits were appended from the last one
+		for (int i = start, j = out.length() - 1; i < j; i++, j--) {
+			char c = out.charAt(i);
+			out.setCharAt(i, out.charAt(j));
+			out.setCharAt(j, c);
+		}
+	}
+
+	private void appendFraction(long fraction, StringBuilder out) {
+		if (fractionDigits == 0) {
+			return;
+		}
+		out.append(decimalSeparator);
+		for (int i = fractionDigits - 1; i >= 0; i--) {
+			out.append(digit((int) (fraction / POWERS_OF_TEN[i] % 10)));
+		}
+	}
+
+	private char digit(int digit) {
+		return (char) (zeroDigit + digit);
+	}
+}
@@ -0,0 +1,125 @@
+package be.quodlibet.boxable.datatable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * {@link Reader} which maps a file into memory region by region and decodes it
+ * incrementally, so reading a large file neither copies its bytes to the heap
+ * nor holds its whole text there.
+ * </p>
+ * <p>
+ * Malformed input is reported like by
+ * {@link java.nio.file.Files#newBufferedReader(Path, Charset)}. Mapped regions
+ * are released by the garbage collector once they are read.
+ * </p>
+ */
+final class MappedFileReader extends Reader {
+
+	// size of the regions of the file which are mapped at once
+	static final int REGION_SIZE = 1 << 26;
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	private final int regionSize;
+
+	private final CharsetDecoder decoder;
+
+	private final CharBuffer chars = CharBuffer.allocate(8192);
+
+	private MappedByteBuffer region;
+
+	private long regionStart;
+
+	// all bytes are decoded, only the decoder has to be flushed
+	private boolean decoded;
+
+	private boolean endOfInput;
+
+	MappedFileReader(final Path file, final Charset charset) throws IOException {
+		this(file, charset, REGION_SIZE);
+	}
+
+	MappedFileReader(final Path file, final Charset charset, final int regionSize) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.size = channel.size();
+		this.regionSize = regionSize;
+		this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		chars.flip();
+		try {
+			map(0);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public int read(final char[] cbuf, final int off, final int len) throws IOException {
+		if (region == null) {
+			throw new IOException("Reader closed");
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (!chars.hasRemaining()) {
+			fill();
+			if (!chars.hasRemaining()) {
+				return -1;
+			}
+		}
+		final int count = Math.min(len, chars.remaining());
+		chars.get(cbuf, off, count);
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		region = null;
+		channel.close();
+	}
+
+	// decodes the next chars, maps the following region when the current one
+	// is used up
+	private void fill() throws IOException {
+		chars.clear();
+		while (chars.position() == 0 && !endOfInput) {
+			if (decoded) {
+				endOfInput = decoder.flush(chars).isUnderflow();
+				break;
+			}
+			final boolean last = regionStart + region.limit() == size;
+			final CoderResult result = decoder.decode(region, chars, last);
+			if (result.isError()) {
+				result.throwException();
+			}
+			if (result.isUnderflow()) {
+				if (last) {
+					decoded = true;
+				} else {
+					// bytes of a char split by the region end are mapped again
+					map(regionStart + region.position());
+				}
+			}
+		}
+		chars.flip();
+	}
+
+	private void map(final long position) throws IOException {
+		region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(regionSize, size - position));
+		regionStart = position;
+	}
+}
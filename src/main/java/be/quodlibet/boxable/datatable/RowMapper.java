@@ -0,0 +1,28 @@
+package be.quodlibet.boxable.datatable;
+
+/**
+ * Supplies the header and cell texts of a {@link DataTable} for objects of a type, one object per row
+ *
+ * Implementations are usually generated for types annotated with {@link DataRow}.
+ *
+ * @param <T> type of the objects
+ */
+public interface RowMapper<T> {
+
+    int getColumnCount();
+
+    /**
+     * @param column index of the column
+     * @return header of the column
+     */
+    String getHeader(int column);
+
+    /**
+     * Appends the text of a cell to the buffer
+     *
+     * @param row object of the row
+     * @param column index of the column
+     * @param out buffer the text is appended to
+     */
+    void format(T row, int column, StringBuilder out);
+}
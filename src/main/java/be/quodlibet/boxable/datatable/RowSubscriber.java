@@ -0,0 +1,222 @@
+package be.quodlibet.boxable.datatable;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import be.quodlibet.boxable.Row;
+
+/**
+ * <p>
+ * Receives the rows of a {@link DataTable} from an asynchronous source, like a
+ * message consumer or paged requests, and adds them to the table as they
+ * arrive. The methods follow {@code java.util.concurrent.Flow.Subscriber}, so a
+ * {@code Flow.Subscriber<List<?>>} which passes its calls on, with the
+ * {@code Flow.Subscription} wrapped in a {@link RowSubscription}, subscribes
+ * it to a {@code Flow.Publisher}.
+ * </p>
+ * <p>
+ * The rows are requested in batches of about the number of rows which fit on a
+ * page, estimated from the height of the rows added so far. More rows are
+ * requested once half of a batch has arrived. Together with a
+ * {@link be.quodlibet.boxable.StreamingTable}, which draws its rows while they
+ * are created, only a few pages of rows are held in memory and the first pages
+ * are drawn while the source still sends rows.
+ * </p>
+ * <p>
+ * The rows are added on the thread which calls {@link #onNext(List)}, so the
+ * table must not be used by other threads until {@link #await()} returns.
+ * Draw the table afterwards to draw the remaining rows.
+ * </p>
+ */
+public class RowSubscriber {
+
+	// rows requested while no row height is known yet
+	private static final int FIRST_BATCH = 16;
+
+	private static final int MAX_BATCH = 1024;
+
+	private final DataTable.RowWriter writer;
+
+	private final float pageHeight;
+
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	private int batchSize;
+
+	private RowSubscription subscription;
+
+	// rows which are requested but didn't arrive yet
+	private long requested;
+
+	private float rowHeights;
+
+	private int rowCount;
+
+	private boolean finished;
+
+	private volatile Throwable error;
+
+	RowSubscriber(DataTable.RowWriter writer, float pageHeight) {
+		this.writer = writer;
+		this.pageHeight = pageHeight;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * <p>
+	 * Sets a fixed number of rows which are requested at once. By default
+	 * ({@code 0}), the number of rows which fit on a page is requested.
+	 * </p>
+	 *
+	 * @param batchSize number of rows requested at once or {@code 0}
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 0) {
+			throw new IllegalArgumentException("The batch size can't be negative");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * <p>
+	 * Starts the subscription by requesting the first batch of rows. A second
+	 * subscription is cancelled.
+	 * </p>
+	 *
+	 * @param subscription {@link RowSubscription} to the source of the rows
+	 */
+	public void onSubscribe(RowSubscription subscription) {
+		if (this.subscription != null || finished) {
+			subscription.cancel();
+			return;
+		}
+		this.subscription = subscription;
+		request(batch());
+	}
+
+	/**
+	 * <p>
+	 * Adds a row to the table. If it can't be added, the subscription is
+	 * cancelled and {@link #await()} throws the exception.
+	 * </p>
+	 *
+	 * @param row values of the cells, converted like by
+	 * {@link DataTable#addRowsToTable(Iterable, boolean)}
+	 */
+	public void onNext(List<?> row) {
+		if (finished) {
+			return;
+		}
+		requested--;
+		try {
+			Row added = writer.add(DataTable.toCellValues(row));
+			if (added != null && !added.isHeaderRow()) {
+				rowHeights += added.getHeight();
+				rowCount++;
+			}
+		} catch (IOException | RuntimeException e) {
+			subscription.cancel();
+			finish(e);
+			return;
+		}
+		int batch = batch();
+		if (requested <= batch / 2) {
+			request(batch - requested);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Ends the rows with an error of the source, which {@link #await()} throws.
+	 * </p>
+	 *
+	 * @param throwable error of the source
+	 */
+	public void onError(Throwable throwable) {
+		if (finished) {
+			return;
+		}
+		if (throwable instanceof RuntimeException || throwable instanceof Error) {
+			finish(throwable);
+		} else {
+			finish(new IllegalStateException("Unable to receive the rows", throwable));
+		}
+	}
+
+	/**
+	 * <p>
+	 * Adds the rows which are still held back, see
+	 * {@link DataTable#setAutoFitRows(int)}, and ends the rows.
+	 * </p>
+	 */
+	public void onComplete() {
+		if (finished) {
+			return;
+		}
+		try {
+			writer.finish();
+			finish(null);
+		} catch (IOException | RuntimeException e) {
+			finish(e);
+		}
+	}
+
+	/**
+	 * @return {@code true} once all rows are received or the subscription
+	 *         failed
+	 */
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	/**
+	 * <p>
+	 * Waits until all rows are added to the table.
+	 * </p>
+	 *
+	 * @throws IOException if a row couldn't be added
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 * @throws IllegalStateException if the source failed
+	 */
+	public void await() throws IOException, InterruptedException {
+		done.await();
+		Throwable failure = error;
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+	}
+
+	private void finish(Throwable failure) {
+		finished = true;
+		error = failure;
+		done.countDown();
+	}
+
+	private void request(long n) {
+		if (n > 0) {
+			requested += n;
+			subscription.request(n);
+		}
+	}
+
+	// rows requested at once, about as many as fit on a page
+	private int batch() {
+		if (batchSize > 0) {
+			return batchSize;
+		}
+		if (rowCount == 0 || rowHeights <= 0) {
+			return FIRST_BATCH;
+		}
+		return (int) Math.max(1, Math.min(MAX_BATCH, pageHeight / (rowHeights / rowCount)));
+	}
+}
@@ -0,0 +1,19 @@
+package be.quodlibet.boxable.datatable;
+
+/**
+ * Subscription of a {@link RowSubscriber} to a source of rows, like {@code java.util.concurrent.Flow.Subscription}
+ */
+public interface RowSubscription {
+
+    /**
+     * Asks the source for more rows
+     *
+     * @param n number of rows, which is positive
+     */
+    void request(long n);
+
+    /**
+     * Asks the source to stop sending rows
+     */
+    void cancel();
+}
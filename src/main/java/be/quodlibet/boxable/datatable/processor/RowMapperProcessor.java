@@ -0,0 +1,514 @@
+package be.quodlibet.boxable.datatable.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+import be.quodlibet.boxable.datatable.ColumnFormatter;
+import be.quodlibet.boxable.datatable.DataColumn;
+import be.quodlibet.boxable.datatable.DataRow;
+import be.quodlibet.boxable.datatable.RowMapper;
+
+/**
+ * <p>
+ * Generates the {@link RowMapper} of every type annotated with
+ * {@link DataRow}. The mappers call the accessors of the columns directly, so
+ * filling a {@link be.quodlibet.boxable.datatable.DataTable} with them needs
+ * no reflection.
+ * </p>
+ * <p>
+ * The processor isn't part of the library jar, so it doesn't run for every
+ * project which uses the library. It is published as the library's artifact
+ * with the classifier {@code processor}, which registers it as a service and
+ * contains the annotations it reads. Add that artifact to the processor path
+ * to generate the mappers: {@code annotationProcessorPaths} of the Maven
+ * compiler plugin, the {@code annotationProcessor} configuration of Gradle or
+ * {@code -processorpath} of javac.
+ * </p>
+ */
+@SupportedAnnotationTypes("be.quodlibet.boxable.datatable.DataRow")
+public class RowMapperProcessor extends AbstractProcessor {
+
+	// ElementKind.RECORD and RECORD_COMPONENT are newer than the Java version
+	// of this library, records are only known to newer compilers
+	private static final String RECORD = "RECORD";
+
+	private static final String RECORD_COMPONENT = "RECORD_COMPONENT";
+
+	private static final int MAX_FRACTION_DIGITS = 9;
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getElementsAnnotatedWith(DataRow.class)) {
+			TypeElement type = (TypeElement) element;
+			List<Column> columns = findColumns(type);
+			if (columns == null) {
+				continue;
+			}
+			try {
+				write(type, columns);
+			} catch (IOException e) {
+				error("Unable to write the row mapper: " + e.getMessage(), type);
+			}
+		}
+		return true;
+	}
+
+	// the columns of the type in their order, null if there is an error
+	private List<Column> findColumns(TypeElement type) {
+		boolean record = type.getKind().name().equals(RECORD);
+		if (type.getKind() != ElementKind.CLASS && !record) {
+			error("@DataRow can only be applied to classes and records", type);
+			return null;
+		}
+		if (!type.getTypeParameters().isEmpty()) {
+			error("@DataRow can't be applied to generic types", type);
+			return null;
+		}
+		for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+			if (e.getModifiers().contains(Modifier.PRIVATE)) {
+				error("@DataRow types can't be private", type);
+				return null;
+			}
+			if (((TypeElement) e).getNestingKind() == NestingKind.MEMBER && !e.getModifiers().contains(Modifier.STATIC)
+					&& e.getEnclosingElement().getKind() == ElementKind.CLASS) {
+				error("@DataRow types can't be inner classes", type);
+				return null;
+			}
+			if (((TypeElement) e).getNestingKind() == NestingKind.LOCAL
+					|| ((TypeElement) e).getNestingKind() == NestingKind.ANONYMOUS) {
+				error("@DataRow types can't be local classes", type);
+				return null;
+			}
+		}
+
+		List<Element> members = members(type);
+		List<Column> columns = new ArrayList<>();
+		Set<String> accessors = new HashSet<>();
+		boolean valid = true;
+		if (record) {
+			// all components are columns, their annotations are on the accessors
+			for (Element member : type.getEnclosedElements()) {
+				if (member.getKind().name().equals(RECORD_COMPONENT)) {
+					String name = member.getSimpleName().toString();
+					ExecutableElement accessor = accessor(members, name);
+					DataColumn annotation = accessor == null ? null : accessor.getAnnotation(DataColumn.class);
+					Column column = annotation == null
+							? new Column(name + "()", header(name), member.asType(), Integer.MAX_VALUE, -1, null,
+									columns.size())
+							: column(accessor, annotation, name + "()", name, member.asType(), columns.size());
+					valid &= column != null;
+					columns.add(column);
+					accessors.add(name + "()");
+				}
+			}
+		}
+		for (Element member : members) {
+			DataColumn annotation = member.getAnnotation(DataColumn.class);
+			if (annotation == null || member.getModifiers().contains(Modifier.STATIC)) {
+				continue;
+			}
+			String accessor;
+			String property;
+			TypeMirror valueType;
+			if (member.getKind() == ElementKind.METHOD) {
+				ExecutableElement method = (ExecutableElement) member;
+				if (!method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID
+						|| method.getModifiers().contains(Modifier.PRIVATE)) {
+					error("@DataColumn methods need a return value, no parameters and can't be private", member);
+					valid = false;
+					continue;
+				}
+				accessor = method.getSimpleName() + "()";
+				property = propertyName(method.getSimpleName().toString(), record);
+				valueType = method.getReturnType();
+			} else if (record) {
+				// the fields of the components are read by their accessors
+				continue;
+			} else {
+				property = member.getSimpleName().toString();
+				ExecutableElement getter = getter(members, property);
+				if (getter != null) {
+					accessor = getter.getSimpleName() + "()";
+				} else if (!member.getModifiers().contains(Modifier.PRIVATE)) {
+					accessor = property;
+				} else {
+					error("@DataColumn fields need a getter or can't be private", member);
+					valid = false;
+					continue;
+				}
+				valueType = member.asType();
+			}
+			if (accessors.add(accessor)) {
+				Column column = column(member, annotation, accessor, property, valueType, columns.size());
+				valid &= column != null;
+				columns.add(column);
+			}
+		}
+		if (!valid) {
+			return null;
+		}
+		if (columns.isEmpty()) {
+			for (Element member : members) {
+				if (isGetter(member)) {
+					String name = member.getSimpleName().toString();
+					if (accessors.add(name + "()")) {
+						columns.add(new Column(name + "()", header(propertyName(name, false)),
+								((ExecutableElement) member).getReturnType(), Integer.MAX_VALUE, -1, null,
+								columns.size()));
+					}
+				}
+			}
+		}
+		if (columns.isEmpty()) {
+			error("@DataRow types need at least one column", type);
+			return null;
+		}
+		Collections.sort(columns, new Comparator<Column>() {
+			@Override
+			public int compare(Column c1, Column c2) {
+				int order = Integer.compare(c1.order, c2.order);
+				return order != 0 ? order : Integer.compare(c1.index, c2.index);
+			}
+		});
+		return columns;
+	}
+
+	private Column column(Element member, DataColumn annotation, String accessor, String property,
+			TypeMirror valueType, int index) {
+		String formatter = null;
+		try {
+			Class<? extends ColumnFormatter> formatterClass = annotation.formatter();
+			if (formatterClass != ColumnFormatter.class) {
+				formatter = formatterClass.getCanonicalName();
+			}
+		} catch (MirroredTypeException e) {
+			// the class of the formatter is usually not compiled yet
+			TypeElement formatterType = (TypeElement) processingEnv.getTypeUtils().asElement(e.getTypeMirror());
+			if (!formatterType.getQualifiedName().contentEquals(ColumnFormatter.class.getName())) {
+				if (!hasDefaultConstructor(formatterType)) {
+					error("The formatter " + formatterType + " needs a public constructor without arguments",
+							member);
+					return null;
+				}
+				formatter = formatterType.getQualifiedName().toString();
+			}
+		}
+		int fractionDigits = annotation.fractionDigits();
+		if (fractionDigits > MAX_FRACTION_DIGITS || fractionDigits < -1) {
+			error("Fraction digits have to be between 0 and " + MAX_FRACTION_DIGITS, member);
+			return null;
+		}
+		if ((formatter != null || fractionDigits >= 0) && numberKind(valueType) == null) {
+			error("Only numeric columns can be formatted", member);
+			return null;
+		}
+		if (formatter != null && fractionDigits >= 0) {
+			error("A column has either fraction digits or a formatter", member);
+			return null;
+		}
+		String header = annotation.header().isEmpty() ? header(property) : annotation.header();
+		return new Column(accessor, header, valueType, annotation.order(), fractionDigits, formatter, index);
+	}
+
+	// declared members of the type and its superclasses, superclasses first
+	private List<Element> members(TypeElement type) {
+		List<TypeElement> types = new ArrayList<>();
+		for (TypeElement t = type; t != null && !t.getQualifiedName().contentEquals("java.lang.Object");) {
+			types.add(0, t);
+			TypeMirror superclass = t.getSuperclass();
+			t = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement()
+					: null;
+		}
+		List<Element> members = new ArrayList<>();
+		for (TypeElement t : types) {
+			members.addAll(t.getEnclosedElements());
+		}
+		return members;
+	}
+
+	private static ExecutableElement getter(List<Element> members, String property) {
+		String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+		for (ExecutableElement method : ElementFilter.methodsIn(members)) {
+			String name = method.getSimpleName().toString();
+			if ((name.equals("get" + suffix) || name.equals("is" + suffix)) && method.getParameters().isEmpty()
+					&& !method.getModifiers().contains(Modifier.PRIVATE)
+					&& !method.getModifiers().contains(Modifier.STATIC)) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	private static ExecutableElement accessor(List<Element> members, String name) {
+		for (ExecutableElement method : ElementFilter.methodsIn(members)) {
+			if (method.getSimpleName().contentEquals(name) && method.getParameters().isEmpty()) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	private static boolean isGetter(Element member) {
+		if (member.getKind() != ElementKind.METHOD || !member.getModifiers().contains(Modifier.PUBLIC)
+				|| member.getModifiers().contains(Modifier.STATIC)) {
+			return false;
+		}
+		ExecutableElement method = (ExecutableElement) member;
+		String name = method.getSimpleName().toString();
+		if (!method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID) {
+			return false;
+		}
+		return name.startsWith("get") && name.length() > 3 && Character.isUpperCase(name.charAt(3))
+				|| name.startsWith("is") && name.length() > 2 && Character.isUpperCase(name.charAt(2))
+						&& method.getReturnType().getKind() == TypeKind.BOOLEAN;
+	}
+
+	private static boolean hasDefaultConstructor(TypeElement type) {
+		if (type.getModifiers().contains(Modifier.ABSTRACT) || !type.getModifiers().contains(Modifier.PUBLIC)) {
+			return false;
+		}
+		List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+		for (ExecutableElement constructor : constructors) {
+			if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+				return true;
+			}
+		}
+		return constructors.isEmpty();
+	}
+
+	// the name of the property of an accessor
+	private static String propertyName(String accessor, boolean record) {
+		if (record) {
+			return accessor;
+		}
+		int prefix = accessor.startsWith("get") ? 3 : accessor.startsWith("is") ? 2 : 0;
+		if (prefix == 0 || accessor.length() == prefix || !Character.isUpperCase(accessor.charAt(prefix))) {
+			return accessor;
+		}
+		return Character.toLowerCase(accessor.charAt(prefix)) + accessor.substring(prefix + 1);
+	}
+
+	// "unitPrice" becomes "Unit Price", "vatID" becomes "Vat ID"
+	private static String header(String property) {
+		StringBuilder header = new StringBuilder(property.length() + 4);
+		for (int i = 0; i < property.length(); i++) {
+			char c = property.charAt(i);
+			if (c == '_') {
+				c = ' ';
+			} else if (i > 0 && Character.isUpperCase(c) && header.charAt(header.length() - 1) != ' '
+					&& (!Character.isUpperCase(property.charAt(i - 1))
+							|| i + 1 < property.length() && Character.isLowerCase(property.charAt(i + 1)))) {
+				header.append(' ');
+			}
+			header.append(header.length() == 0 ? Character.toUpperCase(c) : c);
+		}
+		return header.toString().trim();
+	}
+
+	// "double" or "long" for values which can be formatted, otherwise null
+	private static String numberKind(TypeMirror type) {
+		switch (type.getKind()) {
+		case DOUBLE:
+		case FLOAT:
+			return "double";
+		case LONG:
+		case INT:
+		case SHORT:
+		case BYTE:
+			return "long";
+		case DECLARED:
+			String name = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+			if (name.equals("java.lang.Double") || name.equals("java.lang.Float")) {
+				return "double";
+			}
+			if (name.equals("java.lang.Long") || name.equals("java.lang.Integer") || name.equals("java.lang.Short")
+					|| name.equals("java.lang.Byte")) {
+				return "long";
+			}
+			return null;
+		default:
+			return null;
+		}
+	}
+
+	private void write(TypeElement type, List<Column> columns) throws IOException {
+		PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+		String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+		StringBuilder simpleName = new StringBuilder("RowMapper");
+		boolean visible = true;
+		for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+			simpleName.insert(0, e == type ? e.getSimpleName() : e.getSimpleName() + "_");
+			visible &= e.getModifiers().contains(Modifier.PUBLIC);
+		}
+		String mapperName = simpleName.toString();
+		String typeName = type.getQualifiedName().toString();
+		String qualifiedName = packageName.isEmpty() ? mapperName : packageName + "." + mapperName;
+
+		try (PrintWriter out = new PrintWriter(
+				processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter())) {
+			if (!packageName.isEmpty()) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+			out.println("/**");
+			out.println(" * {@link " + RowMapper.class.getName() + "} of {@link " + typeName + "},");
+			out.println(" * generated by " + getClass().getName() + ", don't edit.");
+			out.println(" */");
+			out.println((visible ? "public " : "") + "final class " + mapperName + " implements "
+					+ RowMapper.class.getName() + "<" + typeName + "> {");
+			out.println();
+			out.print("    private static final String[] HEADERS = {");
+			for (int i = 0; i < columns.size(); i++) {
+				out.print((i == 0 ? " " : ", ")
+						+ processingEnv.getElementUtils().getConstantExpression(columns.get(i).header));
+			}
+			out.println(" };");
+			for (int i = 0; i < columns.size(); i++) {
+				if (columns.get(i).isFormatted()) {
+					out.println();
+					out.println("    private final " + ColumnFormatter.class.getName() + " formatter" + i + ";");
+				}
+			}
+			out.println();
+			out.println("    public " + mapperName + "() {");
+			out.println("        this(java.util.Locale.getDefault());");
+			out.println("    }");
+			out.println();
+			out.println("    /**");
+			out.println("     * @param locale locale of the columns with fraction digits");
+			out.println("     */");
+			out.println("    public " + mapperName + "(java.util.Locale locale) {");
+			for (int i = 0; i < columns.size(); i++) {
+				Column column = columns.get(i);
+				if (column.formatter != null) {
+					out.println("        formatter" + i + " = new " + column.formatter + "();");
+				} else if (column.fractionDigits >= 0) {
+					out.println("        formatter" + i + " = new be.quodlibet.boxable.datatable.DecimalColumnFormatter("
+							+ column.fractionDigits + ", locale);");
+				}
+			}
+			out.println("    }");
+			out.println();
+			out.println("    @Override");
+			out.println("    public int getColumnCount() {");
+			out.println("        return HEADERS.length;");
+			out.println("    }");
+			out.println();
+			out.println("    @Override");
+			out.println("    public String getHeader(int column) {");
+			out.println("        return HEADERS[column];");
+			out.println("    }");
+			out.println();
+			out.println("    @Override");
+			out.println("    public void format(" + typeName + " row, int column, StringBuilder out) {");
+			out.println("        switch (column) {");
+			for (int i = 0; i < columns.size(); i++) {
+				out.println("        case " + i + ":");
+				writeValue(out, columns.get(i), i);
+			}
+			out.println("        default:");
+			out.println("            throw new IndexOutOfBoundsException(\"Column \" + column + \" of \" + HEADERS.length"
+					+ " + \" columns\");");
+			out.println("        }");
+			out.println("    }");
+			out.println("}");
+		}
+	}
+
+	private static void writeValue(PrintWriter out, Column column, int index) {
+		String value = "row." + column.accessor;
+		if (column.type.getKind().isPrimitive()) {
+			if (column.isFormatted()) {
+				out.println("            formatter" + index + ".format((" + numberKind(column.type) + ") " + value
+						+ ", out);");
+			} else {
+				out.println("            out.append(" + value + ");");
+			}
+			out.println("            break;");
+			return;
+		}
+		// null values are empty cells
+		out.println("            {");
+		if (column.isFormatted()) {
+			out.println("                Number value = " + value + ";");
+			out.println("                if (value != null) {");
+			out.println("                    formatter" + index + ".format(value." + numberKind(column.type)
+					+ "Value(), out);");
+		} else {
+			out.println("                Object value = " + value + ";");
+			out.println("                if (value != null) {");
+			out.println("                    out.append(value);");
+		}
+		out.println("                }");
+		out.println("                break;");
+		out.println("            }");
+	}
+
+	private void error(String message, Element element) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+	private static final class Column {
+
+		// expression which reads the value from the object of the row
+		private final String accessor;
+
+		private final String header;
+
+		private final TypeMirror type;
+
+		private final int order;
+
+		private final int fractionDigits;
+
+		// qualified name of the formatter class, null for none
+		private final String formatter;
+
+		// position in which the column is declared
+		private final int index;
+
+		Column(String accessor, String header, TypeMirror type, int order, int fractionDigits, String formatter,
+				int index) {
+			this.accessor = accessor;
+			this.header = header;
+			this.type = type;
+			this.order = order;
+			this.fractionDigits = fractionDigits;
+			this.formatter = formatter;
+			this.index = index;
+		}
+
+		boolean isFormatted() {
+			return formatter != null || fractionDigits >= 0;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package be.quodlibet.boxable.layout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import be.quodlibet.boxable.text.Token;
+
+/**
+ * <p>
+ * Immutable result of measuring a single cell: its horizontal position, its
+ * size, the free space around its content and its wrapped lines.
+ * </p>
+ */
+public final class CellLayout {
+
+	private final float x;
+
+	private final float width;
+
+	private final float height;
+
+	private final float innerHeight;
+
+	private final float horizontalFreeSpace;
+
+	private final float verticalFreeSpace;
+
+	private final List<List<Token>> lines;
+
+	private final float[] lineWidths;
+
+	private final float maxLineWidth;
+
+	/**
+	 * <p>
+	 * Creates a cell layout.
+	 * </p>
+	 *
+	 * @param x
+	 *            Horizontal position of the cell's left edge on the page
+	 * @param width
+	 *            Cell's width
+	 * @param height
+	 *            Height of the single cell, not the row's height
+	 * @param innerHeight
+	 *            Row's height without the cell's (top,bottom) padding and
+	 *            borders
+	 * @param horizontalFreeSpace
+	 *            Free horizontal space next to the cell's content
+	 * @param verticalFreeSpace
+	 *            Free vertical space below the cell's content
+	 * @param lines
+	 *            Tokens of every wrapped line, empty if the cell has no text
+	 * @param lineWidths
+	 *            Width of every wrapped line
+	 * @param maxLineWidth
+	 *            Width of the widest line
+	 */
+	public CellLayout(float x, float width, float height, float innerHeight, float horizontalFreeSpace,
+			float verticalFreeSpace, List<List<Token>> lines, float[] lineWidths, float maxLineWidth) {
+		if (lines.size() != lineWidths.length) {
+			throw new IllegalArgumentException(
+					"Got " + lines.size() + " lines but " + lineWidths.length + " line widths");
+		}
+		this.x = x;
+		this.width = width;
+		this.height = height;
+		this.innerHeight = innerHeight;
+		this.horizontalFreeSpace = horizontalFreeSpace;
+		this.verticalFreeSpace = verticalFreeSpace;
+		List<List<Token>> copy = new ArrayList<>(lines.size());
+		for (List<Token> line : lines) {
+			copy.add(Collections.unmodifiableList(new ArrayList<>(line)));
+		}
+		this.lines = Collections.unmodifiableList(copy);
+		this.lineWidths = lineWidths.clone();
+		this.maxLineWidth = maxLineWidth;
+	}
+
+	public float getX() {
+		return x;
+	}
+
+	public float getWidth() {
+		return width;
+	}
+
+	public float getHeight() {
+		return height;
+	}
+
+	public float getInnerHeight() {
+		return innerHeight;
+	}
+
+	public float getHorizontalFreeSpace() {
+		return horizontalFreeSpace;
+	}
+
+	public float getVerticalFreeSpace() {
+		return verticalFreeSpace;
+	}
+
+	public List<List<Token>> getLines() {
+		return lines;
+	}
+
+	public float getLineWidth(int line) {
+		return lineWidths[line];
+	}
+
+	public float getMaxLineWidth() {
+		return maxLineWidth;
+	}
+}
@@ -0,0 +1,88 @@
+package be.quodlibet.boxable.layout;
+
+/**
+ * <p>
+ * The part of a table which is drawn on one page: a range of its rows and the
+ * vertical space they take.
+ * </p>
+ */
+public final class PagePlan {
+
+	private final int firstRow;
+
+	private final int endRow;
+
+	private final boolean headerRepeated;
+
+	private final float yStart;
+
+	private final float yEnd;
+
+	public PagePlan(int firstRow, int endRow, boolean headerRepeated, float yStart, float yEnd) {
+		this.firstRow = firstRow;
+		this.endRow = endRow;
+		this.headerRepeated = headerRepeated;
+		this.yStart = yStart;
+		this.yEnd = yEnd;
+	}
+
+	/**
+	 * <p>
+	 * Gets the index of the first row drawn on the page.
+	 * </p>
+	 *
+	 * @return index of the first row in the rows of the table
+	 */
+	public int getFirstRow() {
+		return firstRow;
+	}
+
+	/**
+	 * <p>
+	 * Gets the index after the last row drawn on the page.
+	 * </p>
+	 *
+	 * @return index after the last row in the rows of the table
+	 */
+	public int getEndRow() {
+		return endRow;
+	}
+
+	public int getRowCount() {
+		return endRow - firstRow;
+	}
+
+	/**
+	 * <p>
+	 * Gets whether the header rows are repeated at the top of the page before
+	 * its first row.
+	 * </p>
+	 *
+	 * @return {@code true} if the header rows are repeated on this page
+	 */
+	public boolean isHeaderRepeated() {
+		return headerRepeated;
+	}
+
+	/**
+	 * <p>
+	 * Gets the Y position where the table starts on the page.
+	 * </p>
+	 *
+	 * @return Y position of the top of the table on this page
+	 */
+	public float getYStart() {
+		return yStart;
+	}
+
+	/**
+	 * <p>
+	 * Gets the Y position where the table ends on the page.
+	 * </p>
+	 *
+	 * @return Y position of the bottom of the last row on this page
+	 */
+	public float getYEnd() {
+		return yEnd;
+	}
+}
@@ -0,0 +1,231 @@
+package be.quodlibet.boxable.layout;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import be.quodlibet.boxable.Cell;
+import be.quodlibet.boxable.ImageCell;
+import be.quodlibet.boxable.Paragraph;
+import be.quodlibet.boxable.Row;
+import be.quodlibet.boxable.TableCell;
+import be.quodlibet.boxable.utils.FontContext;
+import be.quodlibet.boxable.utils.GlyphAdvances;
+
+/**
+ * <p>
+ * Measures rows on a {@link ForkJoinPool} before they are drawn. Tokenizing
+ * and wrapping the text of a cell doesn't depend on any other cell, so the rows
+ * are split between the threads of the pool and each thread measures its rows
+ * with {@link Row#getHeight()}. The measured heights and wrapped lines are
+ * cached by the rows, so drawing them afterwards on a single thread only reads
+ * the results.
+ * </p>
+ * <p>
+ * {@link PDFont} caches glyph widths and encodings in maps that are not thread
+ * safe. The {@link GlyphAdvances} of fonts which are used by more than one row
+ * are therefore created, and measured once for every character of the rows'
+ * texts, before the rows are split, so that the threads only read those caches
+ * afterwards. Fonts which are used by a single row are only touched by the
+ * thread measuring that row.
+ * </p>
+ */
+public final class ParallelLayout {
+
+	/**
+	 * Rows measured by a single task, splitting further doesn't pay off
+	 */
+	private static final int ROWS_PER_TASK = 16;
+
+	/**
+	 * Characters which are not part of the cell texts but are measured while
+	 * wrapping them, like list numbers, bullets and padding
+	 */
+	private static final String GENERATED_CHARACTERS = " 0123456789.-";
+
+	private ParallelLayout() {
+	}
+
+	/**
+	 * <p>
+	 * Measures the given rows in parallel and returns once all of them are
+	 * measured.
+	 * </p>
+	 *
+	 * @param rows
+	 *            rows which will be measured
+	 * @param pool
+	 *            {@link ForkJoinPool} the rows are measured on
+	 * @param <T>
+	 *            type of the pages the rows are drawn on
+	 */
+	public static <T extends PDPage> void measure(final List<Row<T>> rows, final ForkJoinPool pool) {
+		measure(rows, pool, FontContext.shared());
+	}
+
+	/**
+	 * <p>
+	 * Measures the given rows in parallel and returns once all of them are
+	 * measured.
+	 * </p>
+	 *
+	 * @param rows
+	 *            rows which will be measured
+	 * @param pool
+	 *            {@link ForkJoinPool} the rows are measured on
+	 * @param fontContext
+	 *            {@link FontContext} of the rows' table
+	 * @param <T>
+	 *            type of the pages the rows are drawn on
+	 */
+	public static <T extends PDPage> void measure(final List<Row<T>> rows, final ForkJoinPool pool,
+			final FontContext fontContext) {
+		if (rows.isEmpty()) {
+			return;
+		}
+		warmUpSharedFonts(rows, fontContext);
+		pool.invoke(new MeasureRows<>(rows, 0, rows.size()));
+	}
+
+	private static <T extends PDPage> void warmUpSharedFonts(final List<Row<T>> rows, final FontContext fontContext) {
+		// the default fonts, or the standard fonts of the document, are used
+		// for <b> and <i> tags by the paragraphs of all cells
+		final Map<PDFont, StringBuilder> tagFonts = new IdentityHashMap<>();
+		final PDFont[] defaultFonts = fontContext.getDefaultFonts();
+		if (defaultFonts != null) {
+			for (PDFont font : defaultFonts) {
+				if (font != null) {
+					tagFonts.put(font, new StringBuilder(GENERATED_CHARACTERS));
+				}
+			}
+		}
+		final Map<PDFont, StringBuilder> sharedFonts = new IdentityHashMap<>(tagFonts);
+
+		final Map<PDFont, Row<T>> fontOwners = new IdentityHashMap<>();
+		final Map<PDFont, StringBuilder> fontTexts = new IdentityHashMap<>();
+		final StringBuilder allTexts = new StringBuilder();
+		boolean hasTagFonts = false;
+		for (Row<T> row : rows) {
+			for (Cell<T> cell : row.getCells()) {
+				if (cell instanceof ImageCell || cell instanceof TableCell) {
+					continue;
+				}
+				if (!hasTagFonts) {
+					addTagFonts(cell.getParagraph(), tagFonts, sharedFonts);
+					hasTagFonts = true;
+				}
+				final PDFont font = cell.getFont();
+				StringBuilder texts = fontTexts.get(font);
+				if (texts == null) {
+					texts = tagFonts.containsKey(font) ? tagFonts.get(font)
+							: new StringBuilder(GENERATED_CHARACTERS);
+					fontTexts.put(font, texts);
+					fontOwners.put(font, row);
+				} else if (fontOwners.get(font) != row && !sharedFonts.containsKey(font)) {
+					sharedFonts.put(font, texts);
+				}
+				texts.append(cell.getText());
+				allTexts.append(cell.getText());
+			}
+		}
+
+		for (Map.Entry<PDFont, StringBuilder> entry : sharedFonts.entrySet()) {
+			final PDFont font = entry.getKey();
+			final StringBuilder texts = entry.getValue();
+			if (tagFonts.containsKey(font)) {
+				// tag fonts are used for <b> and <i> tags of any cell
+				texts.append(allTexts);
+			}
+			warmUp(font, texts, fontContext);
+		}
+	}
+
+	private static void addTagFonts(final Paragraph paragraph, final Map<PDFont, StringBuilder> tagFonts,
+			final Map<PDFont, StringBuilder> sharedFonts) {
+		final PDFont[] fonts = { paragraph.getFont(true, false), paragraph.getFont(false, true),
+				paragraph.getFont(true, true) };
+		for (PDFont font : fonts) {
+			if (font != null && !tagFonts.containsKey(font)) {
+				final StringBuilder texts = new StringBuilder(GENERATED_CHARACTERS);
+				tagFonts.put(font, texts);
+				sharedFonts.put(font, texts);
+			}
+		}
+	}
+
+	private static void warmUp(final PDFont font, final CharSequence texts, final FontContext fontContext) {
+		fontContext.getHeight(font, 1);
+		try {
+			font.getSpaceWidth();
+		} catch (RuntimeException e) {
+			// the font is not usable, measuring the row will report it
+		}
+		// creating the advance table measures glyphs of the font as well, and
+		// the table is shared by the rows of a document
+		final GlyphAdvances advances;
+		try {
+			advances = fontContext.getGlyphAdvances(font);
+		} catch (RuntimeException e) {
+			return;
+		}
+		final boolean[] measured = new boolean[Character.MAX_VALUE + 1];
+		for (int i = 0; i < texts.length(); i++) {
+			final char c = texts.charAt(i);
+			if (measured[c] || Character.isSurrogate(c)) {
+				continue;
+			}
+			measured[c] = true;
+			measureQuietly(advances, c);
+		}
+		// characters outside of the basic multilingual plane are rare, measure
+		// them one by one
+		for (int i = 0; i < texts.length(); i++) {
+			if (Character.isHighSurrogate(texts.charAt(i))) {
+				measureQuietly(advances, Character.codePointAt(texts, i));
+			}
+		}
+	}
+
+	private static void measureQuietly(final GlyphAdvances advances, final int codePoint) {
+		try {
+			advances.getWidth(codePoint);
+		} catch (IOException | RuntimeException e) {
+			// the character can't be encoded, wrapping the text will report it
+		}
+	}
+
+	private static final class MeasureRows<T extends PDPage> extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<Row<T>> rows;
+
+		private final int from;
+
+		private final int to;
+
+		MeasureRows(final List<Row<T>> rows, final int from, final int to) {
+			this.rows = rows;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= ROWS_PER_TASK) {
+				for (int i = from; i < to; i++) {
+					rows.get(i).getHeight();
+				}
+			} else {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new MeasureRows<>(rows, from, middle), new MeasureRows<>(rows, middle, to));
+			}
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package be.quodlibet.boxable.layout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Immutable result of measuring a row: its height and the layout of each of its
+ * cells. Drawing a row only reads this layout, so the cells don't have to be
+ * measured again for every position calculation.
+ * </p>
+ */
+public final class RowLayout {
+
+	private final float height;
+
+	private final List<CellLayout> cells;
+
+	public RowLayout(float height, List<CellLayout> cells) {
+		this.height = height;
+		this.cells = Collections.unmodifiableList(new ArrayList<>(cells));
+	}
+
+	/**
+	 * <p>
+	 * Gets the row's height, which is the height of its highest cell or the
+	 * row's own height if that is bigger.
+	 * </p>
+	 *
+	 * @return Row's height
+	 */
+	public float getHeight() {
+		return height;
+	}
+
+	/**
+	 * <p>
+	 * Gets the layouts of the row's cells, in the same order as the cells.
+	 * </p>
+	 *
+	 * @return unmodifiable list of {@link CellLayout}s
+	 */
+	public List<CellLayout> getCells() {
+		return cells;
+	}
+
+	public CellLayout getCell(int index) {
+		return cells.get(index);
+	}
+}
@@ -0,0 +1,93 @@
+package be.quodlibet.boxable.layout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Immutable result of paginating a table without drawing it: which rows are
+ * drawn on which page and at which Y position. Page {@code 0} is the page the
+ * table is currently drawn on, every following page is a page break.
+ * </p>
+ * <p>
+ * If the header rows and the first data row don't fit on the current page,
+ * the table starts on the next one and the first page of the plan has no
+ * rows.
+ * </p>
+ */
+public final class TablePlan {
+
+	private final List<PagePlan> pages;
+
+	private final int[] rowPages;
+
+	private final float[] rowPositions;
+
+	public TablePlan(List<PagePlan> pages, int[] rowPages, float[] rowPositions) {
+		this.pages = Collections.unmodifiableList(new ArrayList<>(pages));
+		this.rowPages = rowPages.clone();
+		this.rowPositions = rowPositions.clone();
+	}
+
+	/**
+	 * <p>
+	 * Gets the pages the table is drawn on, in order.
+	 * </p>
+	 *
+	 * @return unmodifiable list of {@link PagePlan}s
+	 */
+	public List<PagePlan> getPages() {
+		return pages;
+	}
+
+	public PagePlan getPage(int index) {
+		return pages.get(index);
+	}
+
+	public int getPageCount() {
+		return pages.size();
+	}
+
+	public int getRowCount() {
+		return rowPages.length;
+	}
+
+	/**
+	 * <p>
+	 * Gets the page a row is drawn on.
+	 * </p>
+	 *
+	 * @param row
+	 *            index of the row in the rows of the table
+	 * @return index of the page in {@link #getPages()}
+	 */
+	public int getPageOfRow(int row) {
+		return rowPages[row];
+	}
+
+	/**
+	 * <p>
+	 * Gets the Y position of the top of a row on its page.
+	 * </p>
+	 *
+	 * @param row
+	 *            index of the row in the rows of the table
+	 * @return Y position of the top of the row
+	 */
+	public float getRowY(int row) {
+		return rowPositions[row];
+	}
+
+	/**
+	 * <p>
+	 * Gets the Y position where the table ends, like the one returned by
+	 * drawing the table.
+	 * </p>
+	 *
+	 * @return Y position of the bottom of the table on its last page
+	 */
+	public float getYEnd() {
+		return pages.get(pages.size() - 1).getYEnd();
+	}
+}
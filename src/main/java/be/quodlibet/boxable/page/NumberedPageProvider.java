@@ -0,0 +1,162 @@
+package be.quodlibet.boxable.page;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+
+import be.quodlibet.boxable.utils.FontUtils;
+
+/**
+ * <p>
+ * {@link PageProvider} which writes "page X of Y" on every page it provides.
+ * The page number is written right away, the total number of pages is a
+ * {@link PageCountPlaceholder} which is filled by {@link #finish()} once all
+ * pages are created.
+ * </p>
+ * <p>
+ * The number of the current page is counted along as the provider moves
+ * between its pages, so numbering a page doesn't search the page tree of the
+ * document. New pages are added at the end of the document, like
+ * {@link DefaultPageProvider} does.
+ * </p>
+ *
+ * @param <T>
+ *            type of the provided pages
+ */
+public class NumberedPageProvider<T extends PDPage> implements PageProvider<T> {
+
+	private final PageProvider<T> pageProvider;
+
+	private final PageCountPlaceholder pageCount;
+
+	private final String label;
+
+	private final float x;
+
+	private final float y;
+
+	private final Set<COSDictionary> numberedPages = Collections
+			.newSetFromMap(new IdentityHashMap<COSDictionary, Boolean>());
+
+	// number of the current page of the provider, 0 before the first page
+	private int pageNumber;
+
+	/**
+	 * <p>
+	 * Creates a provider which numbers the pages of the given provider.
+	 * </p>
+	 *
+	 * @param pageProvider
+	 *            {@link PageProvider} creating the pages
+	 * @param pageCount
+	 *            placeholder for the total number of pages, its font is used
+	 *            for the whole text
+	 * @param label
+	 *            text in front of the total number of pages, {@code %d} is
+	 *            replaced by the page number, e.g. {@code "Page %d of "}
+	 * @param x
+	 *            x position of the start of the text
+	 * @param y
+	 *            y position of the baseline of the text
+	 */
+	public NumberedPageProvider(final PageProvider<T> pageProvider, final PageCountPlaceholder pageCount,
+			final String label, final float x, final float y) {
+		this.pageProvider = pageProvider;
+		this.pageCount = pageCount;
+		this.label = label;
+		this.x = x;
+		this.y = y;
+	}
+
+	@Override
+	public T createPage() {
+		final T page = pageProvider.createPage();
+		pageNumber = getDocument().getNumberOfPages();
+		return numbered(page);
+	}
+
+	@Override
+	public T nextPage() {
+		final T page = pageProvider.nextPage();
+		// the first page is a new one
+		pageNumber = pageNumber == 0 ? getDocument().getNumberOfPages() : pageNumber + 1;
+		return numbered(page);
+	}
+
+	@Override
+	public T previousPage() {
+		final T page = pageProvider.previousPage();
+		pageNumber = Math.max(pageNumber - 1, 1);
+		return numbered(page);
+	}
+
+	@Override
+	public PDDocument getDocument() {
+		return pageProvider.getDocument();
+	}
+
+	/**
+	 * <p>
+	 * Writes the page number on a page which wasn't created by this provider,
+	 * like the page a table starts on. Pages are numbered only once. The
+	 * position of the page is looked up in the document, so use the pages of
+	 * the provider where possible.
+	 * </p>
+	 *
+	 * @param page
+	 *            page which will be numbered
+	 * @throws IOException
+	 *             if underlying stream has problem being written to.
+	 */
+	public void numberPage(final T page) throws IOException {
+		if (!numberedPages.contains(page.getCOSObject())) {
+			writeNumber(page, getDocument().getPages().indexOf(page) + 1);
+		}
+	}
+
+	private void writeNumber(final T page, final int number) throws IOException {
+		numberedPages.add(page.getCOSObject());
+		final PDDocument document = getDocument();
+		final String text = String.format(label, number);
+		try (PDPageContentStream stream = new PDPageContentStream(document, page,
+				PDPageContentStream.AppendMode.APPEND, true)) {
+			stream.beginText();
+			stream.setFont(pageCount.getFont(), pageCount.getFontSize());
+			stream.newLineAtOffset(x, y);
+			stream.showText(text);
+			stream.endText();
+			pageCount.draw(stream, x + FontUtils.getStringWidth(pageCount.getFont(), text, pageCount.getFontSize()),
+					y);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Writes the total number of pages, call once all pages are created.
+	 * </p>
+	 *
+	 * @throws IOException
+	 *             if the content of the placeholder can't be written
+	 */
+	public void finish() throws IOException {
+		pageCount.fill();
+	}
+
+	private T numbered(final T page) {
+		if (numberedPages.contains(page.getCOSObject())) {
+			return page;
+		}
+		try {
+			writeNumber(page, pageNumber);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to write the page number", e);
+		}
+		return page;
+	}
+}
@@ -0,0 +1,147 @@
+package be.quodlibet.boxable.page;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+import org.apache.pdfbox.util.Matrix;
+
+import be.quodlibet.boxable.utils.FontUtils;
+
+/**
+ * <p>
+ * Text which is only known once the document is finished, like its total
+ * number of pages. Every page draws the same empty {@link PDFormXObject}, and
+ * its content is written once with {@link #fill(String)} before the document
+ * is saved, so the document doesn't have to be laid out twice.
+ * </p>
+ * <p>
+ * The text of the form doesn't set a color, so it is drawn with the fill color
+ * of the page it is drawn on.
+ * </p>
+ */
+public final class PageCountPlaceholder {
+
+	private final PDDocument document;
+
+	private final PDFont font;
+
+	private final float fontSize;
+
+	private final PDFormXObject form;
+
+	private boolean filled;
+
+	/**
+	 * <p>
+	 * Creates an empty placeholder.
+	 * </p>
+	 *
+	 * @param document
+	 *            {@link PDDocument} the placeholder is drawn in
+	 * @param font
+	 *            {@link PDFont} of the text
+	 * @param fontSize
+	 *            font size of the text
+	 */
+	public PageCountPlaceholder(final PDDocument document, final PDFont font, final float fontSize) {
+		this.document = document;
+		this.font = font;
+		this.fontSize = fontSize;
+		this.form = new PDFormXObject(document);
+		form.setResources(new PDResources());
+		form.setBBox(new PDRectangle(0, 0, 0, 0));
+	}
+
+	public PDFont getFont() {
+		return font;
+	}
+
+	public float getFontSize() {
+		return fontSize;
+	}
+
+	/**
+	 * <p>
+	 * Gets the form which is drawn in place of the text.
+	 * </p>
+	 *
+	 * @return the placeholder's {@link PDFormXObject}
+	 */
+	public PDFormXObject getForm() {
+		return form;
+	}
+
+	public boolean isFilled() {
+		return filled;
+	}
+
+	/**
+	 * <p>
+	 * Draws the placeholder with its text's baseline starting at the given
+	 * position.
+	 * </p>
+	 *
+	 * @param stream
+	 *            content stream of the page
+	 * @param x
+	 *            x position of the start of the text
+	 * @param y
+	 *            y position of the baseline of the text
+	 * @throws IOException
+	 *             if underlying stream has problem being written to.
+	 */
+	public void draw(final PDPageContentStream stream, final float x, final float y) throws IOException {
+		stream.saveGraphicsState();
+		stream.transform(Matrix.getTranslateInstance(x, y));
+		stream.drawForm(form);
+		stream.restoreGraphicsState();
+	}
+
+	/**
+	 * <p>
+	 * Writes the number of pages of the document into the placeholder.
+	 * </p>
+	 *
+	 * @throws IOException
+	 *             if the content of the placeholder can't be written
+	 */
+	public void fill() throws IOException {
+		fill(String.valueOf(document.getNumberOfPages()));
+	}
+
+	/**
+	 * <p>
+	 * Writes the text into the placeholder, which shows it on every page it
+	 * was drawn on.
+	 * </p>
+	 *
+	 * @param text
+	 *            text of the placeholder
+	 * @throws IOException
+	 *             if the content of the placeholder can't be written
+	 * @throws IllegalStateException
+	 *             if the placeholder was already filled
+	 */
+	public void fill(final String text) throws IOException {
+		if (filled) {
+			throw new IllegalStateException("The placeholder was already filled");
+		}
+		filled = true;
+		try (PDPageContentStream stream = new PDPageContentStream(document,
+				new PDAppearanceStream(form.getCOSObject()))) {
+			stream.beginText();
+			stream.setFont(font, fontSize);
+			stream.showText(text);
+			stream.endText();
+		}
+		final float descent = FontUtils.getDescent(font, fontSize);
+		form.setBBox(new PDRectangle(0, descent, FontUtils.getStringWidth(font, text, fontSize),
+				FontUtils.getHeight(font, fontSize)));
+	}
+}
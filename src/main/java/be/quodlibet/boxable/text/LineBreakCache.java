@@ -0,0 +1,149 @@
+package be.quodlibet.boxable.text;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Cache of wrapped texts, so cells with the same value, like status codes or
+ * currency names which repeat in every row of a table, are wrapped only once.
+ * Paragraphs look up their {@link LineBreaks} by their text and everything
+ * else the wrapping depends on: fonts, font size, width, alignment and
+ * wrapping function.
+ * </p>
+ * <p>
+ * The cache is bounded by the estimated memory of its entries and evicts the
+ * least recently used ones when it is full. It is thread safe, so one cache
+ * can be shared by all tables of a document, see
+ * {@link be.quodlibet.boxable.utils.FontContext#setLineBreakCache(LineBreakCache)}.
+ * Fonts are compared by identity, so a cache must not be shared between
+ * documents.
+ * </p>
+ */
+public final class LineBreakCache {
+
+	private final long maxBytes;
+
+	private final Map<Object, LineBreaks> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long bytes;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * <p>
+	 * Creates a cache which holds line breaks up to the given estimated size.
+	 * </p>
+	 *
+	 * @param maxBytes
+	 *            maximum estimated size of all cached line breaks in bytes
+	 */
+	public LineBreakCache(final long maxBytes) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("The cache size has to be positive");
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * <p>
+	 * Returns the cached line breaks of a text.
+	 * </p>
+	 *
+	 * @param key
+	 *            key of the wrapped text, which implements {@code equals} and
+	 *            {@code hashCode}
+	 * @return cached {@link LineBreaks} or {@code null}
+	 */
+	public synchronized LineBreaks get(final Object key) {
+		final LineBreaks lineBreaks = entries.get(key);
+		if (lineBreaks != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return lineBreaks;
+	}
+
+	/**
+	 * <p>
+	 * Adds the line breaks of a text. Line breaks which are larger than the
+	 * whole cache aren't added.
+	 * </p>
+	 *
+	 * @param key
+	 *            key of the wrapped text
+	 * @param lineBreaks
+	 *            {@link LineBreaks} of the text
+	 */
+	public synchronized void put(final Object key, final LineBreaks lineBreaks) {
+		final long size = lineBreaks.getEstimatedSize();
+		if (size > maxBytes) {
+			return;
+		}
+		final LineBreaks previous = entries.put(key, lineBreaks);
+		if (previous != null) {
+			bytes -= previous.getEstimatedSize();
+		}
+		bytes += size;
+		final Iterator<LineBreaks> eldest = entries.values().iterator();
+		while (bytes > maxBytes) {
+			bytes -= eldest.next().getEstimatedSize();
+			eldest.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return share of the lookups which found cached line breaks, 0 if there
+	 *         were none
+	 */
+	public double getHitRate() {
+		final long hitCount = hits.get();
+		final long lookups = hitCount + misses.get();
+		return lookups == 0 ? 0 : (double) hitCount / lookups;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return estimated size of all cached line breaks in bytes
+	 */
+	public synchronized long getEstimatedSize() {
+		return bytes;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * <p>
+	 * Removes all line breaks from the cache. The counters are kept.
+	 * </p>
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+}
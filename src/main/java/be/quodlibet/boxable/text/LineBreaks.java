@@ -0,0 +1,130 @@
+package be.quodlibet.boxable.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Immutable result of wrapping a text: its lines, the width of every line and
+ * the tokens of every line. The tokens are ranges of a {@link TokenBuffer}
+ * which is not changed anymore, so paragraphs with the same text and layout
+ * can share a single instance, see {@link LineBreakCache}.
+ * </p>
+ */
+public final class LineBreaks {
+
+	// rough size of an object header and a reference, for the estimated size
+	private static final int OBJECT_SIZE = 16;
+
+	private final List<String> lines;
+
+	private final TokenBuffer tokens;
+
+	// line i consists of the tokens lineTokens[lineEnds[i - 1]] to
+	// lineTokens[lineEnds[i] - 1]
+	private final int[] lineTokens;
+
+	private final int[] lineEnds;
+
+	private final float[] lineWidths;
+
+	private final float maxLineWidth;
+
+	/**
+	 * <p>
+	 * Creates the line breaks of a wrapped text. The arrays are copied.
+	 * </p>
+	 *
+	 * @param lines
+	 *            wrapped lines
+	 * @param tokens
+	 *            {@link TokenBuffer} the line tokens refer to, which must not
+	 *            be changed anymore
+	 * @param lineTokens
+	 *            indexes of the tokens of all lines, line by line
+	 * @param lineEnds
+	 *            index in {@code lineTokens} after the last token of every
+	 *            line
+	 * @param lineWidths
+	 *            width of every line
+	 * @param maxLineWidth
+	 *            width of the widest line
+	 */
+	public LineBreaks(final List<String> lines, final TokenBuffer tokens, final int[] lineTokens,
+			final int[] lineEnds, final float[] lineWidths, final float maxLineWidth) {
+		final int lineCount = lines.size();
+		this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+		this.tokens = tokens;
+		this.lineTokens = Arrays.copyOf(lineTokens, lineCount == 0 ? 0 : lineEnds[lineCount - 1]);
+		this.lineEnds = Arrays.copyOf(lineEnds, lineCount);
+		this.lineWidths = Arrays.copyOf(lineWidths, lineCount);
+		this.maxLineWidth = maxLineWidth;
+	}
+
+	/**
+	 * @return unmodifiable list of the wrapped lines
+	 */
+	public List<String> getLines() {
+		return lines;
+	}
+
+	public int getLineCount() {
+		return lines.size();
+	}
+
+	public float getLineWidth(final int line) {
+		checkLine(line);
+		return lineWidths[line];
+	}
+
+	public float getMaxLineWidth() {
+		return maxLineWidth;
+	}
+
+	/**
+	 * <p>
+	 * Returns the tokens of a line. The {@link Token} objects are created when
+	 * this method is called.
+	 * </p>
+	 *
+	 * @param line
+	 *            index of the line
+	 * @return new list of the tokens of the line
+	 */
+	public List<Token> getLineTokens(final int line) {
+		checkLine(line);
+		final int start = line == 0 ? 0 : lineEnds[line - 1];
+		final List<Token> result = new ArrayList<>(lineEnds[line] - start);
+		for (int i = start; i < lineEnds[line]; i++) {
+			result.add(tokens.getToken(lineTokens[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Estimates the memory held by these line breaks, including the text and
+	 * its tokens.
+	 * </p>
+	 *
+	 * @return estimated size in bytes
+	 */
+	public long getEstimatedSize() {
+		long size = OBJECT_SIZE * 4 + 2L * tokens.getSource().length();
+		// type, start, end, width and font of every token
+		size += 21L * tokens.size();
+		size += 4L * lineTokens.length + 8L * lines.size();
+		for (String line : lines) {
+			size += OBJECT_SIZE + 2L * line.length();
+		}
+		return size;
+	}
+
+	private void checkLine(final int line) {
+		if (line < 0 || line >= lines.size()) {
+			throw new IndexOutOfBoundsException("Line " + line + " of " + lines.size() + " lines");
+		}
+	}
+}
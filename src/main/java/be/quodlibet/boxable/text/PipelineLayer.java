@@ -2,11 +2,14 @@ package be.quodlibet.boxable.text;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Pattern;
 
 import org.apache.pdfbox.pdmodel.font.PDFont;
 
+import be.quodlibet.boxable.utils.FontContext;
+
 /**
  * 
  * @author Markus Kühne
@@ -15,27 +18,30 @@ import org.apache.pdfbox.pdmodel.font.PDFont;
 
 public class PipelineLayer {
 
-	private static String rtrim(String s) {
-		int len = s.length();
-		while ((len > 0) && (s.charAt(len - 1) <= ' ')) {
+	// end of the range without trailing whitespace
+	private static int rtrim(CharSequence s, int start, int end) {
+		int len = end;
+		while ((len > start) && (s.charAt(len - 1) <= ' ')) {
 			len--;
 		}
-		if (len == s.length()) {
-			return s;
-		}
-		if (len == 0) {
-			return "";
-		}
-		return s.substring(0, len);
+		return len;
 	}
 
+	private final TokenBuffer buffer;
+
+	private final FontContext fontContext;
+
 	private final StringBuilder text = new StringBuilder();
 
-	private String lastTextToken = "";
+	// index of the last text token in the buffer, -1 if there is none
+	private int lastTextToken = -1;
 
-	private List<Token> tokens = new ArrayList<>();
+	private int trimmedLastTextEnd;
 
-	private String trimmedLastTextToken = "";
+	// indexes of the tokens in the buffer
+	private int[] tokens = new int[16];
+
+	private int tokenCount;
 
 	private float width;
 
@@ -45,62 +51,119 @@ public class PipelineLayer {
 
 	private float widthCurrentText;
 
+	public PipelineLayer() {
+		this(FontContext.shared());
+	}
+
+	/**
+	 * @param fontContext
+	 *            {@link FontContext} which measures the text
+	 */
+	public PipelineLayer(final FontContext fontContext) {
+		this(new TokenBuffer(""), fontContext);
+	}
+
+	/**
+	 * @param buffer
+	 *            {@link TokenBuffer} which holds the tokens of this layer
+	 * @param fontContext
+	 *            {@link FontContext} which measures the text
+	 */
+	public PipelineLayer(final TokenBuffer buffer, final FontContext fontContext) {
+		this.buffer = buffer;
+		this.fontContext = fontContext;
+	}
+
 	public boolean isEmpty() {
-		return tokens.isEmpty();
+		return tokenCount == 0;
 	}
 
 	public void push(final Token token) {
-		tokens.add(token);
+		push(buffer.add(token));
+	}
+
+	/**
+	 * @param token
+	 *            index of a token of the buffer
+	 */
+	public void push(final int token) {
+		if (tokenCount == tokens.length) {
+			tokens = Arrays.copyOf(tokens, tokenCount * 2);
+		}
+		tokens[tokenCount++] = token;
 	}
 
 	public void push(final PDFont font, final float fontSize, final Token token) throws IOException {
-		if (token.getType().equals(TokenType.PADDING)) {
-			width += Float.parseFloat(token.getData());
+		push(font, fontSize, buffer.add(token));
+	}
+
+	/**
+	 * @param font
+	 *            {@link PDFont} of the token
+	 * @param fontSize
+	 *            font size of the token
+	 * @param token
+	 *            index of a token of the buffer
+	 * @throws IOException
+	 *             if the token can't be measured
+	 */
+	public void push(final PDFont font, final float fontSize, final int token) throws IOException {
+		final TokenType type = buffer.getType(token);
+		if (type.equals(TokenType.PADDING)) {
+			width += buffer.getPadding(token);
 		}
-		if (token.getType().equals(TokenType.BULLET)) {
+		if (type.equals(TokenType.BULLET)) {
 			// just appending one space because our bullet width will be wide as one character of current font
-			text.append(token.getData());
-			width += (token.getWidth(font) / 1000f * fontSize);
+			appendData(token);
+			width += (buffer.getWidth(token, font, fontContext) / 1000f * fontSize);
 		}
 
-		if (token.getType().equals(TokenType.ORDERING)) {
+		if (type.equals(TokenType.ORDERING)) {
 			// just appending one space because our bullet width will be wide as one character of current font
-			text.append(token.getData());
-			width += (token.getWidth(font) / 1000f * fontSize);
+			appendData(token);
+			width += (buffer.getWidth(token, font, fontContext) / 1000f * fontSize);
 		}
 
-		if (token.getType().equals(TokenType.TEXT)) {
-			text.append(lastTextToken);
+		if (type.equals(TokenType.TEXT)) {
+			appendLastTextToken();
 			width += widthLastToken;
-			lastTextToken = token.getData();
-			trimmedLastTextToken = rtrim(lastTextToken);
-			widthLastToken = token.getWidth(font) / 1000f * fontSize;
+			lastTextToken = token;
+			final int start = buffer.getStart(token);
+			final int end = buffer.getEnd(token);
+			trimmedLastTextEnd = rtrim(buffer.getChars(token), start, end);
+			widthLastToken = buffer.getWidth(token, font, fontContext) / 1000f * fontSize;
 
-			if (trimmedLastTextToken.length() == lastTextToken.length()) {
+			if (trimmedLastTextEnd == end) {
 				widthTrimmedLastToken = widthLastToken;
 			} else {
-				widthTrimmedLastToken = (font.getStringWidth(trimmedLastTextToken) / 1000f * fontSize);
+				widthTrimmedLastToken = (fontContext.getStringWidth(font, buffer.getChars(token), start,
+						trimmedLastTextEnd) / 1000f * fontSize);
 			}
 
 			widthCurrentText = text.length() == 0 ? 0 :
-					(font.getStringWidth(text.toString()) / 1000f * fontSize);
+					(fontContext.getStringWidth(font, text) / 1000f * fontSize);
 		}
 
 		push(token);
 	}
 
 	public void push(final PipelineLayer pipeline) {
-		text.append(lastTextToken);
+		if (pipeline.buffer != buffer) {
+			throw new IllegalArgumentException("Layers of different token buffers can't be joined");
+		}
+		appendLastTextToken();
 		width += widthLastToken;
 		text.append(pipeline.text);
 		if (pipeline.text.length() > 0) {
 			width += pipeline.widthCurrentText;
 		}
 		lastTextToken = pipeline.lastTextToken;
-		trimmedLastTextToken = pipeline.trimmedLastTextToken;
+		trimmedLastTextEnd = pipeline.trimmedLastTextEnd;
 		widthLastToken = pipeline.widthLastToken;
 		widthTrimmedLastToken = pipeline.widthTrimmedLastToken;
-		tokens.addAll(pipeline.tokens);
+		for (int i = 0; i < pipeline.tokenCount; i++) {
+			push(pipeline.tokens[i]);
+		}
 
 		pipeline.reset();
 	}
@@ -108,15 +171,20 @@ public class PipelineLayer {
 	public void reset() {
 		text.delete(0, text.length());
 		width = 0.0f;
-		lastTextToken = "";
-		trimmedLastTextToken = "";
+		lastTextToken = -1;
+		trimmedLastTextEnd = 0;
 		widthLastToken = 0.0f;
 		widthTrimmedLastToken = 0.0f;
-		tokens.clear();
+		tokenCount = 0;
 	}
 
 	public String trimmedText() {
-		return text.toString() + trimmedLastTextToken;
+		if (lastTextToken < 0) {
+			return text.toString();
+		}
+		final int start = buffer.getStart(lastTextToken);
+		return new StringBuilder(text.length() + trimmedLastTextEnd - start).append(text)
+				.append(buffer.getChars(lastTextToken), start, trimmedLastTextEnd).toString();
 	}
 
 	public float width() {
@@ -128,11 +196,61 @@ public class PipelineLayer {
 	}
 
 	public List<Token> tokens() {
-		return new ArrayList<>(tokens);
+		final List<Token> result = new ArrayList<>(tokenCount);
+		for (int i = 0; i < tokenCount; i++) {
+			result.add(buffer.getToken(tokens[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * @return number of tokens in this layer
+	 */
+	public int tokenCount() {
+		return tokenCount;
+	}
+
+	/**
+	 * @param index
+	 *            position of the token in this layer
+	 * @return index of the token in the buffer
+	 */
+	public int token(final int index) {
+		return tokens[index];
+	}
+
+	// marks the tokens of this layer which have to be kept by TokenBuffer#compact
+	void markTokens(final boolean[] used) {
+		for (int i = 0; i < tokenCount; i++) {
+			used[tokens[i]] = true;
+		}
+		if (lastTextToken >= 0) {
+			used[lastTextToken] = true;
+		}
+	}
+
+	void remapTokens(final int[] indexes) {
+		for (int i = 0; i < tokenCount; i++) {
+			tokens[i] = indexes[tokens[i]];
+		}
+		if (lastTextToken >= 0) {
+			lastTextToken = indexes[lastTextToken];
+		}
+	}
+
+	private void appendLastTextToken() {
+		if (lastTextToken >= 0) {
+			text.append(buffer.getChars(lastTextToken), buffer.getStart(lastTextToken), buffer.getEnd(lastTextToken));
+		}
+	}
+
+	private void appendData(final int token) {
+		text.append(buffer.getChars(token), buffer.getStart(token), buffer.getEnd(token));
 	}
 
 	@Override
 	public String toString() {
-		return text.toString() + "(" + lastTextToken + ") [width: " + width() + ", trimmed: " + trimmedWidth() + "]";
+		final String last = lastTextToken < 0 ? "" : buffer.getData(lastTextToken);
+		return text.toString() + "(" + last + ") [width: " + width() + ", trimmed: " + trimmedWidth() + "]";
 	}
 }
@@ -0,0 +1,35 @@
+package be.quodlibet.boxable.text;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import be.quodlibet.boxable.utils.FontContext;
+
+import java.io.IOException;
+
+// Non-thread safe subclass with caching to optimize tokens containing renderable text
+class TextToken extends Token {
+	private PDFont cachedWidthFont;
+	private float cachedWidth;
+
+	TextToken(TokenType type, String data) {
+		super(type, data);
+	}
+
+	// keeps a width which is already known, the font is null if there is none
+	TextToken(TokenType type, String data, PDFont widthFont, float width) {
+		super(type, data);
+		cachedWidthFont = widthFont;
+		cachedWidth = width;
+	}
+
+	@Override
+	public float getWidth(PDFont font, FontContext fontContext) throws IOException {
+		if (font == cachedWidthFont) {
+			return cachedWidth;
+		}
+		cachedWidth = super.getWidth(font, fontContext);
+		// must come after super call, in case it throws
+		cachedWidthFont = font;
+		return cachedWidth;
+	}
+}
@@ -2,6 +2,8 @@ package be.quodlibet.boxable.text;
 
 import org.apache.pdfbox.pdmodel.font.PDFont;
 
+import be.quodlibet.boxable.utils.FontContext;
+
 import java.io.IOException;
 import java.util.Objects;
 
@@ -27,7 +29,12 @@ public class Token {
 	}
 
 	public float getWidth(PDFont font) throws IOException {
-		return font.getStringWidth(getData());
+		return getWidth(font, FontContext.shared());
+	}
+
+	// measures with the cached glyph widths of the context
+	public float getWidth(PDFont font, FontContext fontContext) throws IOException {
+		return fontContext.getStringWidth(font, getData());
 	}
 
 	@Override
@@ -54,24 +61,3 @@ public class Token {
 		return new TextToken(type, data);
 	}
 }
-
-// Non-thread safe subclass with caching to optimize tokens containing renderable text
-class TextToken extends Token {
-	private PDFont cachedWidthFont;
-	private float cachedWidth;
-
-	TextToken(TokenType type, String data) {
-		super(type, data);
-	}
-
-	@Override
-	public float getWidth(PDFont font) throws IOException {
-		if (font == cachedWidthFont) {
-			return cachedWidth;
-		}
-		cachedWidth = super.getWidth(font);
-		// must come after super call, in case it throws
-		cachedWidthFont = font;
-		return cachedWidth;
-	}
-}
\ No newline at end of file
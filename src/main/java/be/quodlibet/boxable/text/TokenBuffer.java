@@ -0,0 +1,383 @@
+package be.quodlibet.boxable.text;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import be.quodlibet.boxable.utils.FontContext;
+
+/**
+ * <p>
+ * Tokens of a text, stored in parallel arrays instead of one {@link Token}
+ * object per word. A token is an index into the buffer; its data is a range of
+ * the source text, so tokenizing a text doesn't create a substring per word.
+ * Tokens which aren't part of the source text, like list numbers created while
+ * wrapping, are appended to a separate text of the buffer. Padding tokens store
+ * their width in points instead of text.
+ * </p>
+ * <p>
+ * The width of every token is cached for the font it was last measured with.
+ * </p>
+ * <p>
+ * {@link Token} objects are only created when {@link #getToken(int)} is
+ * called. Like {@link Token#text(TokenType, String)}, a buffer is not thread
+ * safe.
+ * </p>
+ */
+public final class TokenBuffer {
+
+	private static final TokenType[] TYPES = TokenType.values();
+
+	// marks tokens whose range refers to the added text instead of the source
+	private static final int ADDED = 0x80;
+
+	private static final int TYPE_MASK = 0x7F;
+
+	private final String source;
+
+	private final StringBuilder added = new StringBuilder();
+
+	private byte[] types;
+
+	private int[] starts;
+
+	private int[] ends;
+
+	private float[] widths;
+
+	private PDFont[] widthFonts;
+
+	private int size;
+
+	/**
+	 * <p>
+	 * Creates an empty buffer for tokens of the given text.
+	 * </p>
+	 *
+	 * @param source
+	 *            text the token ranges refer to
+	 */
+	public TokenBuffer(final String source) {
+		this(source, 16);
+	}
+
+	/**
+	 * <p>
+	 * Creates an empty buffer for tokens of the given text.
+	 * </p>
+	 *
+	 * @param source
+	 *            text the token ranges refer to
+	 * @param capacity
+	 *            expected number of tokens
+	 */
+	public TokenBuffer(final String source, final int capacity) {
+		this.source = source;
+		final int initial = Math.max(capacity, 4);
+		types = new byte[initial];
+		starts = new int[initial];
+		ends = new int[initial];
+		widths = new float[initial];
+		widthFonts = new PDFont[initial];
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public TokenType getType(final int token) {
+		return TYPES[types[token] & TYPE_MASK];
+	}
+
+	/**
+	 * @param token
+	 *            index of the token
+	 * @return the source text or the added text, which contains the token's
+	 *         range
+	 */
+	public CharSequence getChars(final int token) {
+		return (types[token] & ADDED) == 0 ? source : added;
+	}
+
+	public int getStart(final int token) {
+		return starts[token];
+	}
+
+	public int getEnd(final int token) {
+		return ends[token];
+	}
+
+	public String getData(final int token) {
+		if (getType(token) == TokenType.PADDING) {
+			return String.valueOf(widths[token]);
+		}
+		if ((types[token] & ADDED) == 0) {
+			return source.substring(starts[token], ends[token]);
+		}
+		return added.substring(starts[token], ends[token]);
+	}
+
+	/**
+	 * <p>
+	 * Compares the data of a token without creating a string.
+	 * </p>
+	 *
+	 * @param token
+	 *            index of the token
+	 * @param data
+	 *            expected data
+	 * @return {@code true} if the token's data equals the given one
+	 */
+	public boolean dataEquals(final int token, final String data) {
+		final int length = ends[token] - starts[token];
+		if (getType(token) == TokenType.PADDING || length != data.length()) {
+			return false;
+		}
+		final CharSequence chars = getChars(token);
+		for (int i = 0; i < length; i++) {
+			if (chars.charAt(starts[token] + i) != data.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param token
+	 *            index of a {@link TokenType#PADDING} token
+	 * @return width of the padding in points
+	 */
+	public float getPadding(final int token) {
+		return widths[token];
+	}
+
+	/**
+	 * <p>
+	 * Returns the width of a token in glyph space units, which is measured only
+	 * once per font.
+	 * </p>
+	 *
+	 * @param token
+	 *            index of the token
+	 * @param font
+	 *            {@link PDFont} of the token
+	 * @param fontContext
+	 *            {@link FontContext} which measures the token
+	 * @return width of the token
+	 * @throws IOException
+	 *             if a glyph can't be read from the font
+	 */
+	public float getWidth(final int token, final PDFont font, final FontContext fontContext) throws IOException {
+		if (widthFonts[token] == font) {
+			return widths[token];
+		}
+		final float width = fontContext.getStringWidth(font, getChars(token), starts[token], ends[token]);
+		widths[token] = width;
+		// must come after measuring, in case it throws
+		widthFonts[token] = font;
+		return width;
+	}
+
+	/**
+	 * <p>
+	 * Creates a {@link Token} object for a token of the buffer. Text tokens
+	 * keep the width which is already known.
+	 * </p>
+	 *
+	 * @param token
+	 *            index of the token
+	 * @return new {@link Token}
+	 */
+	public Token getToken(final int token) {
+		final TokenType type = getType(token);
+		switch (type) {
+		case TEXT:
+		case ORDERING:
+		case BULLET:
+			return new TextToken(type, getData(token), widthFonts[token], widths[token]);
+		default:
+			return new Token(type, getData(token));
+		}
+	}
+
+	/**
+	 * @return new {@link Token} objects for all tokens of the buffer
+	 */
+	public List<Token> getTokens() {
+		final List<Token> tokens = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			tokens.add(getToken(i));
+		}
+		return tokens;
+	}
+
+	/**
+	 * <p>
+	 * Appends a token for a range of the source text.
+	 * </p>
+	 *
+	 * @param type
+	 *            {@link TokenType} of the token
+	 * @param start
+	 *            index of the token's first char in the source text
+	 * @param end
+	 *            index after the token's last char in the source text
+	 * @return index of the new token
+	 */
+	public int add(final TokenType type, final int start, final int end) {
+		return append(type.ordinal(), start, end);
+	}
+
+	/**
+	 * <p>
+	 * Appends a token for a part of the range of another token, like a word
+	 * which is broken because it doesn't fit into a line.
+	 * </p>
+	 *
+	 * @param token
+	 *            index of the token which is split
+	 * @param start
+	 *            index of the part's first char
+	 * @param end
+	 *            index after the part's last char
+	 * @return index of the new token
+	 */
+	public int addPart(final int token, final int start, final int end) {
+		return append(types[token], start, end);
+	}
+
+	/**
+	 * <p>
+	 * Appends a token whose data isn't part of the source text.
+	 * </p>
+	 *
+	 * @param type
+	 *            {@link TokenType} of the token
+	 * @param data
+	 *            data of the token
+	 * @return index of the new token
+	 */
+	public int add(final TokenType type, final String data) {
+		if (type == TokenType.PADDING) {
+			return addPadding(Float.parseFloat(data));
+		}
+		final int start = added.length();
+		added.append(data);
+		return append(type.ordinal() | ADDED, start, added.length());
+	}
+
+	/**
+	 * <p>
+	 * Appends a copy of a {@link Token}.
+	 * </p>
+	 *
+	 * @param token
+	 *            {@link Token} to copy
+	 * @return index of the new token
+	 */
+	public int add(final Token token) {
+		return add(token.getType(), token.getData());
+	}
+
+	/**
+	 * <p>
+	 * Appends a {@link TokenType#PADDING} token.
+	 * </p>
+	 *
+	 * @param width
+	 *            width of the padding in points
+	 * @return index of the new token
+	 */
+	public int addPadding(final float width) {
+		final int token = append(TokenType.PADDING.ordinal() | ADDED, 0, 0);
+		widths[token] = width;
+		return token;
+	}
+
+	/**
+	 * <p>
+	 * Removes all tokens after the given number of tokens, like the tokens which
+	 * were added while wrapping a text before it is wrapped again.
+	 * </p>
+	 *
+	 * @param newSize
+	 *            number of tokens to keep
+	 */
+	public void truncate(final int newSize) {
+		int addedLength = added.length();
+		for (int i = newSize; i < size; i++) {
+			if ((types[i] & ADDED) != 0 && getType(i) != TokenType.PADDING) {
+				addedLength = Math.min(addedLength, starts[i]);
+			}
+		}
+		added.setLength(addedLength);
+		Arrays.fill(widthFonts, newSize, size, null);
+		size = Math.min(size, newSize);
+	}
+
+	/**
+	 * <p>
+	 * Drops all tokens which aren't held by the given layers, so a long text
+	 * can be wrapped line by line in a buffer that doesn't grow with the text.
+	 * The remaining tokens are moved to the front of the buffer and the layers
+	 * are updated with their new indexes.
+	 * </p>
+	 *
+	 * @param layers
+	 *            all {@link PipelineLayer}s which hold tokens of this buffer
+	 */
+	public void compact(final PipelineLayer... layers) {
+		final boolean[] used = new boolean[size];
+		for (PipelineLayer layer : layers) {
+			layer.markTokens(used);
+		}
+		final int[] indexes = new int[size];
+		boolean keepsAddedText = false;
+		int next = 0;
+		for (int i = 0; i < size; i++) {
+			if (!used[i]) {
+				indexes[i] = -1;
+				continue;
+			}
+			types[next] = types[i];
+			starts[next] = starts[i];
+			ends[next] = ends[i];
+			widths[next] = widths[i];
+			widthFonts[next] = widthFonts[i];
+			keepsAddedText |= (types[i] & ADDED) != 0 && getType(i) != TokenType.PADDING;
+			indexes[i] = next++;
+		}
+		if (!keepsAddedText) {
+			added.setLength(0);
+		}
+		Arrays.fill(widthFonts, next, size, null);
+		size = next;
+		for (PipelineLayer layer : layers) {
+			layer.remapTokens(indexes);
+		}
+	}
+
+	private int append(final int type, final int start, final int end) {
+		if (size == types.length) {
+			final int capacity = size * 2;
+			types = Arrays.copyOf(types, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			widths = Arrays.copyOf(widths, capacity);
+			widthFonts = Arrays.copyOf(widthFonts, capacity);
+		}
+		types[size] = (byte) type;
+		starts[size] = start;
+		ends[size] = end;
+		widths[size] = 0;
+		widthFonts[size] = null;
+		return size++;
+	}
+}
@@ -0,0 +1,351 @@
+package be.quodlibet.boxable.text;
+
+/**
+ * <p>
+ * Cursor which reads the tokens of a text one at a time, like
+ * {@link Tokenizer} does for the whole text. Only the next few tokens are kept,
+ * so a paragraph can be wrapped while it is read instead of tokenizing a large
+ * text up front.
+ * </p>
+ * <p>
+ * Wrap points are found on the way, except for a {@link WrappingFunction},
+ * which splits the whole text at once.
+ * </p>
+ */
+public final class TokenCursor {
+
+	private static final TokenType[] TYPES = TokenType.values();
+
+	// a step finds a text, a wrap point and a tag at most
+	private static final int MAX_PENDING = 4;
+
+	private final String text;
+
+	// wrap points of the wrapping function, null for the default wrap points
+	private final int[] wrapPoints;
+
+	private int nextWrapPoint;
+
+	private int currentWrapPoint;
+
+	private int textIndex;
+
+	// start of the text token which is read at the moment
+	private int textStart;
+
+	private boolean finished;
+
+	private final byte[] pendingTypes = new byte[MAX_PENDING];
+
+	private final int[] pendingStarts = new int[MAX_PENDING];
+
+	private final int[] pendingEnds = new int[MAX_PENDING];
+
+	private int pendingHead;
+
+	private int pendingCount;
+
+	private TokenType type;
+
+	private int start;
+
+	private int end;
+
+	/**
+	 * <p>
+	 * Creates a cursor before the first token of the text.
+	 * </p>
+	 *
+	 * @param text
+	 *            text to tokenize, {@code null} has no tokens
+	 * @param wrappingFunction
+	 *            {@link WrappingFunction} or {@code null} for the default wrap
+	 *            points
+	 */
+	public TokenCursor(final String text, final WrappingFunction wrappingFunction) {
+		this.text = text == null ? "" : text;
+		this.finished = text == null;
+		if (wrappingFunction == null) {
+			this.wrapPoints = null;
+			this.currentWrapPoint = findWrapPoint(0);
+		} else {
+			this.wrapPoints = findWrapPointsWithFunction(this.text, wrappingFunction);
+			this.currentWrapPoint = wrapPoints[nextWrapPoint++];
+		}
+	}
+
+	private static boolean isWrapPointChar(char ch) {
+		return
+				ch == ' '  ||
+				ch == ','  ||
+				ch == '.'  ||
+				ch == '-'  ||
+				ch == '@'  ||
+				ch == ':'  ||
+				ch == ';'  ||
+				ch == '\n' ||
+				ch == '\t' ||
+				ch == '\r' ||
+				ch == '\f' ||
+				ch == '\u000B';
+	}
+
+	// wrap points in ascending order, the last one is the end of the text
+	private static int[] findWrapPointsWithFunction(String text, WrappingFunction wrappingFunction) {
+		final String[] split = wrappingFunction.getLines(text);
+		int textIndex = text.length();
+		final int[] possibleWrapPoints = new int[Math.max(split.length, 1)];
+		int next = possibleWrapPoints.length - 1;
+		possibleWrapPoints[next--] = textIndex;
+		for (int i = split.length - 1; i > 0; i--) {
+			final int splitLength = split[i].length();
+			possibleWrapPoints[next--] = textIndex - splitLength;
+			textIndex -= splitLength;
+		}
+		return possibleWrapPoints;
+	}
+
+	// next wrap point after the given one, they follow the wrap point chars
+	// and the end of the text is the last one
+	private int findWrapPoint(final int from) {
+		for (int i = from; i < text.length() - 1; i++) {
+			if (isWrapPointChar(text.charAt(i))) {
+				return i + 1;
+			}
+		}
+		return text.length();
+	}
+
+	/**
+	 * <p>
+	 * Moves the cursor to the next token.
+	 * </p>
+	 *
+	 * @return {@code false} if there are no more tokens
+	 */
+	public boolean next() {
+		while (pendingCount == 0) {
+			if (finished) {
+				return false;
+			}
+			step();
+		}
+		type = TYPES[pendingTypes[pendingHead]];
+		start = pendingStarts[pendingHead];
+		end = pendingEnds[pendingHead];
+		pendingHead = (pendingHead + 1) % MAX_PENDING;
+		pendingCount--;
+		return true;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return {@link TokenType} of the current token
+	 */
+	public TokenType getType() {
+		return type;
+	}
+
+	/**
+	 * @return index of the current token's first char in the text
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * @return index after the current token's last char in the text
+	 */
+	public int getEnd() {
+		return end;
+	}
+
+	// reads the next char or tag of the text
+	private void step() {
+		if (textIndex >= text.length()) {
+			addText(textStart, textIndex);
+			addPending(TokenType.POSSIBLE_WRAP_POINT, textIndex, textIndex);
+			finished = true;
+			return;
+		}
+		if (textIndex == currentWrapPoint) {
+			addText(textStart, textIndex);
+			addPending(TokenType.POSSIBLE_WRAP_POINT, textIndex, textIndex);
+			textStart = textIndex;
+			currentWrapPoint = wrapPoints == null ? findWrapPoint(currentWrapPoint) : wrapPoints[nextWrapPoint++];
+		}
+		final char c = text.charAt(textIndex);
+		switch (c) {
+		case '<':
+			boolean consumed = false;
+			if (textIndex < text.length() - 2) {
+				final char lookahead1 = text.charAt(textIndex + 1);
+				final char lookahead2 = text.charAt(textIndex + 2);
+				if ('i' == lookahead1 && '>' == lookahead2) {
+					// <i>
+					addText(textStart, textIndex);
+					addPending(TokenType.OPEN_TAG, textIndex + 1, textIndex + 2);
+					textIndex += 2;
+					consumed = true;
+				} else if ('b' == lookahead1 && '>' == lookahead2) {
+					// <b>
+					addText(textStart, textIndex);
+					addPending(TokenType.OPEN_TAG, textIndex + 1, textIndex + 2);
+					textIndex += 2;
+					consumed = true;
+				} else if ('b' == lookahead1 && 'r' == lookahead2) {
+					if (textIndex < text.length() - 3) {
+						// <br>
+						final char lookahead3 = text.charAt(textIndex + 3);
+						if (lookahead3 == '>') {
+							addText(textStart, textIndex);
+							addPending(TokenType.WRAP_POINT, textIndex + 1, textIndex + 3);
+							// normal notation <br>
+							textIndex += 3;
+							consumed = true;
+						} else if (textIndex < text.length() - 4) {
+							// <br/>
+							final char lookahead4 = text.charAt(textIndex + 4);
+							if (lookahead3 == '/' && lookahead4 == '>') {
+								addText(textStart, textIndex);
+								addPending(TokenType.WRAP_POINT, textIndex + 1, textIndex + 3);
+								// normal notation <br/>
+								textIndex += 4;
+								consumed = true;
+							} else if (textIndex < text.length() - 5) {
+								final char lookahead5 = text.charAt(textIndex + 5);
+								if (lookahead3 == ' ' && lookahead4 == '/' && lookahead5 == '>') {
+									addText(textStart, textIndex);
+									addPending(TokenType.WRAP_POINT, textIndex + 1, textIndex + 3);
+									// in case it is notation <br />
+									textIndex += 5;
+									consumed = true;
+								}
+							}
+						}
+					}
+				} else if ('p' == lookahead1 && '>' == lookahead2) {
+					// <p>
+					addText(textStart, textIndex);
+					addPending(TokenType.WRAP_POINT, textIndex + 1, textIndex + 2);
+					textIndex += 2;
+					consumed = true;
+				} else if ('o' == lookahead1 && 'l' == lookahead2) {
+					// <ol>
+					if (textIndex < text.length() - 3) {
+						final char lookahead3 = text.charAt(textIndex + 3);
+						if (lookahead3 == '>') {
+							addText(textStart, textIndex);
+							addPending(TokenType.OPEN_TAG, textIndex + 1, textIndex + 3);
+							textIndex += 3;
+							consumed = true;
+						}
+					}
+				} else if ('u' == lookahead1 && 'l' == lookahead2) {
+					// <ul>
+					if (textIndex < text.length() - 3) {
+						final char lookahead3 = text.charAt(textIndex + 3);
+						if (lookahead3 == '>') {
+							addText(textStart, textIndex);
+							addPending(TokenType.OPEN_TAG, textIndex + 1, textIndex + 3);
+							textIndex += 3;
+							consumed = true;
+						}
+					}
+				} else if ('l' == lookahead1 && 'i' == lookahead2) {
+					// <li>
+					if (textIndex < text.length() - 3) {
+						final char lookahead3 = text.charAt(textIndex + 3);
+						if (lookahead3 == '>') {
+							addText(textStart, textIndex);
+							addPending(TokenType.WRAP_POINT, textIndex + 1, textIndex + 3);
+							textIndex += 3;
+							consumed = true;
+						}
+					}
+				} else if ('/' == lookahead1) {
+					// one character tags
+					if (textIndex < text.length() - 3) {
+						final char lookahead3 = text.charAt(textIndex + 3);
+						if ('>' == lookahead3) {
+							if ('i' == lookahead2) {
+								// </i>
+								addText(textStart, textIndex);
+								addPending(TokenType.CLOSE_TAG, textIndex + 2, textIndex + 3);
+								textIndex += 3;
+								consumed = true;
+							} else if ('b' == lookahead2) {
+								// </b>
+								addText(textStart, textIndex);
+								addPending(TokenType.CLOSE_TAG, textIndex + 2, textIndex + 3);
+								textIndex += 3;
+								consumed = true;
+							} else if ('p' == lookahead2) {
+								//</p>
+								addText(textStart, textIndex);
+								addPending(TokenType.CLOSE_TAG, textIndex + 2, textIndex + 3);
+								textIndex += 3;
+								consumed = true;
+							}
+						}
+					}
+					if (textIndex < text.length() - 4) {
+						// lists
+						final char lookahead3 = text.charAt(textIndex + 3);
+						final char lookahead4 = text.charAt(textIndex + 4);
+						if ('l' == lookahead3) {
+							if ('o' == lookahead2 && '>' == lookahead4) {
+								// </ol>
+								addText(textStart, textIndex);
+								addPending(TokenType.CLOSE_TAG, textIndex + 2, textIndex + 4);
+								textIndex += 4;
+								consumed = true;
+							} else if ('u' == lookahead2 && '>' == lookahead4) {
+								// </ul>
+								addText(textStart, textIndex);
+								addPending(TokenType.CLOSE_TAG, textIndex + 2, textIndex + 4);
+								textIndex += 4;
+								consumed = true;
+							}
+						} else if ('l' == lookahead2 && 'i' == lookahead3) {
+							// </li>
+							if ('>' == lookahead4) {
+								addText(textStart, textIndex);
+								addPending(TokenType.CLOSE_TAG, textIndex + 2, textIndex + 4);
+								textIndex += 4;
+								consumed = true;
+							}
+						}
+					}
+				}
+				
+			}
+			if (consumed) {
+				// the next text token starts after the tag
+				textStart = textIndex + 1;
+			}
+			break;
+		default:
+			// the char belongs to the current text token
+			break;
+		}
+		textIndex++;
+	}
+
+	private void addText(final int start, final int end) {
+		if (end > start) {
+			addPending(TokenType.TEXT, start, end);
+		}
+	}
+
+	private void addPending(final TokenType type, final int start, final int end) {
+		final int slot = (pendingHead + pendingCount) % MAX_PENDING;
+		pendingTypes[slot] = (byte) type.ordinal();
+		pendingStarts[slot] = start;
+		pendingEnds[slot] = end;
+		pendingCount++;
+	}
+}
@@ -0,0 +1,366 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import be.quodlibet.boxable.text.LineBreakCache;
+import be.quodlibet.boxable.utils.FontUtils.DefaultFonts;
+import be.quodlibet.boxable.utils.FontUtils.FontMetrics;
+
+/**
+ * <p>
+ * Fonts and font metrics of a single {@link PDDocument}. Tables, cells and
+ * paragraphs look up their default fonts and the metrics of their fonts in the
+ * context of their table instead of the static state of {@link FontUtils}, so
+ * documents generated on several threads at once don't share any mutable
+ * state, and fonts loaded into one document are never used in another one.
+ * </p>
+ * <p>
+ * Metrics and {@linkplain GlyphAdvances glyph widths} are cached by font
+ * identity. Looking up a font which is already measured never blocks: the
+ * caches are copied when a new font is measured, which only happens once per
+ * font.
+ * </p>
+ * <p>
+ * A context which has no default fonts of its own falls back to the
+ * deprecated static default fonts of {@link FontUtils} and otherwise uses the
+ * standard Helvetica fonts of its document. A context with default fonts of its
+ * own never uses the static ones.
+ * </p>
+ */
+public final class FontContext {
+
+	private static final FontContext SHARED = new FontContext(null);
+
+	private final PDDocument document;
+
+	private volatile DefaultFonts defaultFonts;
+
+	private volatile Map<PDFont, FontMetrics> metrics = new IdentityHashMap<>();
+
+	private volatile Map<PDFont, GlyphAdvances> advances = new IdentityHashMap<>();
+
+	private volatile LineBreakCache lineBreakCache;
+
+	/**
+	 * <p>
+	 * Creates the context of a document.
+	 * </p>
+	 *
+	 * @param document
+	 *            {@link PDDocument} whose fonts are used
+	 */
+	public FontContext(final PDDocument document) {
+		this.document = document;
+	}
+
+	/**
+	 * <p>
+	 * Returns the context used where no document is known, like by the public
+	 * constructors of {@link be.quodlibet.boxable.Paragraph}. It behaves like
+	 * the static methods of {@link FontUtils}: its metrics are cached by font
+	 * name and every standard font it returns is a new instance.
+	 * </p>
+	 *
+	 * @return the process-wide shared context
+	 */
+	public static FontContext shared() {
+		return SHARED;
+	}
+
+	/**
+	 * <p>
+	 * Sets the default fonts of this context, which are used for all text that
+	 * doesn't have a font of its own instead of the static default fonts.
+	 * </p>
+	 *
+	 * @param font
+	 *            regular font
+	 * @param fontBold
+	 *            font for bold text and header cells
+	 * @param fontItalic
+	 *            font for italic text
+	 * @param fontBoldItalic
+	 *            font for bold italic text
+	 */
+	public void setDefaultFonts(final PDFont font, final PDFont fontBold, final PDFont fontItalic,
+			final PDFont fontBoldItalic) {
+		if (document == null) {
+			throw new IllegalStateException("The shared font context has no default fonts of its own");
+		}
+		defaultFonts = new DefaultFonts(font, fontBold, fontItalic, fontBoldItalic);
+	}
+
+	/**
+	 * <p>
+	 * Loads the FreeSans fonts into the document of this context and uses them
+	 * as its default fonts.
+	 * </p>
+	 */
+	public void setSansFontsAsDefault() {
+		setDefaultFonts(FontUtils.loadFont(document, "fonts/FreeSans.ttf"),
+				FontUtils.loadFont(document, "fonts/FreeSansBold.ttf"),
+				FontUtils.loadFont(document, "fonts/FreeSansOblique.ttf"),
+				FontUtils.loadFont(document, "fonts/FreeSansBoldOblique.ttf"));
+	}
+
+	/**
+	 * <p>
+	 * Sets the cache of wrapped texts, which paragraphs of this context share.
+	 * Tables which need a cache of their own use a context of their own, see
+	 * {@link be.quodlibet.boxable.Table#setFontContext(FontContext)}.
+	 * </p>
+	 *
+	 * @param lineBreakCache
+	 *            {@link LineBreakCache} or {@code null} to wrap every text
+	 */
+	public void setLineBreakCache(final LineBreakCache lineBreakCache) {
+		if (document == null) {
+			throw new IllegalStateException("The shared font context can't cache line breaks");
+		}
+		this.lineBreakCache = lineBreakCache;
+	}
+
+	/**
+	 * @return {@link LineBreakCache} of this context, {@code null} if texts
+	 *         aren't cached
+	 */
+	public LineBreakCache getLineBreakCache() {
+		return lineBreakCache;
+	}
+
+	/**
+	 * @return {@code true} if default fonts are set on this context or
+	 *         {@link FontUtils}, {@code false} if the standard fonts are used
+	 */
+	public boolean hasDefaultFonts() {
+		return getDefaults() != null;
+	}
+
+	/**
+	 * <p>
+	 * Returns the regular, bold, italic and bold italic default fonts, which
+	 * are read at once, so they are never mixed with default fonts set
+	 * concurrently.
+	 * </p>
+	 *
+	 * @return the four default fonts, {@code null} if the standard fonts are
+	 *         used
+	 */
+	public PDFont[] getDefaultFonts() {
+		final DefaultFonts fonts = getDefaults();
+		if (fonts == null) {
+			return null;
+		}
+		return new PDFont[] { fonts.font, fonts.fontBold, fonts.fontItalic, fonts.fontBoldItalic };
+	}
+
+	public PDFont getFont() {
+		final DefaultFonts fonts = getDefaults();
+		if (fonts != null) {
+			return fonts.font;
+		}
+		return getStandardFont(Standard14Fonts.FontName.HELVETICA);
+	}
+
+	public PDFont getFontBold() {
+		final DefaultFonts fonts = getDefaults();
+		if (fonts != null) {
+			return fonts.fontBold;
+		}
+		return getStandardFont(Standard14Fonts.FontName.HELVETICA_BOLD);
+	}
+
+	public PDFont getFontItalic() {
+		final DefaultFonts fonts = getDefaults();
+		if (fonts != null) {
+			return fonts.fontItalic;
+		}
+		return getStandardFont(Standard14Fonts.FontName.HELVETICA_OBLIQUE);
+	}
+
+	public PDFont getFontBoldItalic() {
+		final DefaultFonts fonts = getDefaults();
+		if (fonts != null) {
+			return fonts.fontBoldItalic;
+		}
+		return getStandardFont(Standard14Fonts.FontName.HELVETICA_BOLD_OBLIQUE);
+	}
+
+	/**
+	 * <p>
+	 * Returns a standard 14 font of the document. All contexts of a document
+	 * share one instance of each font.
+	 * </p>
+	 *
+	 * @param fontName
+	 *            name of the standard 14 font
+	 * @return {@link PDFont} of the document
+	 */
+	public PDFont getStandardFont(final Standard14Fonts.FontName fontName) {
+		if (document == null) {
+			return new PDType1Font(fontName);
+		}
+		return FontUtils.getStandardFont(document, fontName);
+	}
+
+	/**
+	 * <p>
+	 * Calculate the font ascent distance.
+	 * </p>
+	 *
+	 * @param font
+	 *            The font from which calculation will be applied
+	 * @param fontSize
+	 *            The font size from which calculation will be applied
+	 * @return Positive font ascent distance
+	 */
+	public float getAscent(final PDFont font, final float fontSize) {
+		if (document == null) {
+			return FontUtils.getAscent(font, fontSize);
+		}
+		return getMetrics(font).ascent * fontSize;
+	}
+
+	/**
+	 * <p>
+	 * Calculate the font descent distance.
+	 * </p>
+	 *
+	 * @param font
+	 *            The font from which calculation will be applied
+	 * @param fontSize
+	 *            The font size from which calculation will be applied
+	 * @return Negative font descent distance
+	 */
+	public float getDescent(final PDFont font, final float fontSize) {
+		if (document == null) {
+			return FontUtils.getDescent(font, fontSize);
+		}
+		return getMetrics(font).descent * fontSize;
+	}
+
+	/**
+	 * <p>
+	 * Calculate the font height.
+	 * </p>
+	 *
+	 * @param font
+	 *            {@link PDFont} from which the height will be calculated.
+	 * @param fontSize
+	 *            font size for current {@link PDFont}.
+	 * @return {@link PDFont}'s height
+	 */
+	public float getHeight(final PDFont font, final float fontSize) {
+		if (document == null) {
+			return FontUtils.getHeight(font, fontSize);
+		}
+		return getMetrics(font).height * fontSize;
+	}
+
+	/**
+	 * <p>
+	 * Returns the glyph widths of a font. The shared context doesn't cache
+	 * them, because it would keep the fonts of all documents.
+	 * </p>
+	 *
+	 * @param font
+	 *            {@link PDFont} whose glyphs are measured
+	 * @return {@link GlyphAdvances} of the font
+	 */
+	public GlyphAdvances getGlyphAdvances(final PDFont font) {
+		if (document == null) {
+			return new GlyphAdvances(font);
+		}
+		final GlyphAdvances cached = advances.get(font);
+		if (cached != null) {
+			return cached;
+		}
+		synchronized (this) {
+			final GlyphAdvances raced = advances.get(font);
+			if (raced != null) {
+				return raced;
+			}
+			// created under the lock, the constructor measures glyphs of the font
+			final GlyphAdvances created = new GlyphAdvances(font);
+			final Map<PDFont, GlyphAdvances> copy = new IdentityHashMap<>(advances);
+			copy.put(font, created);
+			advances = copy;
+			return created;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Calculate the width of a text, in glyph space units like
+	 * {@link PDFont#getStringWidth(String)}.
+	 * </p>
+	 *
+	 * @param font
+	 *            {@link PDFont} of the text
+	 * @param text
+	 *            text to measure
+	 * @return text width
+	 * @throws IOException
+	 *             if a glyph can't be read from the font
+	 */
+	public float getStringWidth(final PDFont font, final CharSequence text) throws IOException {
+		return getStringWidth(font, text, 0, text.length());
+	}
+
+	/**
+	 * <p>
+	 * Calculate the width of a range of a text, in glyph space units like
+	 * {@link PDFont#getStringWidth(String)}.
+	 * </p>
+	 *
+	 * @param font
+	 *            {@link PDFont} of the text
+	 * @param text
+	 *            text to measure
+	 * @param start
+	 *            index of the first char of the range
+	 * @param end
+	 *            index after the last char of the range
+	 * @return text width
+	 * @throws IOException
+	 *             if a glyph can't be read from the font
+	 */
+	public float getStringWidth(final PDFont font, final CharSequence text, final int start, final int end)
+			throws IOException {
+		if (document == null) {
+			return font.getStringWidth(text.subSequence(start, end).toString());
+		}
+		return getGlyphAdvances(font).getWidth(text, start, end);
+	}
+
+	// the default fonts of this context, or else the static ones, read once
+	private DefaultFonts getDefaults() {
+		final DefaultFonts fonts = defaultFonts;
+		return fonts != null ? fonts : FontUtils.getSharedDefaultFonts();
+	}
+
+	private FontMetrics getMetrics(final PDFont font) {
+		final FontMetrics cached = metrics.get(font);
+		if (cached != null) {
+			return cached;
+		}
+		final FontMetrics created = FontMetrics.of(font);
+		synchronized (this) {
+			final FontMetrics raced = metrics.get(font);
+			if (raced != null) {
+				return raced;
+			}
+			final Map<PDFont, FontMetrics> copy = new IdentityHashMap<>(metrics);
+			copy.put(font, created);
+			metrics = copy;
+		}
+		return created;
+	}
+}
@@ -1,12 +1,18 @@
 package be.quodlibet.boxable.utils;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,6 +20,12 @@ import org.slf4j.LoggerFactory;
  * <p>
  * Utility methods for fonts
  * </p>
+ * <p>
+ * The default fonts and cached metrics of this class are shared by all
+ * documents. Tables look them up in their {@link FontContext} instead, which
+ * only falls back to the deprecated default fonts of this class if it has none
+ * of its own.
+ * </p>
  * 
  * @author hstimac
  * @author mkuehne
@@ -22,37 +34,101 @@ public final class FontUtils {
 
 	private final static Logger logger = LoggerFactory.getLogger(FontUtils.class);
 
-	private static final class FontMetrics {
-		private final float ascent;
+	static final class FontMetrics {
+		final float ascent;
 
-		private final float descent;
+		final float descent;
 
-		private final float height;
+		final float height;
 
 		public FontMetrics(final float height, final float ascent, final float descent) {
 			this.height = height;
 			this.ascent = ascent;
 			this.descent = descent;
 		}
+
+		static FontMetrics of(final PDFont font) {
+			final float base = font.getFontDescriptor().getXHeight() / 1000;
+			final float ascent = font.getFontDescriptor().getAscent() / 1000 - base;
+			final float descent = font.getFontDescriptor().getDescent() / 1000;
+			return new FontMetrics(base + ascent - descent, ascent, descent);
+		}
+	}
+
+	static final class DefaultFonts {
+		final PDFont font;
+
+		final PDFont fontBold;
+
+		final PDFont fontItalic;
+
+		final PDFont fontBoldItalic;
+
+		DefaultFonts(final PDFont font, final PDFont fontBold, final PDFont fontItalic, final PDFont fontBoldItalic) {
+			this.font = font;
+			this.fontBold = fontBold;
+			this.fontItalic = fontItalic;
+			this.fontBoldItalic = fontBoldItalic;
+		}
 	}
 
 	/**
 	 * <p>
-	 * {@link HashMap} for caching {@link FontMetrics} for designated
+	 * {@link Map} for caching {@link FontMetrics} for designated
 	 * {@link PDFont} because {@link FontUtils#getHeight(PDFont, float)} is
-	 * expensive to calculate and the results are only approximate.
+	 * expensive to calculate and the results are only approximate. Rows can be
+	 * measured by several threads at once, so the cache has to be concurrent.
+	 */
+	private static final Map<String, FontMetrics> fontMetrics = new ConcurrentHashMap<>();
+
+	/**
+	 * <p>
+	 * Default fonts set by {@link #addDefaultFonts(PDFont, PDFont, PDFont, PDFont)}
+	 * or {@link #setSansFontsAsDefault(PDDocument)}, {@code null} if none are
+	 * set. Rows are measured by several threads at once, so the four fonts are
+	 * replaced together and readers never see half of them.
+	 * </p>
 	 */
-	private static final Map<String, FontMetrics> fontMetrics = new HashMap<>();
+	private static volatile DefaultFonts defaultFonts;
 
-	private static final Map<String, PDFont> defaultFonts = new HashMap<>();
+	/**
+	 * <p>
+	 * Standard 14 fonts of every {@link PDDocument}, so that all cells of a
+	 * document share one instance of each font instead of allocating their
+	 * own. The fonts aren't shared between documents, because {@link PDFont}
+	 * caches are not thread safe and documents may be written concurrently.
+	 * </p>
+	 */
+	private static final Map<PDDocument, Map<Standard14Fonts.FontName, PDFont>> standardFonts = new WeakHashMap<>();
+
+	/**
+	 * <p>
+	 * Parsed TrueType fonts shared by all documents, so that every document
+	 * only creates its own {@link PDType0Font} for them. Up to 64 MB of font
+	 * files are cached.
+	 * </p>
+	 */
+	private static final TrueTypeFontCache trueTypeFonts = new TrueTypeFontCache(64L << 20);
 
 	private FontUtils() {
 	}
 
+	/**
+	 * <p>
+	 * Returns the cache of parsed TrueType fonts which is used by
+	 * {@link #loadFont(PDDocument, String)}.
+	 * </p>
+	 * 
+	 * @return the process-wide {@link TrueTypeFontCache}
+	 */
+	public static TrueTypeFontCache getTrueTypeFontCache() {
+		return trueTypeFonts;
+	}
+
 	/**
 	 * <p>
 	 * Loads the {@link PDType0Font} to be embedded in the specified
-	 * {@link PDDocument}.
+	 * {@link PDDocument}. The font file is only parsed once for all documents.
 	 * </p>
 	 * 
 	 * @param document
@@ -63,13 +139,42 @@ public final class FontUtils {
 	 */
 	public static final PDType0Font loadFont(PDDocument document, String fontPath) {
 		try {
-			return PDType0Font.load(document, FontUtils.class.getClassLoader().getResourceAsStream(fontPath));
+			return trueTypeFonts.load(document, fontPath);
 		} catch (IOException e) {
 			logger.warn("Cannot load given external font", e);
 			return null;
 		}
 	}
 
+	/**
+	 * <p>
+	 * Returns the {@link PDType1Font} of a standard 14 font for the given
+	 * document. It is created once per document, all later calls return the
+	 * same instance.
+	 * </p>
+	 * 
+	 * @param document
+	 *            {@link PDDocument} the font is used in
+	 * @param fontName
+	 *            name of the standard 14 font
+	 * @return shared {@link PDFont} of the document
+	 */
+	public static PDFont getStandardFont(final PDDocument document, final Standard14Fonts.FontName fontName) {
+		synchronized (standardFonts) {
+			Map<Standard14Fonts.FontName, PDFont> fonts = standardFonts.get(document);
+			if (fonts == null) {
+				fonts = new EnumMap<>(Standard14Fonts.FontName.class);
+				standardFonts.put(document, fonts);
+			}
+			PDFont font = fonts.get(fontName);
+			if (font == null) {
+				font = new PDType1Font(fontName);
+				fonts.put(fontName, font);
+			}
+			return font;
+		}
+	}
+
 	/**
 	 * <p>
 	 * Retrieving {@link String} width depending on current font size. The width
@@ -165,28 +270,83 @@ public final class FontUtils {
 	 *             as default font and added new free fonts
 	 */
 	private static void createFontMetrics(final PDFont font) {
-		final float base = font.getFontDescriptor().getXHeight() / 1000;
-		final float ascent = font.getFontDescriptor().getAscent() / 1000 - base;
-		final float descent = font.getFontDescriptor().getDescent() / 1000;
-		fontMetrics.put(font.getName(), new FontMetrics(base + ascent - descent, ascent, descent));
+		fontMetrics.put(font.getName(), FontMetrics.of(font));
 	}
 
+	/**
+	 * <p>
+	 * Sets the default fonts of all tables whose {@link FontContext} has no
+	 * default fonts of its own.
+	 * </p>
+	 * 
+	 * @param font
+	 *            regular font
+	 * @param fontBold
+	 *            font for bold text and header cells
+	 * @param fontItalic
+	 *            font for italic text
+	 * @param fontBoldItalic
+	 *            font for bold italic text
+	 * @deprecated the fonts belong to one document but are used by the tables of
+	 *             every document, use
+	 *             {@link FontContext#setDefaultFonts(PDFont, PDFont, PDFont, PDFont)}
+	 *             instead
+	 */
+	@Deprecated
 	public static void addDefaultFonts(final PDFont font, final PDFont fontBold, final PDFont fontItalic,
 			final PDFont fontBoldItalic) {
-		defaultFonts.put("font", font);
-		defaultFonts.put("fontBold", fontBold);
-		defaultFonts.put("fontItalic", fontItalic);
-		defaultFonts.put("fontBoldItalic", fontBoldItalic);
+		defaultFonts = new DefaultFonts(font, fontBold, fontItalic, fontBoldItalic);
 	}
 
+	/**
+	 * @return the default fonts by the keys {@code font}, {@code fontBold},
+	 *         {@code fontItalic} and {@code fontBoldItalic}, an empty map if
+	 *         none are set. The map can't be modified.
+	 * @deprecated use the default fonts of a {@link FontContext}, like
+	 *             {@link FontContext#getFont()}
+	 */
+	@Deprecated
 	public static Map<String, PDFont> getDefaultfonts() {
-		return defaultFonts;
+		final DefaultFonts fonts = defaultFonts;
+		if (fonts == null) {
+			return Collections.emptyMap();
+		}
+		final Map<String, PDFont> map = new HashMap<>();
+		map.put("font", fonts.font);
+		map.put("fontBold", fonts.fontBold);
+		map.put("fontItalic", fonts.fontItalic);
+		map.put("fontBoldItalic", fonts.fontBoldItalic);
+		return Collections.unmodifiableMap(map);
 	}
 
+	/**
+	 * <p>
+	 * Loads the FreeSans fonts into the given document and uses them as the
+	 * default fonts of all tables whose {@link FontContext} has no default
+	 * fonts of its own.
+	 * </p>
+	 * 
+	 * @param document
+	 *            {@link PDDocument} the fonts are loaded into
+	 * @deprecated the fonts are used by the tables of every document, use
+	 *             {@link FontContext#setSansFontsAsDefault()} instead
+	 */
+	@Deprecated
 	public static void setSansFontsAsDefault(PDDocument document) {
-		defaultFonts.put("font", loadFont(document, "fonts/FreeSans.ttf"));
-		defaultFonts.put("fontBold", loadFont(document, "fonts/FreeSansBold.ttf"));
-		defaultFonts.put("fontItalic", loadFont(document, "fonts/FreeSansOblique.ttf"));
-		defaultFonts.put("fontBoldItalic", loadFont(document, "fonts/FreeSansBoldOblique.ttf"));
+		defaultFonts = new DefaultFonts(loadFont(document, "fonts/FreeSans.ttf"),
+				loadFont(document, "fonts/FreeSansBold.ttf"), loadFont(document, "fonts/FreeSansOblique.ttf"),
+				loadFont(document, "fonts/FreeSansBoldOblique.ttf"));
+	}
+
+	/**
+	 * @return the static default fonts, {@code null} if none are set
+	 */
+	static DefaultFonts getSharedDefaultFonts() {
+		return defaultFonts;
+	}
+
+	// tests only, the static default fonts can't be removed otherwise
+	static void clearDefaultFonts() {
+		defaultFonts = null;
 	}
 }
@@ -0,0 +1,332 @@
+package be.quodlibet.boxable.utils;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import be.quodlibet.boxable.line.LineStyle;
+
+/**
+ * <p>
+ * Collects the borders and fills of a page instead of drawing every cell edge
+ * and background on its own, and draws them in one batch.
+ * </p>
+ * <p>
+ * Fills with the same color which touch each other are merged into a single
+ * rectangle and all rectangles of a color are filled at once. Collinear
+ * borders with the same {@link LineStyle} which touch each other, or whose gap
+ * is already painted by a crossing border with the same style, are merged
+ * into one line, and all lines of a style are stroked at once. Dashed borders
+ * are not merged, because that would move their dashes.
+ * </p>
+ * <p>
+ * All fills are drawn before all borders, so a collector has to be drawn
+ * below the text of the table.
+ * </p>
+ */
+public final class GeometryCollector {
+
+	/**
+	 * Coordinates closer than this (in points) are considered equal
+	 */
+	private static final float EPSILON = 0.01f;
+
+	private final Map<Color, List<float[]>> fills = new LinkedHashMap<>();
+
+	private final Map<Stroke, Lines> lines = new LinkedHashMap<>();
+
+	/**
+	 * <p>
+	 * Adds a filled rectangle.
+	 * </p>
+	 *
+	 * @param x
+	 *            left edge of the rectangle
+	 * @param y
+	 *            bottom edge of the rectangle
+	 * @param width
+	 *            width of the rectangle
+	 * @param height
+	 *            height of the rectangle
+	 * @param color
+	 *            fill {@link Color}
+	 */
+	public void addRect(final float x, final float y, final float width, final float height, final Color color) {
+		List<float[]> rects = fills.get(color);
+		if (rects == null) {
+			rects = new ArrayList<>();
+			fills.put(color, rects);
+		}
+		rects.add(new float[] { Math.min(x, x + width), Math.min(y, y + height), Math.abs(width),
+				Math.abs(height) });
+	}
+
+	/**
+	 * <p>
+	 * Adds a horizontal or vertical line. Other lines are not supported.
+	 * </p>
+	 *
+	 * @param xStart
+	 *            x coordinate of the start point
+	 * @param yStart
+	 *            y coordinate of the start point
+	 * @param xEnd
+	 *            x coordinate of the end point
+	 * @param yEnd
+	 *            y coordinate of the end point
+	 * @param style
+	 *            {@link LineStyle} of the line
+	 * @throws IllegalArgumentException
+	 *             if the line is neither horizontal nor vertical
+	 */
+	public void addLine(final float xStart, final float yStart, final float xEnd, final float yEnd,
+			final LineStyle style) {
+		final Stroke stroke = new Stroke(style);
+		Lines strokeLines = lines.get(stroke);
+		if (strokeLines == null) {
+			strokeLines = new Lines();
+			lines.put(stroke, strokeLines);
+		}
+		if (yStart == yEnd) {
+			strokeLines.horizontal.add(new Segment(yStart, Math.min(xStart, xEnd), Math.max(xStart, xEnd)));
+		} else if (xStart == xEnd) {
+			strokeLines.vertical.add(new Segment(xStart, Math.min(yStart, yEnd), Math.max(yStart, yEnd)));
+		} else {
+			throw new IllegalArgumentException("Only horizontal and vertical lines can be collected");
+		}
+	}
+
+	public boolean isEmpty() {
+		return fills.isEmpty() && lines.isEmpty();
+	}
+
+	/**
+	 * <p>
+	 * Draws all collected fills and borders and empties the collector.
+	 * </p>
+	 *
+	 * @param stream
+	 *            stream the fills and borders are drawn to
+	 * @throws IOException
+	 *             if underlying stream has problem being written to.
+	 */
+	public void drawTo(final PageContentStreamOptimized stream) throws IOException {
+		for (Map.Entry<Color, List<float[]>> entry : fills.entrySet()) {
+			stream.setNonStrokingColor(entry.getKey());
+			for (float[] rect : mergeRects(entry.getValue())) {
+				stream.addRect(rect[0], rect[1], rect[2], rect[3]);
+			}
+			stream.fill();
+		}
+		for (Map.Entry<Stroke, Lines> entry : lines.entrySet()) {
+			final LineStyle style = entry.getKey().style;
+			final Lines strokeLines = entry.getValue();
+			final boolean solid = style.getDashArray() == null || style.getDashArray().length == 0;
+			PDStreamUtils.setLineStyles(stream, style);
+			for (Segment segment : merge(strokeLines.horizontal, strokeLines.vertical, style.getWidth(), solid)) {
+				stream.moveTo(segment.from, segment.position);
+				stream.lineTo(segment.to, segment.position);
+			}
+			for (Segment segment : merge(strokeLines.vertical, strokeLines.horizontal, style.getWidth(), solid)) {
+				stream.moveTo(segment.position, segment.to);
+				stream.lineTo(segment.position, segment.from);
+			}
+			stream.stroke();
+		}
+		fills.clear();
+		lines.clear();
+	}
+
+	/**
+	 * Merges rectangles that share an edge, first within a row and then the
+	 * resulting bands with the same horizontal extent on top of each other
+	 */
+	private static List<float[]> mergeRects(final List<float[]> rects) {
+		final List<float[]> sorted = new ArrayList<>(rects);
+		// by y, height, x
+		Collections.sort(sorted, new Comparator<float[]>() {
+			@Override
+			public int compare(float[] a, float[] b) {
+				int result = Float.compare(a[1], b[1]);
+				if (result == 0) {
+					result = Float.compare(a[3], b[3]);
+				}
+				return result != 0 ? result : Float.compare(a[0], b[0]);
+			}
+		});
+		final List<float[]> rows = new ArrayList<>();
+		float[] current = null;
+		for (float[] rect : sorted) {
+			if (current != null && near(current[1], rect[1]) && near(current[3], rect[3])
+					&& rect[0] <= current[0] + current[2] + EPSILON) {
+				current[2] = Math.max(current[2], rect[0] + rect[2] - current[0]);
+			} else {
+				current = rect.clone();
+				rows.add(current);
+			}
+		}
+
+		// by x, width, y
+		Collections.sort(rows, new Comparator<float[]>() {
+			@Override
+			public int compare(float[] a, float[] b) {
+				int result = Float.compare(a[0], b[0]);
+				if (result == 0) {
+					result = Float.compare(a[2], b[2]);
+				}
+				return result != 0 ? result : Float.compare(a[1], b[1]);
+			}
+		});
+		final List<float[]> merged = new ArrayList<>();
+		current = null;
+		for (float[] rect : rows) {
+			if (current != null && near(current[0], rect[0]) && near(current[2], rect[2])
+					&& rect[1] <= current[1] + current[3] + EPSILON) {
+				current[3] = Math.max(current[3], rect[1] + rect[3] - current[1]);
+			} else {
+				current = rect;
+				merged.add(current);
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Merges collinear segments which overlap, touch, or whose gap is painted
+	 * by one of the crossing segments
+	 */
+	private static List<Segment> merge(final List<Segment> segments, final List<Segment> crossing, final float width,
+			final boolean solid) {
+		if (!solid) {
+			return segments;
+		}
+		final List<Segment> sorted = new ArrayList<>(segments);
+		Collections.sort(sorted);
+		final NavigableMap<Float, List<Segment>> crossingByPosition = index(crossing);
+
+		final List<Segment> merged = new ArrayList<>();
+		Segment current = null;
+		for (Segment segment : sorted) {
+			if (current != null && near(current.position, segment.position)
+					&& (segment.from <= current.to + EPSILON
+							|| isPainted(crossingByPosition, current.position, current.to, segment.from, width))) {
+				current.to = Math.max(current.to, segment.to);
+			} else {
+				current = new Segment(segment.position, segment.from, segment.to);
+				merged.add(current);
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Checks whether the gap between {@code from} and {@code to} of a line at
+	 * {@code position} is painted by a single crossing line of the same width
+	 */
+	private static boolean isPainted(final NavigableMap<Float, List<Segment>> crossingByPosition,
+			final float position, final float from, final float to, final float width) {
+		if (to - from > width + EPSILON) {
+			return false;
+		}
+		final float halfWidth = width / 2;
+		for (List<Segment> candidates : crossingByPosition
+				.subMap(to - halfWidth - EPSILON, true, from + halfWidth + EPSILON, true).values()) {
+			for (Segment candidate : candidates) {
+				if (candidate.from <= position - halfWidth + EPSILON
+						&& candidate.to >= position + halfWidth - EPSILON) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static NavigableMap<Float, List<Segment>> index(final List<Segment> segments) {
+		final NavigableMap<Float, List<Segment>> byPosition = new TreeMap<>();
+		for (Segment segment : segments) {
+			List<Segment> atPosition = byPosition.get(segment.position);
+			if (atPosition == null) {
+				atPosition = new ArrayList<>();
+				byPosition.put(segment.position, atPosition);
+			}
+			atPosition.add(segment);
+		}
+		return byPosition;
+	}
+
+	private static boolean near(final float a, final float b) {
+		return Math.abs(a - b) <= EPSILON;
+	}
+
+	/**
+	 * Line of a horizontal or vertical border: {@code position} is its y (or x)
+	 * coordinate and it spans from {@code from} to {@code to} along the other
+	 * axis
+	 */
+	private static final class Segment implements Comparable<Segment> {
+
+		private final float position;
+
+		private final float from;
+
+		private float to;
+
+		Segment(final float position, final float from, final float to) {
+			this.position = position;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public int compareTo(final Segment other) {
+			final int result = Float.compare(position, other.position);
+			return result != 0 ? result : Float.compare(from, other.from);
+		}
+	}
+
+	private static final class Lines {
+
+		private final List<Segment> horizontal = new ArrayList<>();
+
+		private final List<Segment> vertical = new ArrayList<>();
+	}
+
+	/**
+	 * {@link LineStyle} as map key, unlike {@link LineStyle#equals(Object)} it
+	 * also compares the dash pattern
+	 */
+	private static final class Stroke {
+
+		private final LineStyle style;
+
+		Stroke(final LineStyle style) {
+			this.style = style;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(style.getColor(), style.getWidth(), Arrays.hashCode(style.getDashArray()),
+					style.getDashPhase());
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Stroke)) {
+				return false;
+			}
+			final LineStyle other = ((Stroke) obj).style;
+			return Objects.equals(style.getColor(), other.getColor()) && style.getWidth() == other.getWidth()
+					&& Arrays.equals(style.getDashArray(), other.getDashArray())
+					&& style.getDashPhase() == other.getDashPhase();
+		}
+	}
+}
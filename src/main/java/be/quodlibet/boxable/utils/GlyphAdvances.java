@@ -0,0 +1,234 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+/**
+ * <p>
+ * Advance widths of the glyphs of a single {@link PDFont}, in glyph space
+ * units (1/1000 of the font size), like {@link PDFont#getStringWidth(String)}.
+ * </p>
+ * <p>
+ * {@link PDFont#getStringWidth(String)} encodes the whole text and looks up
+ * every glyph through the maps of the font each time. The width of each code
+ * point is looked up only once here: code points of the Latin, Greek, Cyrillic,
+ * Hebrew and Arabic blocks are kept in a dense array, all others in a small
+ * open addressing map of primitives. Measuring a text allocates nothing once
+ * its code points are known, and returns exactly the same width as
+ * {@link PDFont#getStringWidth(String)}, because the widths are summed up in
+ * the same order.
+ * </p>
+ * <p>
+ * Monospaced fonts whose printable ASCII glyphs all have the same width
+ * measure ASCII text by its length.
+ * </p>
+ * <p>
+ * Instances are thread safe. Use {@link FontContext#getGlyphAdvances(PDFont)}
+ * to share them between all paragraphs of a document.
+ * </p>
+ */
+public final class GlyphAdvances {
+
+	private static final int DENSE_SIZE = 0x800;
+
+	private static final int FIRST_PRINTABLE = 0x20;
+
+	private static final int LAST_PRINTABLE = 0x7E;
+
+	// sums of integral widths stay exact below this limit
+	private static final float EXACT_LIMIT = 1 << 24;
+
+	private final PDFont font;
+
+	// NaN marks a width which wasn't looked up yet. Threads racing for the same
+	// code point store the same width, so the array doesn't need a lock.
+	private final float[] dense = new float[DENSE_SIZE];
+
+	private final float monospaceAdvance;
+
+	// open addressing map of code points (stored + 1, 0 is empty) to widths
+	private int[] keys = new int[16];
+
+	private float[] values = new float[16];
+
+	private int size;
+
+	/**
+	 * <p>
+	 * Creates the advance table of a font. The widths of the printable ASCII
+	 * characters of monospaced fonts are looked up right away.
+	 * </p>
+	 *
+	 * @param font
+	 *            {@link PDFont} whose glyphs are measured
+	 */
+	public GlyphAdvances(final PDFont font) {
+		this.font = font;
+		Arrays.fill(dense, Float.NaN);
+		this.monospaceAdvance = findMonospaceAdvance();
+	}
+
+	public PDFont getFont() {
+		return font;
+	}
+
+	/**
+	 * @return {@code true} if printable ASCII text is measured by its length
+	 */
+	public boolean isMonospaced() {
+		return !Float.isNaN(monospaceAdvance);
+	}
+
+	/**
+	 * <p>
+	 * Returns the width of the whole text.
+	 * </p>
+	 *
+	 * @param text
+	 *            text to measure
+	 * @return width in glyph space units
+	 * @throws IOException
+	 *             if a glyph can't be read from the font
+	 */
+	public float getWidth(final CharSequence text) throws IOException {
+		return getWidth(text, 0, text.length());
+	}
+
+	/**
+	 * <p>
+	 * Returns the width of a range of the text.
+	 * </p>
+	 *
+	 * @param text
+	 *            text to measure
+	 * @param start
+	 *            index of the first char of the range
+	 * @param end
+	 *            index after the last char of the range
+	 * @return width in glyph space units
+	 * @throws IOException
+	 *             if a glyph can't be read from the font
+	 * @throws IllegalArgumentException
+	 *             if the font can't encode a character, like
+	 *             {@link PDFont#getStringWidth(String)}
+	 */
+	public float getWidth(final CharSequence text, final int start, final int end) throws IOException {
+		if (!Float.isNaN(monospaceAdvance) && (end - start) * monospaceAdvance < EXACT_LIMIT
+				&& isPrintableAscii(text, start, end)) {
+			return (end - start) * monospaceAdvance;
+		}
+		float width = 0;
+		int i = start;
+		while (i < end) {
+			final char c = text.charAt(i++);
+			int codePoint = c;
+			if (Character.isHighSurrogate(c) && i < end && Character.isLowSurrogate(text.charAt(i))) {
+				codePoint = Character.toCodePoint(c, text.charAt(i++));
+			}
+			width += getWidth(codePoint);
+		}
+		return width;
+	}
+
+	/**
+	 * <p>
+	 * Returns the width of a single code point.
+	 * </p>
+	 *
+	 * @param codePoint
+	 *            unicode code point
+	 * @return width in glyph space units
+	 * @throws IOException
+	 *             if the glyph can't be read from the font
+	 */
+	public float getWidth(final int codePoint) throws IOException {
+		if (codePoint < DENSE_SIZE) {
+			float width = dense[codePoint];
+			if (Float.isNaN(width)) {
+				width = measure(codePoint);
+				dense[codePoint] = width;
+			}
+			return width;
+		}
+		return getSparseWidth(codePoint);
+	}
+
+	private float measure(final int codePoint) throws IOException {
+		return font.getStringWidth(new String(Character.toChars(codePoint)));
+	}
+
+	private synchronized float getSparseWidth(final int codePoint) throws IOException {
+		final int key = codePoint + 1;
+		int slot = slot(key, keys.length);
+		while (keys[slot] != 0) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		final float width = measure(codePoint);
+		if ((size + 1) * 2 > keys.length) {
+			grow();
+			slot = slot(key, keys.length);
+			while (keys[slot] != 0) {
+				slot = (slot + 1) & (keys.length - 1);
+			}
+		}
+		keys[slot] = key;
+		values[slot] = width;
+		size++;
+		return width;
+	}
+
+	private void grow() {
+		final int[] oldKeys = keys;
+		final float[] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		values = new float[oldValues.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = slot(oldKeys[i], keys.length);
+				while (keys[slot] != 0) {
+					slot = (slot + 1) & (keys.length - 1);
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private static int slot(final int key, final int capacity) {
+		// spread the code points of a script over the table
+		return (key * 0x9E3779B9 >>> 16) & (capacity - 1);
+	}
+
+	private static boolean isPrintableAscii(final CharSequence text, final int start, final int end) {
+		for (int i = start; i < end; i++) {
+			final char c = text.charAt(i);
+			if (c < FIRST_PRINTABLE || c > LAST_PRINTABLE) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private float findMonospaceAdvance() {
+		// the fixed pitch flag isn't set for the standard Courier fonts, so the
+		// widths are compared instead, proportional fonts differ after a few glyphs
+		try {
+			final float advance = getWidth(FIRST_PRINTABLE);
+			for (int c = FIRST_PRINTABLE + 1; c <= LAST_PRINTABLE; c++) {
+				if (getWidth(c) != advance) {
+					return Float.NaN;
+				}
+			}
+			// only integral widths add up without rounding
+			return advance == (int) advance ? advance : Float.NaN;
+		} catch (IOException | IllegalArgumentException e) {
+			// a symbol font which has no glyphs for ASCII
+			return Float.NaN;
+		}
+	}
+}
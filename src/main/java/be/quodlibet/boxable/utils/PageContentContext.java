@@ -0,0 +1,184 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+
+/**
+ * <p>
+ * Shares the content streams of pages between tables. Every table drawn with
+ * the same context, including the inner tables of {@link be.quodlibet.boxable.TableCell}s,
+ * draws into the same content stream of a page instead of appending a content
+ * stream of its own, so a page with many small tables still has only one or
+ * two content streams.
+ * </p>
+ * <p>
+ * The tables don't close the shared streams. Call {@link #finishPage(PDPage)}
+ * once nothing is drawn on a page anymore, or {@link #close()} before the
+ * document is saved.
+ * </p>
+ */
+public final class PageContentContext implements Closeable {
+
+	private final PDDocument document;
+
+	private final PageStreamCompressor compressor;
+
+	private final Map<PDPage, PageStreams> pages = new LinkedHashMap<>();
+
+	/**
+	 * <p>
+	 * Creates a context whose content streams are compressed while drawing.
+	 * </p>
+	 *
+	 * @param document
+	 *            {@link PDDocument} the pages belong to
+	 */
+	public PageContentContext(final PDDocument document) {
+		this(document, null);
+	}
+
+	/**
+	 * <p>
+	 * Creates a context whose content streams are compressed on the given
+	 * executor once their page is finished.
+	 * </p>
+	 *
+	 * @param document
+	 *            {@link PDDocument} the pages belong to
+	 * @param executor
+	 *            {@link ExecutorService} used to compress the pages or
+	 *            {@code null} to compress them while drawing
+	 * @see PageStreamCompressor
+	 */
+	public PageContentContext(final PDDocument document, final ExecutorService executor) {
+		this.document = document;
+		this.compressor = executor == null ? null : new PageStreamCompressor(executor);
+	}
+
+	/**
+	 * <p>
+	 * Returns the shared content stream of the given page, which is opened the
+	 * first time it is needed.
+	 * </p>
+	 *
+	 * @param page
+	 *            {@link PDPage} that is drawn on
+	 * @return shared content stream of the page
+	 * @throws IOException
+	 *             if the content stream can't be created
+	 */
+	public PageContentStreamOptimized getContentStream(final PDPage page) throws IOException {
+		PageStreams streams = pages.get(page);
+		if (streams == null) {
+			streams = new PageStreams();
+			streams.content = open(page);
+			pages.put(page, streams);
+		}
+		return streams.content;
+	}
+
+	/**
+	 * <p>
+	 * Returns a shared content stream of the given page which is drawn below
+	 * the one returned by {@link #getContentStream(PDPage)} afterwards. If the
+	 * content stream of the page is already in use without one, it is kept
+	 * for what was already drawn and both streams are opened anew.
+	 * </p>
+	 *
+	 * @param page
+	 *            {@link PDPage} that is drawn on
+	 * @return shared content stream below the content of the page
+	 * @throws IOException
+	 *             if the content streams can't be created
+	 */
+	public PageContentStreamOptimized getUnderlayStream(final PDPage page) throws IOException {
+		PageStreams streams = pages.get(page);
+		if (streams == null) {
+			streams = new PageStreams();
+			pages.put(page, streams);
+		} else if (streams.underlay != null) {
+			return streams.underlay;
+		} else {
+			streams.previous.add(streams.content);
+		}
+		streams.underlay = open(page);
+		streams.content = open(page);
+		return streams.underlay;
+	}
+
+	/**
+	 * <p>
+	 * Closes the content streams of the given page. Drawing on the page
+	 * afterwards opens new ones.
+	 * </p>
+	 *
+	 * @param page
+	 *            {@link PDPage} which is finished
+	 * @throws IOException
+	 *             if a content stream can't be closed
+	 */
+	public void finishPage(final PDPage page) throws IOException {
+		final PageStreams streams = pages.remove(page);
+		if (streams != null) {
+			streams.close();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Closes the content streams of all pages and waits until they are
+	 * compressed.
+	 * </p>
+	 *
+	 * @throws IOException
+	 *             if a content stream can't be closed or compressed
+	 */
+	@Override
+	public void close() throws IOException {
+		for (PageStreams streams : pages.values()) {
+			streams.close();
+		}
+		pages.clear();
+		if (compressor != null) {
+			compressor.await();
+		}
+	}
+
+	private PageContentStreamOptimized open(final PDPage page) throws IOException {
+		if (compressor != null) {
+			return compressor.open(document, page);
+		}
+		return new PageContentStreamOptimized(
+				new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND, true));
+	}
+
+	private static final class PageStreams {
+
+		private final List<PageContentStreamOptimized> previous = new ArrayList<>();
+
+		private PageContentStreamOptimized underlay;
+
+		private PageContentStreamOptimized content;
+
+		void close() throws IOException {
+			for (PageContentStreamOptimized stream : previous) {
+				stream.close();
+			}
+			if (underlay != null) {
+				underlay.close();
+			}
+			if (content != null) {
+				content.close();
+			}
+		}
+	}
+}
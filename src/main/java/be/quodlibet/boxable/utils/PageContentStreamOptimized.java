@@ -2,12 +2,18 @@ package be.quodlibet.boxable.utils;
 
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.util.Matrix;
 
 import java.awt.Color;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class PageContentStreamOptimized {
     private static final Matrix ROTATION = Matrix.getRotateInstance(Math.PI * 0.5, 0, 0);
@@ -18,11 +24,45 @@ public class PageContentStreamOptimized {
     private float textCursorAbsoluteY;
     private boolean rotated;
 
+    // text drawn while deferred, null if text is drawn right away
+    private List<TextRun> deferredText;
+    private PDFont deferredFont;
+    private float deferredFontSize;
+    private Color deferredColor;
+    private boolean deferredRotated;
+    private float deferredX;
+    private float deferredY;
+
     public PageContentStreamOptimized(PDPageContentStream pageContentStream) {
         this.pageContentStream = pageContentStream;
     }
 
+    /**
+     * <p>
+     * Defers all text drawn from now on until the stream is closed. The text
+     * is then drawn in a single text object, grouped by font, size, color and
+     * rotation, instead of switching between text and graphics for every
+     * piece of text. Use only if the deferred text doesn't overlap anything
+     * drawn after it.
+     * </p>
+     */
+    public void deferText() {
+        if (deferredText == null) {
+            deferredText = new ArrayList<>();
+            deferredFont = currentFont;
+            deferredFontSize = currentFontSize;
+            deferredColor = currentNonStrokingColor;
+            deferredRotated = rotated;
+            deferredX = textCursorAbsoluteX;
+            deferredY = textCursorAbsoluteY;
+        }
+    }
+
     public void setRotated(boolean rotated) throws IOException {
+        if (deferredText != null) {
+            deferredRotated = rotated;
+            return;
+        }
         if (this.rotated == rotated) return;
         if (rotated) {
             if (textMode) {
@@ -59,6 +99,11 @@ public class PageContentStreamOptimized {
     private float currentFontSize;
 
     public void setFont(PDFont font, float fontSize) throws IOException {
+        if (deferredText != null) {
+            deferredFont = font;
+            deferredFontSize = fontSize;
+            return;
+        }
         if (font != currentFont || fontSize != currentFontSize) {
             pageContentStream.setFont(font, fontSize);
             currentFont = font;
@@ -67,11 +112,21 @@ public class PageContentStreamOptimized {
     }
 
     public void showText(String text) throws IOException {
+        if (deferredText != null) {
+            deferredText.add(new TextRun(new TextStyle(deferredFont, deferredFontSize, deferredColor, deferredRotated),
+                    deferredX, deferredY, text));
+            return;
+        }
         beginText();
         pageContentStream.showText(text);
     }
 
     public void newLineAt(float tx, float ty) throws IOException {
+        if (deferredText != null) {
+            deferredX = tx;
+            deferredY = ty;
+            return;
+        }
         beginText();
         float dx = tx - textCursorAbsoluteX;
         float dy = ty - textCursorAbsoluteY;
@@ -89,6 +144,11 @@ public class PageContentStreamOptimized {
         pageContentStream.drawImage(image, x, y, width, height);
     }
 
+    public void drawForm(PDFormXObject form) throws IOException {
+        endText();
+        pageContentStream.drawForm(form);
+    }
+
     private Color currentStrokingColor;
 
     public void setStrokingColor(Color color) throws IOException {
@@ -101,6 +161,11 @@ public class PageContentStreamOptimized {
     private Color currentNonStrokingColor;
 
     public void setNonStrokingColor(Color color) throws IOException {
+        if (deferredText != null) {
+            // set once something is filled, the text doesn't need it now
+            deferredColor = color;
+            return;
+        }
         if (color != currentNonStrokingColor) {
             pageContentStream.setNonStrokingColor(color);
             currentNonStrokingColor = color;
@@ -109,11 +174,13 @@ public class PageContentStreamOptimized {
 
     public void addRect(float x, float y, float width, float height) throws IOException {
         endText();
+        applyDeferredColor();
         pageContentStream.addRect(x, y, width, height);
     }
 
     public void moveTo(float x, float y) throws IOException {
         endText();
+        applyDeferredColor();
         pageContentStream.moveTo(x, y);
     }
 
@@ -166,7 +233,95 @@ public class PageContentStreamOptimized {
     }
 
     public void close() throws IOException {
+        drawDeferredText();
         endText();
         pageContentStream.close();
     }
+
+    private void applyDeferredColor() throws IOException {
+        if (deferredText != null && deferredColor != currentNonStrokingColor) {
+            pageContentStream.setNonStrokingColor(deferredColor);
+            currentNonStrokingColor = deferredColor;
+        }
+    }
+
+    private void drawDeferredText() throws IOException {
+        if (deferredText == null) {
+            return;
+        }
+        List<TextRun> runs = deferredText;
+        deferredText = null;
+
+        Map<TextStyle, List<TextRun>> runsByStyle = new LinkedHashMap<>();
+        for (TextRun run : runs) {
+            List<TextRun> styleRuns = runsByStyle.get(run.style);
+            if (styleRuns == null) {
+                styleRuns = new ArrayList<>();
+                runsByStyle.put(run.style, styleRuns);
+            }
+            styleRuns.add(run);
+        }
+        // rotating the text is only undone by ending the text object, so
+        // rotated text comes last
+        for (boolean rotatedRuns : new boolean[] { false, true }) {
+            for (Map.Entry<TextStyle, List<TextRun>> entry : runsByStyle.entrySet()) {
+                TextStyle style = entry.getKey();
+                if (style.rotated != rotatedRuns) {
+                    continue;
+                }
+                if (style.color != null) {
+                    setNonStrokingColor(style.color);
+                }
+                setFont(style.font, style.fontSize);
+                setRotated(style.rotated);
+                for (TextRun run : entry.getValue()) {
+                    newLineAt(run.x, run.y);
+                    showText(run.text);
+                }
+            }
+        }
+    }
+
+    private static final class TextStyle {
+        private final PDFont font;
+        private final float fontSize;
+        private final Color color;
+        private final boolean rotated;
+
+        TextStyle(PDFont font, float fontSize, Color color, boolean rotated) {
+            this.font = font;
+            this.fontSize = fontSize;
+            this.color = color;
+            this.rotated = rotated;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(font), fontSize, color, rotated);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TextStyle)) {
+                return false;
+            }
+            TextStyle other = (TextStyle) obj;
+            return font == other.font && fontSize == other.fontSize && Objects.equals(color, other.color)
+                    && rotated == other.rotated;
+        }
+    }
+
+    private static final class TextRun {
+        private final TextStyle style;
+        private final float x;
+        private final float y;
+        private final String text;
+
+        TextRun(TextStyle style, float x, float y, String text) {
+            this.style = style;
+            this.x = x;
+            this.y = y;
+            this.text = text;
+        }
+    }
 }
@@ -0,0 +1,151 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+
+/**
+ * <p>
+ * Opens page content streams whose compression is done on an
+ * {@link ExecutorService} instead of the drawing thread.
+ * </p>
+ * <p>
+ * The operators of a page are still written on the drawing thread, because
+ * writing them registers fonts and images in the shared resources of the
+ * document, and the order of those registrations decides the resource names.
+ * They are written uncompressed into the page's stream, and as soon as the
+ * stream is closed it is flate encoded by a worker while the next page is
+ * drawn. The encoding is done by the same filter {@link PDPageContentStream}
+ * uses for compressed streams, so the resulting document is byte-identical to
+ * one written with compression on the drawing thread.
+ * </p>
+ */
+public final class PageStreamCompressor {
+
+	private final ExecutorService executor;
+
+	private final List<Future<?>> pending = new ArrayList<>();
+
+	/**
+	 * <p>
+	 * Creates a compressor which compresses the page content streams on the
+	 * given executor.
+	 * </p>
+	 *
+	 * @param executor
+	 *            {@link ExecutorService} on which the streams will be
+	 *            compressed
+	 */
+	public PageStreamCompressor(final ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * <p>
+	 * Opens a new content stream which is appended to the content of the given
+	 * page and compressed in the background once it is closed.
+	 * </p>
+	 *
+	 * @param document
+	 *            {@link PDDocument} of the page
+	 * @param page
+	 *            {@link PDPage} whose content is appended
+	 * @return new content stream
+	 * @throws IOException
+	 *             if the content stream can't be created
+	 */
+	public PageContentStreamOptimized open(final PDDocument document, final PDPage page) throws IOException {
+		final PDPageContentStream stream = new PDPageContentStream(document, page,
+				PDPageContentStream.AppendMode.APPEND, false);
+		final COSStream cosStream = lastContentStream(page);
+		return new PageContentStreamOptimized(stream) {
+
+			private boolean closed;
+
+			@Override
+			public void close() throws IOException {
+				super.close();
+				if (!closed) {
+					closed = true;
+					compress(cosStream);
+				}
+			}
+		};
+	}
+
+	/**
+	 * <p>
+	 * Waits until all closed content streams are compressed.
+	 * </p>
+	 *
+	 * @throws IOException
+	 *             if a content stream couldn't be compressed or the thread was
+	 *             interrupted while waiting
+	 */
+	public void await() throws IOException {
+		Throwable failure = null;
+		try {
+			for (Future<?> future : pending) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while compressing page content");
+		} finally {
+			pending.clear();
+		}
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		} else if (failure != null) {
+			throw new IllegalStateException("Unable to compress page content", failure);
+		}
+	}
+
+	private void compress(final COSStream cosStream) {
+		pending.add(executor.submit(new Callable<Void>() {
+
+			@Override
+			public Void call() throws IOException {
+				final byte[] content;
+				try (InputStream in = cosStream.createRawInputStream()) {
+					content = IOUtils.toByteArray(in);
+				}
+				try (OutputStream out = cosStream.createOutputStream(COSName.FLATE_DECODE)) {
+					out.write(content);
+				}
+				return null;
+			}
+		}));
+	}
+
+	private static COSStream lastContentStream(final PDPage page) {
+		final COSBase contents = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+		if (contents instanceof COSArray) {
+			final COSArray array = (COSArray) contents;
+			return (COSStream) array.getObject(array.size() - 1);
+		}
+		return (COSStream) contents;
+	}
+}
@@ -0,0 +1,258 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+/**
+ * <p>
+ * Cache of parsed {@link TrueTypeFont}s which is shared by all documents.
+ * Loading a font into a document only creates a new {@link PDType0Font} for
+ * the cached {@link TrueTypeFont} instead of reading and parsing the font file
+ * again, which makes the bundled FreeSans fonts nearly free after the first
+ * document.
+ * </p>
+ * <p>
+ * The parser keeps a copy of the whole font file on the heap, so the cache is
+ * bounded by the size of the cached font files. It evicts the least recently
+ * used fonts when it is full, so fonts uploaded by users don't pile up, and a
+ * font larger than the whole cache isn't cached at all. Evicted fonts are not
+ * closed, because documents may still use them; they are released once no
+ * document refers to them anymore. A font file which changed since it was
+ * cached is parsed again and replaces the cached font.
+ * </p>
+ * <p>
+ * {@link TrueTypeFont} synchronizes reading its tables and glyphs, so a cached
+ * font can be embedded into several documents at the same time.
+ * </p>
+ */
+public final class TrueTypeFontCache {
+
+	private final long maxBytes;
+
+	// access order, the first entry is the least recently used one
+	private final Map<String, CachedFont> fonts = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long bytes;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * <p>
+	 * Creates a cache which holds fonts up to the given total size of their
+	 * font files.
+	 * </p>
+	 *
+	 * @param maxBytes
+	 *            maximum size of the cached fonts in bytes
+	 */
+	public TrueTypeFontCache(final long maxBytes) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("The cache has to hold at least one byte");
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * <p>
+	 * Loads a font from the classpath into the given document.
+	 * </p>
+	 *
+	 * @param document
+	 *            {@link PDDocument} the font is embedded into
+	 * @param fontPath
+	 *            classpath resource of the TrueType font
+	 * @return new {@link PDType0Font} of the document for the cached font
+	 * @throws IOException
+	 *             if the font can't be found or parsed
+	 */
+	public PDType0Font load(final PDDocument document, final String fontPath) throws IOException {
+		return PDType0Font.load(document, getClasspathFont(fontPath), true);
+	}
+
+	/**
+	 * <p>
+	 * Loads a font file into the given document.
+	 * </p>
+	 *
+	 * @param document
+	 *            {@link PDDocument} the font is embedded into
+	 * @param fontFile
+	 *            {@link Path} of the TrueType font file
+	 * @return new {@link PDType0Font} of the document for the cached font
+	 * @throws IOException
+	 *             if the font can't be read or parsed
+	 */
+	public PDType0Font load(final PDDocument document, final Path fontFile) throws IOException {
+		return PDType0Font.load(document, getFont(fontFile), true);
+	}
+
+	/**
+	 * <p>
+	 * Returns the parsed font of a classpath resource.
+	 * </p>
+	 *
+	 * @param fontPath
+	 *            classpath resource of the TrueType font
+	 * @return cached {@link TrueTypeFont}
+	 * @throws IOException
+	 *             if the font can't be found or parsed
+	 */
+	public TrueTypeFont getClasspathFont(final String fontPath) throws IOException {
+		final String key = "classpath:" + fontPath;
+		final TrueTypeFont cached = get(key, 0);
+		if (cached != null) {
+			return cached;
+		}
+		try (InputStream in = TrueTypeFontCache.class.getClassLoader().getResourceAsStream(fontPath)) {
+			if (in == null) {
+				throw new IOException("Font " + fontPath + " not found on the classpath");
+			}
+			return parse(key, 0, new RandomAccessReadBuffer(in));
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns the parsed font of a file.
+	 * </p>
+	 *
+	 * @param fontFile
+	 *            {@link Path} of the TrueType font file
+	 * @return cached {@link TrueTypeFont}
+	 * @throws IOException
+	 *             if the font can't be read or parsed
+	 */
+	public TrueTypeFont getFont(final Path fontFile) throws IOException {
+		final Path file = fontFile.toAbsolutePath().normalize();
+		final String key = "file:" + file;
+		final long modified = Files.getLastModifiedTime(file).toMillis();
+		final TrueTypeFont cached = get(key, modified);
+		if (cached != null) {
+			return cached;
+		}
+		return parse(key, modified, new RandomAccessReadBufferedFile(file.toFile()));
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized int size() {
+		return fonts.size();
+	}
+
+	/**
+	 * @return total size of the cached font files in bytes
+	 */
+	public synchronized long getByteCount() {
+		return bytes;
+	}
+
+	/**
+	 * <p>
+	 * Removes all fonts from the cache. The counters are kept.
+	 * </p>
+	 */
+	public synchronized void clear() {
+		fonts.clear();
+		bytes = 0;
+	}
+
+	private TrueTypeFont parse(final String key, final long modified, final RandomAccessRead font)
+			throws IOException {
+		try (RandomAccessRead in = font) {
+			final long length = in.length();
+			return put(key, new CachedFont(new TTFParser().parse(in), modified, length));
+		}
+	}
+
+	// a font whose file changed since it was cached is removed
+	private synchronized TrueTypeFont get(final String key, final long modified) {
+		final CachedFont cached = fonts.get(key);
+		if (cached != null && cached.modified == modified) {
+			hits.incrementAndGet();
+			return cached.font;
+		}
+		if (cached != null) {
+			remove(key, cached);
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	// the font is parsed without holding the lock, if another thread parsed
+	// the same font in the meantime its instance is kept
+	private synchronized TrueTypeFont put(final String key, final CachedFont font) {
+		final CachedFont raced = fonts.get(key);
+		if (raced != null && raced.modified == font.modified) {
+			return raced.font;
+		}
+		if (raced != null) {
+			remove(key, raced);
+		}
+		if (font.bytes > maxBytes) {
+			return font.font;
+		}
+		final Iterator<CachedFont> eldest = fonts.values().iterator();
+		while (bytes + font.bytes > maxBytes) {
+			bytes -= eldest.next().bytes;
+			eldest.remove();
+			evictions.incrementAndGet();
+		}
+		fonts.put(key, font);
+		bytes += font.bytes;
+		return font.font;
+	}
+
+	private void remove(final String key, final CachedFont font) {
+		fonts.remove(key);
+		bytes -= font.bytes;
+	}
+
+	private static final class CachedFont {
+
+		private final TrueTypeFont font;
+
+		// last modification of the font file, 0 for classpath resources
+		private final long modified;
+
+		// size of the font file, which the parsed font keeps on the heap
+		private final long bytes;
+
+		CachedFont(final TrueTypeFont font, final long modified, final long bytes) {
+			this.font = font;
+			this.modified = modified;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package be.quodlibet.boxable;
+
+import java.awt.Color;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.line.LineStyle;
+
+public class CellStyleTest {
+
+	@Test
+	public void testCellsShareTheirStyle() throws IOException {
+		PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		BaseTable table = new BaseTable(700, 700, 50, 500, 50, doc, page, true, true);
+		Row<PDPage> row = table.createRow(15f);
+		// only the first cell of a row has a left border
+		row.createCell(20, "left");
+		Cell<PDPage> first = row.createCell(40, "first");
+		Cell<PDPage> second = row.createCell(40, "second");
+		Assert.assertSame(first.getStyle(), second.getStyle());
+		Assert.assertSame(first.getFont(), second.getFont());
+
+		first.setFillColor(Color.LIGHT_GRAY);
+		Assert.assertNotSame(first.getStyle(), second.getStyle());
+		Assert.assertNull(second.getFillColor());
+		second.setFillColor(new Color(Color.LIGHT_GRAY.getRGB()));
+		Assert.assertSame(first.getStyle(), second.getStyle());
+
+		// fonts of the paragraphs are shared by the document as well
+		Assert.assertSame(first.getParagraph().getFont(true, false), second.getParagraph().getFont(true, false));
+		Assert.assertSame(first.getFontBold(), first.getParagraph().getFont(true, false));
+		doc.close();
+	}
+
+	@Test
+	public void testCopiedStyleIsTheSameInstance() throws IOException {
+		PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		BaseTable table = new BaseTable(700, 700, 50, 500, 50, doc, page, true, true);
+		Cell<PDPage> template = table.createRow(15f).createCell(50, "template");
+		template.setBorderStyle(new LineStyle(Color.BLACK, 1));
+		template.setTextColor(Color.BLUE);
+		Cell<PDPage> copy = table.createRow(15f).createCell(50, "copy");
+		copy.copyCellStyle(template);
+		Assert.assertSame(template.getStyle(), copy.getStyle());
+
+		// a dashed border is another style, although LineStyle#equals says
+		// they are equal
+		copy.setBorderStyle(LineStyle.produceDashed(Color.BLACK, 1));
+		Assert.assertNotSame(template.getStyle(), copy.getStyle());
+		Assert.assertNotEquals(template.getStyle(), copy.getStyle());
+		doc.close();
+	}
+}
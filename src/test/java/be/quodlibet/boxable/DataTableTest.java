@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -19,6 +20,7 @@ import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.junit.After;
 import org.junit.AfterClass;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -94,6 +96,94 @@ public class DataTableTest
         doc.close();
     }
 
+    @Test
+    public void rowsTestSameAsCsv() throws IOException
+    {
+        PDDocument doc = new PDDocument();
+        PDPage page = new PDPage();
+        doc.addPage(page);
+        float tableWidth = page.getMediaBox().getWidth() - 20;
+        float yStart = page.getMediaBox().getHeight() - 20;
+
+        List<List<?>> rows = new ArrayList<>();
+        rows.add(Arrays.asList("Item", "Amount", "Comment"));
+        rows.add(Arrays.asList("Apples", 12, "fresh;green"));
+        rows.add(Arrays.asList("Pears", 3.5, "first line\nsecond line"));
+        rows.add(Arrays.asList("Plums", null, ""));
+
+        BaseTable rowsTable = new BaseTable(yStart, yStart, 20, tableWidth, 10, doc, page, true, true);
+        new DataTable(rowsTable, page).addRowsToTable(rows, DataTable.HASHEADER);
+        BaseTable csvTable = new BaseTable(yStart, yStart, 20, tableWidth, 10, doc, page, true, true);
+        new DataTable(csvTable, page).addCsvToTable("Item;Amount;Comment\nApples;12;\"fresh;green\"\n"
+                + "Pears;3.5;first line<br>second line\nPlums;;\n", DataTable.HASHEADER, ';');
+
+        Assert.assertEquals(csvTable.getRows().size(), rowsTable.getRows().size());
+        for (int r = 0; r < csvTable.getRows().size(); r++) {
+            List<Cell<PDPage>> expected = csvTable.getRows().get(r).getCells();
+            List<Cell<PDPage>> actual = rowsTable.getRows().get(r).getCells();
+            Assert.assertEquals(expected.size(), actual.size());
+            for (int c = 0; c < expected.size(); c++) {
+                Assert.assertEquals(expected.get(c).getText(), actual.get(c).getText());
+                Assert.assertEquals(expected.get(c).getWidth(), actual.get(c).getWidth(), 0);
+            }
+        }
+        doc.close();
+    }
+
+    @Test
+    public void autoFitTestFewerLines() throws IOException
+    {
+        PDDocument doc = new PDDocument();
+        PDPage page = new PDPage();
+        doc.addPage(page);
+        float tableWidth = page.getMediaBox().getWidth() - 20;
+        float yStart = page.getMediaBox().getHeight() - 20;
+
+        List<List<?>> rows = new ArrayList<>();
+        rows.add(Arrays.asList("Id", "Description", "Qty", "Unit"));
+        for (int i = 1; i <= 200; i++) {
+            rows.add(Arrays.asList(i, "Replacement part number " + i + " for the left front wheel bearing assembly,"
+                    + " only to be used with the reinforced hub of the heavy duty models",
+                    i % 7, "pcs"));
+        }
+
+        BaseTable firstRow = new BaseTable(yStart, yStart, 20, tableWidth, 10, doc, page, true, true);
+        new DataTable(firstRow, page).addRowsToTable(rows, DataTable.HASHEADER);
+        BaseTable sampled = new BaseTable(yStart, yStart, 20, tableWidth, 10, doc, page, true, true);
+        DataTable t = new DataTable(sampled, page);
+        t.setAutoFitRows(DataTable.ALL_ROWS);
+        t.addRowsToTable(rows, DataTable.HASHEADER);
+        BaseTable parallel = new BaseTable(yStart, yStart, 20, tableWidth, 10, doc, page, true, true);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        parallel.setLayoutPool(pool);
+        DataTable p = new DataTable(parallel, page);
+        p.setAutoFitRows(DataTable.ALL_ROWS);
+        p.addRowsToTable(rows, DataTable.HASHEADER);
+        pool.shutdown();
+
+        Assert.assertTrue(height(sampled) < height(firstRow));
+        List<Cell<PDPage>> cells = sampled.getRows().get(0).getCells();
+        float total = 0;
+        for (Cell<PDPage> cell : cells) {
+            total += cell.getWidth();
+        }
+        Assert.assertEquals(tableWidth, total, 0.01f);
+        Assert.assertTrue(cells.get(1).getWidth() > cells.get(0).getWidth());
+        for (int c = 0; c < cells.size(); c++) {
+            Assert.assertEquals(cells.get(c).getWidth(), parallel.getRows().get(0).getCells().get(c).getWidth(), 0.01f);
+        }
+        doc.close();
+    }
+
+    private static float height(BaseTable table)
+    {
+        float height = 0;
+        for (Row<PDPage> row : table.getRows()) {
+            height += row.getHeight();
+        }
+        return height;
+    }
+
     @Test
     public void csvTestColWidths() throws IOException
     {
@@ -0,0 +1,62 @@
+package be.quodlibet.boxable;
+
+import java.awt.Color;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeferredDrawingTest {
+
+	@Test
+	public void testDeferredDrawingLooksTheSame() throws IOException {
+		PDDocument doc = createDocument(false);
+		PDDocument deferredDoc = createDocument(true);
+
+		Assert.assertTrue(deferredDoc.getNumberOfPages() > 1);
+		PdfAssert.assertSameRenderingExceptEdges(doc, deferredDoc);
+		for (int i = 0; i < doc.getNumberOfPages(); i++) {
+			String contents = PdfAssert.contents(deferredDoc.getPage(i));
+			Assert.assertEquals("Text of page " + i + " is not in a single text object", 1,
+					contents.split("\nBT\n", -1).length - 1);
+			Assert.assertTrue("Content of page " + i + " is not smaller",
+					contents.length() < PdfAssert.contents(doc.getPage(i)).length());
+		}
+		doc.close();
+		deferredDoc.close();
+	}
+
+	private static PDDocument createDocument(boolean deferredDrawing) throws IOException {
+		PDDocument doc = new PDDocument();
+		BaseTable table = PdfAssert.createTable(doc);
+		table.setDeferredDrawing(deferredDrawing);
+		Row<PDPage> headerRow = table.createRow(15f);
+		headerRow.createCell(20, "Number").setFillColor(Color.DARK_GRAY);
+		headerRow.createCell(60, "Description").setFillColor(Color.DARK_GRAY);
+		headerRow.createCell(20, "Status").setFillColor(Color.DARK_GRAY);
+		for (Cell<PDPage> cell : headerRow.getCells()) {
+			cell.setTextColor(Color.WHITE);
+			cell.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD));
+		}
+		table.addHeaderRow(headerRow);
+		for (int i = 0; i < 80; i++) {
+			Row<PDPage> row = table.createRow(10f);
+			Color fill = i % 2 == 0 ? Color.WHITE : new Color(230, 240, 255);
+			Cell<PDPage> number = row.createCell(20, String.valueOf(i));
+			number.setFillColor(fill);
+			number.setTextRotated(i % 10 == 0);
+			String description = i % 6 == 0 ? "Items <ul><li>first <b>item</b></li><li>second <i>item</i></li></ul>"
+					: "Row <i>" + i + "</i> of the table";
+			row.createCell(60, description).setFillColor(fill);
+			Cell<PDPage> status = row.createCell(20, i % 5 == 0 ? "late" : "ok");
+			status.setFillColor(fill);
+			status.setTextColor(i % 5 == 0 ? Color.RED : Color.BLACK);
+		}
+		table.draw();
+		return doc;
+	}
+}
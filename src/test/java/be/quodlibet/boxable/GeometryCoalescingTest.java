@@ -0,0 +1,57 @@
+package be.quodlibet.boxable;
+
+import java.awt.Color;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.line.LineStyle;
+
+public class GeometryCoalescingTest {
+
+	@Test
+	public void testCoalescedGeometryLooksTheSame() throws IOException {
+		PDDocument doc = createDocument(false);
+		PDDocument coalescedDoc = createDocument(true);
+
+		Assert.assertTrue(coalescedDoc.getNumberOfPages() > 1);
+		PdfAssert.assertSameRenderingExceptEdges(doc, coalescedDoc);
+		for (int i = 0; i < doc.getNumberOfPages(); i++) {
+			String contents = PdfAssert.contents(coalescedDoc.getPage(i));
+			Assert.assertTrue("Content of page " + i + " is not smaller",
+					contents.length() < PdfAssert.contents(doc.getPage(i)).length() / 2);
+		}
+		doc.close();
+		coalescedDoc.close();
+	}
+
+	private static PDDocument createDocument(boolean coalesceGeometry) throws IOException {
+		PDDocument doc = new PDDocument();
+		BaseTable table = PdfAssert.createTable(doc);
+		table.setCoalesceGeometry(coalesceGeometry);
+		Row<PDPage> headerRow = table.createRow(15f);
+		headerRow.createCell(20, "Number").setFillColor(Color.LIGHT_GRAY);
+		headerRow.createCell(50, "Description").setFillColor(Color.LIGHT_GRAY);
+		headerRow.createCell(30, "Status").setFillColor(Color.LIGHT_GRAY);
+		table.addHeaderRow(headerRow);
+		for (int i = 0; i < 120; i++) {
+			Row<PDPage> row = table.createRow(10f);
+			Color fill = i % 2 == 0 ? Color.WHITE : new Color(230, 240, 255);
+			row.createCell(20, String.valueOf(i)).setFillColor(fill);
+			row.createCell(50, i % 9 == 0 ? "A longer description that has to be wrapped over more than one line"
+					: "Row " + i).setFillColor(fill);
+			Cell<PDPage> status = row.createCell(30, i % 5 == 0 ? "late" : "ok");
+			status.setFillColor(i % 5 == 0 ? Color.ORANGE : fill);
+			if (i % 7 == 0) {
+				status.setBorderStyle(new LineStyle(Color.RED, 2));
+			} else if (i % 11 == 0) {
+				status.setBottomBorderStyle(LineStyle.produceDashed(Color.BLUE, 1));
+			}
+		}
+		table.draw();
+		return doc;
+	}
+}
@@ -0,0 +1,50 @@
+package be.quodlibet.boxable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HeaderFormTest {
+
+	@Test
+	public void testRepeatedHeaderLooksTheSame() throws IOException {
+		PDDocument doc = createDocument(false);
+		PDDocument formDoc = createDocument(true);
+
+		Assert.assertTrue(formDoc.getNumberOfPages() > 2);
+		PdfAssert.assertSameRendering(doc, formDoc);
+		Assert.assertTrue(PdfAssert.contents(formDoc.getPage(2)).contains(" Do"));
+		Assert.assertTrue(size(formDoc) < size(doc));
+		doc.close();
+		formDoc.close();
+	}
+
+	private static PDDocument createDocument(boolean repeatHeaderAsForm) throws IOException {
+		PDDocument doc = new PDDocument();
+		BaseTable table = PdfAssert.createTable(doc);
+		table.setRepeatHeaderAsForm(repeatHeaderAsForm);
+		for (int h = 0; h < 3; h++) {
+			Row<PDPage> headerRow = table.createRow(15f);
+			headerRow.createCell(30, "Header " + h);
+			headerRow.createCell(70, "Description of header row <i>" + h + "</i>");
+			table.addHeaderRow(headerRow);
+		}
+		for (int i = 0; i < 200; i++) {
+			Row<PDPage> row = table.createRow(10f);
+			row.createCell(30, String.valueOf(i));
+			row.createCell(70, "Row " + i);
+		}
+		table.draw();
+		return doc;
+	}
+
+	private static int size(PDDocument doc) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		doc.save(out);
+		return out.size();
+	}
+}
@@ -0,0 +1,111 @@
+package be.quodlibet.boxable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.utils.FontContext;
+
+public class ParagraphTest {
+
+	@Test
+	public void testLineIteratorWrapsLikeGetLines() throws IOException {
+		PDDocument doc = new PDDocument();
+		FontContext context = new FontContext(doc);
+		StringBuilder text = new StringBuilder();
+		while (text.length() < 100000) {
+			text.append("Some <b>bold</b> and <i>italic</i> words,<br>a list <ul><li>first item</li><li>second</li></ul>");
+			text.append("and averyveryveryverylongwordwhichdoesnotfitintoasingleline. ");
+		}
+		Paragraph streamed = new Paragraph(text.toString(), context.getFont(), 10, 120, HorizontalAlignment.LEFT,
+				null, null, null, 1, context);
+		List<String> lines = new ArrayList<>();
+		Iterator<String> iterator = streamed.lineIterator();
+		while (iterator.hasNext()) {
+			lines.add(iterator.next());
+		}
+		float height = streamed.getHeight();
+
+		Paragraph wrapped = new Paragraph(text.toString(), context.getFont(), 10, 120, HorizontalAlignment.LEFT,
+				null, null, null, 1, context);
+		Assert.assertEquals(wrapped.getLines(), lines);
+		Assert.assertEquals(wrapped.getHeight(), height, 0.001f);
+		doc.close();
+	}
+
+	@Test
+	public void testSingleLinesMatchWrappedLines() throws IOException {
+		PDDocument doc = new PDDocument();
+		FontContext context = new FontContext(doc);
+		String[] texts = { "N/A", "EUR", "trailing   ", "  leading", "   ", "12.345,67", "shipped to customer" };
+		for (String text : texts) {
+			for (float width : new float[] { 10, 40, 200 }) {
+				List<String> streamed = new ArrayList<>();
+				Iterator<String> iterator = paragraph(context, text, width).lineIterator();
+				while (iterator.hasNext()) {
+					streamed.add(iterator.next());
+				}
+				Assert.assertEquals(streamed, paragraph(context, text, width).getLines());
+			}
+		}
+		doc.close();
+	}
+
+	@Test
+	public void testNoWrapCutsTextWithEllipsis() throws IOException {
+		PDDocument doc = new PDDocument();
+		FontContext context = new FontContext(doc);
+		String text = "2016-05-04 12:00:01 INFO a log message which is far too long";
+		Paragraph paragraph = paragraph(context, text, 100);
+		paragraph.setNoWrap(true);
+		Assert.assertEquals(1, paragraph.getLines().size());
+		String line = paragraph.getLines().get(0);
+		Assert.assertTrue(line.endsWith("\u2026"));
+		Assert.assertTrue(paragraph.getLineWidth(0) <= 100);
+		Assert.assertEquals(context.getStringWidth(context.getFont(), line) / 1000 * 10, paragraph.getLineWidth(0), 0);
+		// one more char wouldn't fit
+		String cut = line.substring(0, line.length() - 1);
+		String longer = text.substring(0, cut.length() + 1) + "\u2026";
+		Assert.assertTrue(context.getStringWidth(context.getFont(), longer) / 1000 * 10 > 100);
+
+		Paragraph fits = paragraph(context, "INFO started", 100);
+		List<String> wrapped = fits.getLines();
+		fits.setNoWrap(true);
+		Assert.assertEquals(wrapped, fits.getLines());
+		doc.close();
+	}
+
+	@Test
+	public void testNoWrapLeavesOutTags() throws IOException {
+		PDDocument doc = new PDDocument();
+		FontContext context = new FontContext(doc);
+		Assert.assertEquals(Arrays.asList("line1 line2"), noWrapLines(context, "line1<br>line2"));
+		Assert.assertEquals(Arrays.asList("bold and italic"), noWrapLines(context, "<b>bold</b> and <i>italic</i>"));
+		Assert.assertEquals(Arrays.asList("first second"), noWrapLines(context, "<p>first</p><p>second</p>"));
+		Assert.assertEquals(Arrays.asList("a < b"), noWrapLines(context, "a < b"));
+		Assert.assertEquals(0, noWrapLines(context, "<br>").size());
+
+		List<String> cut = noWrapLines(context, "<b>a log message</b><br>which is far too long for the cell");
+		Assert.assertEquals(1, cut.size());
+		Assert.assertTrue(cut.get(0).startsWith("a log message which"));
+		Assert.assertTrue(cut.get(0).endsWith("\u2026"));
+		doc.close();
+	}
+
+	private static List<String> noWrapLines(FontContext context, String text) {
+		Paragraph paragraph = paragraph(context, text, 150);
+		paragraph.setNoWrap(true);
+		return paragraph.getLines();
+	}
+
+	private static Paragraph paragraph(FontContext context, String text, float width) {
+		return new Paragraph(text, context.getFont(), 10, width, HorizontalAlignment.LEFT, null, null, null, 1,
+				context);
+	}
+}
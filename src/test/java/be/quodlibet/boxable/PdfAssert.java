@@ -0,0 +1,115 @@
+package be.quodlibet.boxable;
+
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.junit.Assert;
+
+/**
+ * <p>
+ * Table fixture and assertions shared by the tests which compare a document
+ * drawn with an optimization against the same document drawn without it.
+ * </p>
+ */
+public final class PdfAssert {
+
+	private PdfAssert() {
+	}
+
+	/**
+	 * <p>
+	 * Adds a page to the document and creates a table which starts at the top
+	 * of it and continues on new pages.
+	 * </p>
+	 *
+	 * @param doc
+	 *            {@link PDDocument} the table is drawn into
+	 * @return the new {@link BaseTable}
+	 */
+	public static BaseTable createTable(PDDocument doc) throws IOException {
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		return new BaseTable(700, 700, 50, 500, 50, doc, page, true, true);
+	}
+
+	/**
+	 * <p>
+	 * Asserts that both documents have the same number of pages and that each
+	 * page renders to the same pixels.
+	 * </p>
+	 */
+	public static void assertSameRendering(PDDocument expected, PDDocument actual) throws IOException {
+		assertSameRendering(expected, actual, 1, null);
+	}
+
+	/**
+	 * <p>
+	 * Like {@link #assertSameRendering(PDDocument, PDDocument)}, for documents
+	 * whose fills and borders are drawn in another order. That only changes the
+	 * anti-aliased edges where they meet, so the pages are rendered without
+	 * anti-aliasing, at twice the resolution to keep thin lines.
+	 * </p>
+	 */
+	public static void assertSameRenderingExceptEdges(PDDocument expected, PDDocument actual) throws IOException {
+		assertSameRendering(expected, actual, 2,
+				new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF));
+	}
+
+	private static void assertSameRendering(PDDocument expected, PDDocument actual, float scale,
+			RenderingHints hints) throws IOException {
+		Assert.assertEquals(expected.getNumberOfPages(), actual.getNumberOfPages());
+		PDFRenderer expectedRenderer = new PDFRenderer(expected);
+		PDFRenderer actualRenderer = new PDFRenderer(actual);
+		if (hints != null) {
+			expectedRenderer.setRenderingHints(hints);
+			actualRenderer.setRenderingHints(hints);
+		}
+		for (int i = 0; i < expected.getNumberOfPages(); i++) {
+			assertSameImage(i, expectedRenderer.renderImage(i, scale), actualRenderer.renderImage(i, scale));
+		}
+	}
+
+	private static void assertSameImage(int page, BufferedImage expected, BufferedImage actual) {
+		Assert.assertEquals(expected.getWidth(), actual.getWidth());
+		Assert.assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+					Assert.fail("Page " + page + " differs at " + x + "," + y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Asserts that both documents have the same number of pages and that each
+	 * page has the same content stream.
+	 * </p>
+	 */
+	public static void assertSameContents(PDDocument expected, PDDocument actual) throws IOException {
+		Assert.assertEquals(expected.getNumberOfPages(), actual.getNumberOfPages());
+		for (int i = 0; i < expected.getNumberOfPages(); i++) {
+			Assert.assertEquals("Content of page " + i + " differs", contents(expected.getPage(i)),
+					contents(actual.getPage(i)));
+		}
+	}
+
+	/**
+	 * @return the decoded content stream of the page, one char per byte
+	 */
+	public static String contents(PDPage page) throws IOException {
+		InputStream in = page.getContents();
+		try {
+			return new String(IOUtils.toByteArray(in), "ISO-8859-1");
+		} finally {
+			in.close();
+		}
+	}
+}
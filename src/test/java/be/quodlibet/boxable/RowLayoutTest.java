@@ -0,0 +1,87 @@
+package be.quodlibet.boxable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.datatable.DataTable;
+import be.quodlibet.boxable.layout.CellLayout;
+import be.quodlibet.boxable.layout.RowLayout;
+
+public class RowLayoutTest {
+
+	@Test
+	public void testLayoutIsCachedUntilGeometryChanges() throws IOException {
+		PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		BaseTable table = new BaseTable(700, 700, 50, 500, 50, doc, page, true, true);
+		Row<PDPage> row = table.createRow(10f);
+		Cell<PDPage> first = row.createCell(30, "short");
+		row.createCell(70, "text");
+
+		RowLayout layout = row.getLayout();
+		Assert.assertSame(layout, row.getLayout());
+		Assert.assertEquals(2, layout.getCells().size());
+		Assert.assertEquals(1, layout.getCell(0).getLines().size());
+		Assert.assertEquals(50f + first.getWidth(), layout.getCell(1).getX(), 0.001f);
+
+		float height = row.getHeight();
+		first.setText("a text that is long enough to be wrapped over more than one line of the cell");
+		RowLayout wrapped = row.getLayout();
+		Assert.assertNotSame(layout, wrapped);
+		Assert.assertTrue(wrapped.getCell(0).getLines().size() > 1);
+		Assert.assertTrue(row.getHeight() > height);
+
+		first.setRightBorderStyle(null);
+		CellLayout cell = row.getLayout().getCell(0);
+		Assert.assertNotSame(wrapped, row.getLayout());
+		Assert.assertEquals(wrapped.getHeight(), row.getLayout().getHeight(), 0.001f);
+		Assert.assertEquals(cell.getMaxLineWidth(), wrapped.getCell(0).getMaxLineWidth(), 0.001f);
+		doc.close();
+	}
+
+	@Test
+	public void testNoWrapRowsHaveTheHeightOfOneLine() throws IOException {
+		PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		BaseTable table = new BaseTable(700, 700, 50, 500, 50, doc, page, true, true);
+		table.setNoWrap(true);
+		Row<PDPage> shortRow = table.createRow(10f);
+		shortRow.createCell(30, "short");
+		Row<PDPage> longRow = table.createRow(10f);
+		Cell<PDPage> cell = longRow.createCell(30, "a text that is long enough to be wrapped over more than one line");
+
+		Assert.assertTrue(cell.isNoWrap());
+		Assert.assertEquals(shortRow.getHeight(), longRow.getHeight(), 0);
+		Assert.assertEquals(1, longRow.getLayout().getCell(0).getLines().size());
+		Assert.assertTrue(longRow.getLayout().getCell(0).getMaxLineWidth() <= cell.getInnerWidth());
+
+		cell.setNoWrap(false);
+		Assert.assertTrue(longRow.getHeight() > shortRow.getHeight());
+		doc.close();
+	}
+
+	@Test
+	public void testNoWrapDataTableDrawsLineBreaksAsSpaces() throws IOException {
+		PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		BaseTable table = new BaseTable(700, 700, 50, 500, 50, doc, page, true, true);
+		table.setNoWrap(true);
+		List<List<String>> rows = Collections.singletonList(Arrays.asList("line1\nline2", "value"));
+		new DataTable(table, page).addRowsToTable(rows, DataTable.NOHEADER);
+
+		Row<PDPage> row = table.getRows().get(0);
+		Assert.assertEquals("line1<br>line2", row.getCells().get(0).getText());
+		Assert.assertEquals(Collections.singletonList("line1 line2"), row.getCells().get(0).getParagraph().getLines());
+		doc.close();
+	}
+}
@@ -0,0 +1,88 @@
+package be.quodlibet.boxable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StreamingTableTest {
+
+	private static final int ROWS = 300;
+
+	@Test
+	public void testRowsAreReleasedWhileDrawing() throws IOException {
+		PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		StreamingTable table = new StreamingTable(700, 700, 50, 500, 50, doc, page, true, true);
+		createHeader(table);
+		for (int i = 0; i < ROWS; i++) {
+			createDataRow(table, i);
+			Assert.assertTrue("Drawn rows are not released", table.getRows().size() <= 2);
+		}
+		table.draw();
+		Assert.assertTrue(table.getRows().isEmpty());
+		Assert.assertTrue(doc.getNumberOfPages() > 1);
+		doc.close();
+	}
+
+	@Test
+	public void testSameOutputAsBaseTable() throws IOException {
+		PDDocument streamingDoc = new PDDocument();
+		PDPage streamingPage = new PDPage();
+		streamingDoc.addPage(streamingPage);
+		StreamingTable streamingTable = new StreamingTable(700, 700, 50, 500, 50, streamingDoc, streamingPage, true,
+				true);
+		fill(streamingTable);
+		streamingTable.draw();
+
+		PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		BaseTable table = new BaseTable(700, 700, 50, 500, 50, doc, page, true, true);
+		fill(table);
+		table.draw();
+
+		Assert.assertEquals(doc.getNumberOfPages(), streamingDoc.getNumberOfPages());
+		for (int i = 0; i < doc.getNumberOfPages(); i++) {
+			Assert.assertArrayEquals("Content of page " + i + " differs", contents(doc.getPage(i)),
+					contents(streamingDoc.getPage(i)));
+		}
+		streamingDoc.close();
+		doc.close();
+	}
+
+	private static void fill(BaseTable table) {
+		createHeader(table);
+		for (int i = 0; i < ROWS; i++) {
+			createDataRow(table, i);
+		}
+	}
+
+	private static void createHeader(BaseTable table) {
+		Row<PDPage> headerRow = table.createRow(15f);
+		headerRow.createCell(30, "Number");
+		headerRow.createCell(70, "Description");
+		table.addHeaderRow(headerRow);
+	}
+
+	private static void createDataRow(BaseTable table, int i) {
+		Row<PDPage> row = table.createRow(10f);
+		row.createCell(30, String.valueOf(i));
+		row.createCell(70, i % 7 == 0 ? "A longer description that has to be wrapped over more than one line"
+				+ " inside of its cell" : "Row " + i);
+	}
+
+	private static byte[] contents(PDPage page) throws IOException {
+		InputStream in = page.getContents();
+		try {
+			return IOUtils.toByteArray(in);
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package be.quodlibet.boxable.datatable;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.BaseTable;
+import be.quodlibet.boxable.Cell;
+import be.quodlibet.boxable.Row;
+
+public class ColumnarDataTest {
+
+	@Test
+	public void testFormatsLikeDecimalFormat() {
+		DecimalColumnFormatter formatter = new DecimalColumnFormatter(2, Locale.GERMANY);
+		Assert.assertEquals("1.234.567,89", format(formatter, 1234567.891));
+		Assert.assertEquals("-12,50", format(formatter, -12.5));
+		Assert.assertEquals("0,00", format(formatter, -0.001));
+		Assert.assertEquals("100.000.000.000.000.000.000,00", format(formatter, 1e20));
+		Assert.assertEquals("-9.223.372.036.854.775.808,00", format(formatter, Long.MIN_VALUE));
+		Assert.assertEquals("42", format(new DecimalColumnFormatter(0, false, Locale.GERMANY), 42L));
+
+		// values next to a tie are rounded by their exact value
+		DecimalColumnFormatter integers = new DecimalColumnFormatter(0, Locale.US);
+		Assert.assertEquals("0", format(integers, 0.49999999999999994));
+		Assert.assertEquals("1", format(integers, 0.5));
+		Assert.assertEquals("-3", format(integers, -2.5));
+		DecimalColumnFormatter oneDigit = new DecimalColumnFormatter(1, Locale.US);
+		Assert.assertEquals("7,008.0", format(oneDigit, 7008.049999999999));
+		Assert.assertEquals("7,008.1", format(oneDigit, 7008.05000000001));
+		Assert.assertEquals("0.0", format(oneDigit, -0.04999999999999999));
+		DecimalColumnFormatter twoDigits = new DecimalColumnFormatter(2, Locale.US);
+		Assert.assertEquals("0.01", format(twoDigits, 0.005));
+		Assert.assertEquals("1.00", format(twoDigits, 1.005));
+		Assert.assertEquals("-0.13", format(twoDigits, -0.125));
+
+		DecimalFormat reference = new DecimalFormat("#,##0.000", DecimalFormatSymbols.getInstance(Locale.US));
+		reference.setRoundingMode(RoundingMode.HALF_UP);
+		DecimalColumnFormatter us = new DecimalColumnFormatter(3, Locale.US);
+		Random random = new Random(7);
+		for (int i = 0; i < 1000; i++) {
+			double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12));
+			Assert.assertEquals(reference.format(value), format(us, value));
+			// the decimal next to a tie, which is the closest double to the tie or
+			// just below or above it
+			double tie = (Math.floor(value * 1000) + 0.5) / 1000;
+			for (double near : new double[] { tie, Math.nextAfter(tie, Double.NEGATIVE_INFINITY), Math.nextUp(tie) }) {
+				Assert.assertEquals(reference.format(near), format(us, near));
+			}
+		}
+	}
+
+	@Test
+	public void testAddsColumnsToTable() throws IOException {
+		PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		BaseTable table = new BaseTable(700, 700, 20, 500, 20, doc, page, true, true);
+		ColumnarData data = new ColumnarData(2);
+		data.addColumn("Account", new String[] { "Cash", null });
+		data.addColumn("Balance", new double[] { 1520.5, -3.999 }, new DecimalColumnFormatter(2, Locale.US));
+		data.addColumn("Entries", new long[] { 12000, 7 }, new DecimalColumnFormatter(0, Locale.US));
+		new DataTable(table, page).addColumnsToTable(data, DataTable.HASHEADER);
+
+		List<Row<PDPage>> rows = table.getRows();
+		Assert.assertEquals(3, rows.size());
+		Assert.assertTrue(rows.get(0).isHeaderRow());
+		assertTexts(rows.get(0), "Account", "Balance", "Entries");
+		assertTexts(rows.get(1), "Cash", "1,520.50", "12,000");
+		assertTexts(rows.get(2), "", "-4.00", "7");
+		doc.close();
+	}
+
+	private static void assertTexts(Row<PDPage> row, String... texts) {
+		List<Cell<PDPage>> cells = row.getCells();
+		Assert.assertEquals(texts.length, cells.size());
+		for (int i = 0; i < texts.length; i++) {
+			Assert.assertEquals(texts[i], cells.get(i).getText());
+		}
+	}
+
+	private static String format(ColumnFormatter formatter, double value) {
+		StringBuilder out = new StringBuilder();
+		formatter.format(value, out);
+		return out.toString();
+	}
+
+	private static String format(ColumnFormatter formatter, long value) {
+		StringBuilder out = new StringBuilder();
+		formatter.format(value, out);
+		return out.toString();
+	}
+}
@@ -0,0 +1,58 @@
+package be.quodlibet.boxable.datatable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MappedFileReaderTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Test
+	public void testDecodesCharsSplitBetweenRegions() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			text.append(i).append(";Grüße aus Köln;12,50 €;😀\n");
+		}
+		Path file = File.createTempFile("mapped", ".csv").toPath();
+		try {
+			Files.write(file, text.toString().getBytes(UTF_8));
+			// regions which end in the middle of multi-byte chars
+			for (int regionSize : new int[] { 7, 4096, MappedFileReader.REGION_SIZE }) {
+				Assert.assertEquals(text.toString(), read(new MappedFileReader(file, UTF_8, regionSize)));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test(expected = MalformedInputException.class)
+	public void testReportsTruncatedChars() throws IOException {
+		Path file = File.createTempFile("mapped", ".csv").toPath();
+		try {
+			Files.write(file, new byte[] { 'a', ';', (byte) 0xe2, (byte) 0x82 });
+			read(new MappedFileReader(file, UTF_8, 3));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static String read(Reader reader) throws IOException {
+		try (Reader in = reader) {
+			StringBuilder result = new StringBuilder();
+			char[] buffer = new char[1000];
+			int count;
+			while ((count = in.read(buffer, 0, buffer.length)) >= 0) {
+				result.append(buffer, 0, count);
+			}
+			return result.toString();
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package be.quodlibet.boxable.datatable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.BaseTable;
+import be.quodlibet.boxable.Cell;
+import be.quodlibet.boxable.Row;
+
+public class RowMapperTest {
+
+	@DataRow
+	public static class Product {
+
+		private final String name;
+
+		private final int stock;
+
+		public Product(String name, int stock) {
+			this.name = name;
+			this.stock = stock;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getStock() {
+			return stock;
+		}
+
+		public boolean isInStock() {
+			return stock > 0;
+		}
+	}
+
+	@DataRow
+	public static class Invoice {
+
+		@DataColumn(header = "Invoice", order = 0)
+		long number;
+
+		private final String customer;
+
+		private final Double amount;
+
+		Invoice(long number, String customer, Double amount) {
+			this.number = number;
+			this.customer = customer;
+			this.amount = amount;
+		}
+
+		@DataColumn(order = 2, fractionDigits = 2)
+		public Double getAmount() {
+			return amount;
+		}
+
+		@DataColumn(order = 1)
+		public String getCustomer() {
+			return customer;
+		}
+
+		public String getComment() {
+			return "not a column";
+		}
+	}
+
+	@Test
+	public void testGettersAreColumns() {
+		RowMapper<Product> mapper = new RowMapperTest_ProductRowMapper();
+		Assert.assertEquals(3, mapper.getColumnCount());
+		Assert.assertEquals("Name", mapper.getHeader(0));
+		Assert.assertEquals("Stock", mapper.getHeader(1));
+		Assert.assertEquals("In Stock", mapper.getHeader(2));
+		StringBuilder out = new StringBuilder();
+		Product product = new Product("Bolts", 120);
+		for (int i = 0; i < mapper.getColumnCount(); i++) {
+			mapper.format(product, i, out.append('|'));
+		}
+		Assert.assertEquals("|Bolts|120|true", out.toString());
+	}
+
+	@Test
+	public void testAddsObjectsToTable() throws IOException {
+		PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		BaseTable table = new BaseTable(700, 700, 20, 500, 20, doc, page, true, true);
+		List<Invoice> invoices = Arrays.asList(new Invoice(1001, "ACME", 1234.5), new Invoice(1002, null, null));
+		new DataTable(table, page).addObjectsToTable(invoices, new RowMapperTest_InvoiceRowMapper(Locale.GERMANY),
+				DataTable.HASHEADER);
+
+		List<Row<PDPage>> rows = table.getRows();
+		Assert.assertEquals(3, rows.size());
+		assertTexts(rows.get(0), "Invoice", "Customer", "Amount");
+		assertTexts(rows.get(1), "1001", "ACME", "1.234,50");
+		assertTexts(rows.get(2), "1002", "", "");
+		doc.close();
+	}
+
+	private static void assertTexts(Row<PDPage> row, String... texts) {
+		List<Cell<PDPage>> cells = row.getCells();
+		Assert.assertEquals(texts.length, cells.size());
+		for (int i = 0; i < texts.length; i++) {
+			Assert.assertEquals(texts[i], cells.get(i).getText());
+		}
+	}
+}
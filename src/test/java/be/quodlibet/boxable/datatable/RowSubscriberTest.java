@@ -0,0 +1,131 @@
+package be.quodlibet.boxable.datatable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.StreamingTable;
+
+public class RowSubscriberTest {
+
+	@Test
+	public void testRequestsAboutAPageOfRows() throws Exception {
+		PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		StreamingTable table = new StreamingTable(700, 700, 20, 500, 20, doc, page, true, true);
+		RowSubscriber subscriber = new DataTable(table, page).createRowSubscriber(DataTable.HASHEADER);
+
+		RowSource source = new RowSource(1000, null);
+		source.subscribe(subscriber);
+		subscriber.await();
+		table.draw();
+
+		Assert.assertEquals(1001, source.sent);
+		Assert.assertTrue(doc.getNumberOfPages() > 10);
+		Assert.assertEquals(16, (long) source.requests.get(0));
+		// a page of this page size has room for more than 16 rows
+		Assert.assertTrue(source.maxDemand > 16);
+		Assert.assertTrue(source.maxDemand < 100);
+		doc.close();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRethrowsErrorsOfTheSource() throws Exception {
+		PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		StreamingTable table = new StreamingTable(700, 700, 20, 500, 20, doc, page, true, true);
+		RowSubscriber subscriber = new DataTable(table, page).createRowSubscriber(DataTable.HASHEADER);
+		new RowSource(100, new IOException("connection lost")).subscribe(subscriber);
+		try {
+			subscriber.await();
+		} finally {
+			Assert.assertTrue(subscriber.isDone());
+			doc.close();
+		}
+	}
+
+	// sends rows on its own thread as they are requested
+	private static final class RowSource implements RowSubscription {
+
+		private final int rows;
+
+		private final Exception failure;
+
+		private final List<Long> requests = new CopyOnWriteArrayList<>();
+
+		private long demand;
+
+		private long maxDemand;
+
+		private int sent;
+
+		private boolean cancelled;
+
+		private RowSubscriber subscriber;
+
+		RowSource(int rows, Exception failure) {
+			this.rows = rows;
+			this.failure = failure;
+		}
+
+		void subscribe(final RowSubscriber subscriber) {
+			this.subscriber = subscriber;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					subscriber.onSubscribe(RowSource.this);
+					send();
+				}
+			});
+			thread.start();
+		}
+
+		@Override
+		public synchronized void request(long n) {
+			requests.add(n);
+			demand += n;
+			maxDemand = Math.max(maxDemand, demand);
+			notifyAll();
+		}
+
+		@Override
+		public synchronized void cancel() {
+			cancelled = true;
+			notifyAll();
+		}
+
+		private void send() {
+			while (sent <= rows) {
+				synchronized (this) {
+					while (demand == 0 && !cancelled) {
+						try {
+							wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					if (cancelled) {
+						return;
+					}
+					demand--;
+				}
+				if (failure != null && sent == rows / 2) {
+					subscriber.onError(failure);
+					return;
+				}
+				subscriber.onNext(sent == 0 ? Arrays.asList("Id", "Name", "Amount")
+						: Arrays.asList(sent, "Item " + sent, sent * 1.5));
+				sent++;
+			}
+			subscriber.onComplete();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package be.quodlibet.boxable.layout;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.BaseTable;
+import be.quodlibet.boxable.Cell;
+import be.quodlibet.boxable.PdfAssert;
+import be.quodlibet.boxable.Row;
+
+public class ParallelLayoutTest {
+
+	private static final String TEXT = "Lorem ipsum dolor sit amet, <b>consectetur</b> adipiscing elit, sed do"
+			+ " <i>eiusmod</i> tempor incididunt ut labore et dolore magna aliqua. <ul><li>Ut enim</li>"
+			+ "<li>ad minim veniam</li></ul>";
+
+	@Test
+	public void testSameOutputAsSequentialLayout() throws IOException {
+		PDDocument sequentialDoc = createDocument(null);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		PDDocument parallelDoc = createDocument(pool);
+		pool.shutdown();
+
+		PdfAssert.assertSameContents(sequentialDoc, parallelDoc);
+		sequentialDoc.close();
+		parallelDoc.close();
+	}
+
+	@Test
+	public void testSharedFontsAreMeasuredBeforeForking() throws IOException {
+		PDDocument doc = new PDDocument();
+		BaseTable table = PdfAssert.createTable(doc);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		table.setLayoutPool(pool);
+		RecordingFont font = new RecordingFont();
+		for (int i = 0; i < 200; i++) {
+			Row<PDPage> row = table.createRow(10f);
+			row.createCell(100, TEXT.substring(0, 40 + i % (TEXT.length() - 40))).setFont(font);
+		}
+		table.draw();
+		pool.shutdown();
+
+		Assert.assertTrue(font.measured);
+		Assert.assertFalse("The shared font was measured by a worker", font.measuredByWorker);
+		doc.close();
+	}
+
+	private static PDDocument createDocument(ForkJoinPool pool) throws IOException {
+		PDDocument doc = new PDDocument();
+		BaseTable table = PdfAssert.createTable(doc);
+		table.setLayoutPool(pool);
+		// a font shared by all rows
+		PDFont font = new PDType1Font(Standard14Fonts.FontName.TIMES_ROMAN);
+
+		Row<PDPage> headerRow = table.createRow(15f);
+		headerRow.createCell(20, "Number");
+		headerRow.createCell(80, "Text");
+		table.addHeaderRow(headerRow);
+		for (int i = 0; i < 200; i++) {
+			Row<PDPage> row = table.createRow(10f);
+			row.createCell(20, String.valueOf(i));
+			Cell<PDPage> cell = row.createCell(80, TEXT.substring(0, 40 + i % (TEXT.length() - 40)));
+			if (i % 2 == 0) {
+				cell.setFont(font);
+			}
+		}
+		table.draw();
+		return doc;
+	}
+
+	private static final class RecordingFont extends PDType1Font {
+
+		private volatile boolean measured;
+
+		private volatile boolean measuredByWorker;
+
+		RecordingFont() {
+			super(Standard14Fonts.FontName.TIMES_ROMAN);
+		}
+
+		@Override
+		public float getStringWidth(String text) throws IOException {
+			measured = true;
+			if (Thread.currentThread() instanceof ForkJoinWorkerThread) {
+				measuredByWorker = true;
+			}
+			return super.getStringWidth(text);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package be.quodlibet.boxable.layout;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.BaseTable;
+import be.quodlibet.boxable.Cell;
+import be.quodlibet.boxable.CellContentDrawnListener;
+import be.quodlibet.boxable.Row;
+
+public class TablePlanTest {
+
+	@Test
+	public void testPlanMatchesDrawnTable() throws IOException {
+		final PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		BaseTable table = new BaseTable(300, 700, 50, 500, 50, doc, page, true, true);
+
+		final List<Integer> drawnPages = new ArrayList<>();
+		final List<Float> drawnPositions = new ArrayList<>();
+		CellContentDrawnListener<PDPage> listener = new CellContentDrawnListener<PDPage>() {
+			@Override
+			public void onContentDrawn(Cell<PDPage> cell, PDDocument document, PDPage page, PDRectangle rectangle) {
+				drawnPages.add(document.getPages().indexOf(page));
+				drawnPositions.add(rectangle.getUpperRightY());
+			}
+		};
+
+		for (int h = 0; h < 2; h++) {
+			Row<PDPage> headerRow = table.createRow(15f);
+			headerRow.createCell(30, "Header " + h);
+			headerRow.createCell(70, "Description");
+			table.addHeaderRow(headerRow);
+		}
+		for (int i = 0; i < 150; i++) {
+			Row<PDPage> row = table.createRow(10f);
+			row.createCell(30, String.valueOf(i));
+			row.createCell(70, i % 7 == 0 ? "A longer description that has to be wrapped over more than one line"
+					+ " inside of its cell" : "Row " + i);
+		}
+		// only the first cell of the first use of every row is recorded
+		for (Row<PDPage> row : table.getRows()) {
+			row.getCells().get(0).addContentDrawnListener(listener);
+		}
+
+		TablePlan plan = table.paginate();
+		Assert.assertFalse("Paginating changed the table", table.tableIsBroken());
+		TablePlan again = table.paginate();
+		Assert.assertEquals(plan.getPageCount(), again.getPageCount());
+
+		float yEnd = table.draw();
+
+		Assert.assertEquals(doc.getNumberOfPages(), plan.getPageCount());
+		Assert.assertEquals(yEnd, plan.getYEnd(), 0f);
+		int drawn = 0;
+		for (int i = 0; i < plan.getRowCount(); i++) {
+			if (i >= 2 && plan.getPage(plan.getPageOfRow(i)).getFirstRow() == i
+					&& plan.getPage(plan.getPageOfRow(i)).isHeaderRepeated()) {
+				// the repeated header rows were drawn before this row
+				drawn += 2;
+			}
+			Assert.assertEquals("Page of row " + i, drawnPages.get(drawn).intValue(), plan.getPageOfRow(i));
+			Assert.assertEquals("Position of row " + i, drawnPositions.get(drawn), plan.getRowY(i), 0f);
+			drawn++;
+		}
+		Assert.assertTrue(plan.getPage(1).isHeaderRepeated());
+		doc.close();
+	}
+}
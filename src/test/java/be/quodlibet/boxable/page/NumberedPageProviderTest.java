@@ -0,0 +1,86 @@
+package be.quodlibet.boxable.page;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.BaseTable;
+import be.quodlibet.boxable.Row;
+
+public class NumberedPageProviderTest {
+
+	@Test
+	public void testPageCountIsFilledAfterDrawing() throws IOException {
+		PDDocument doc = new PDDocument();
+		PageCountPlaceholder pageCount = new PageCountPlaceholder(doc,
+				new PDType1Font(Standard14Fonts.FontName.HELVETICA), 8);
+		NumberedPageProvider<PDPage> pageProvider = new NumberedPageProvider<>(
+				new DefaultPageProvider(doc, PDRectangle.LETTER), pageCount, "Page %d of ", 50, 20);
+		PDPage page = pageProvider.nextPage();
+		BaseTable table = new BaseTable(700, 700, 0, 50, 500, 50, doc, page, true, true, pageProvider);
+		for (int i = 0; i < 200; i++) {
+			Row<PDPage> row = table.createRow(10f);
+			row.createCell(30, String.valueOf(i));
+			row.createCell(70, "Row " + i);
+		}
+		table.draw();
+		pageProvider.finish();
+
+		int pages = doc.getNumberOfPages();
+		Assert.assertTrue(pages > 2);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		doc.save(out);
+		doc.close();
+
+		PDDocument saved = Loader.loadPDF(out.toByteArray());
+		PDFTextStripper stripper = new PDFTextStripper();
+		for (int i = 1; i <= pages; i++) {
+			stripper.setStartPage(i);
+			stripper.setEndPage(i);
+			Assert.assertTrue("Page " + i + " isn't numbered",
+					stripper.getText(saved).contains("Page " + i + " of " + pages));
+		}
+		saved.close();
+	}
+
+	@Test
+	public void testPagesAreNumberedByTheirPosition() throws IOException {
+		PDDocument doc = new PDDocument();
+		PDPage cover = new PDPage();
+		doc.addPage(cover);
+		doc.addPage(new PDPage());
+		PageCountPlaceholder pageCount = new PageCountPlaceholder(doc,
+				new PDType1Font(Standard14Fonts.FontName.HELVETICA), 8);
+		NumberedPageProvider<PDPage> pageProvider = new NumberedPageProvider<>(
+				new DefaultPageProvider(doc, PDRectangle.LETTER), pageCount, "Page %d of ", 50, 20);
+		pageProvider.nextPage();
+		pageProvider.nextPage();
+		pageProvider.previousPage();
+		pageProvider.createPage();
+		pageProvider.numberPage(cover);
+		pageProvider.finish();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		doc.save(out);
+		doc.close();
+
+		PDDocument saved = Loader.loadPDF(out.toByteArray());
+		Assert.assertEquals(5, saved.getNumberOfPages());
+		PDFTextStripper stripper = new PDFTextStripper();
+		for (int i = 1; i <= 5; i++) {
+			stripper.setStartPage(i);
+			stripper.setEndPage(i);
+			Assert.assertEquals("Page " + i, i == 2 ? "" : "Page " + i + " of 5", stripper.getText(saved).trim());
+		}
+		saved.close();
+	}
+}
@@ -0,0 +1,72 @@
+package be.quodlibet.boxable.text;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.HorizontalAlignment;
+import be.quodlibet.boxable.Paragraph;
+import be.quodlibet.boxable.utils.FontContext;
+
+public class LineBreakCacheTest {
+
+	private static final String TEXT = "Status: <b>shipped</b>, waiting for the customer to confirm the delivery";
+
+	@Test
+	public void testParagraphsShareLineBreaks() throws IOException {
+		PDDocument doc = new PDDocument();
+		FontContext context = new FontContext(doc);
+		LineBreakCache cache = new LineBreakCache(1 << 20);
+		context.setLineBreakCache(cache);
+
+		Paragraph first = paragraph(context, TEXT, 80);
+		Paragraph second = paragraph(context, TEXT, 80);
+		Assert.assertSame(first.getLines(), second.getLines());
+		Assert.assertEquals(first.getMaxLineWidth(), second.getMaxLineWidth(), 0);
+		Assert.assertEquals(first.getMapLineTokens(), second.getMapLineTokens());
+		Assert.assertEquals(0.5, cache.getHitRate(), 0);
+
+		Paragraph wider = paragraph(context, TEXT, 200);
+		Assert.assertNotEquals(first.getLines(), wider.getLines());
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(2, cache.getMissCount());
+
+		FontContext uncached = new FontContext(doc);
+		Assert.assertEquals(first.getLines(), paragraph(uncached, TEXT, 80).getLines());
+		doc.close();
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws IOException {
+		PDDocument doc = new PDDocument();
+		FontContext context = new FontContext(doc);
+		// room for two line breaks of the text
+		LineBreakCache cache = new LineBreakCache(2 * measure(context) + 1);
+		context.setLineBreakCache(cache);
+		paragraph(context, TEXT, 80).getLines();
+		paragraph(context, TEXT, 90).getLines();
+		paragraph(context, TEXT, 80).getLines();
+		paragraph(context, TEXT, 100).getLines();
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(1, cache.getEvictionCount());
+		Assert.assertTrue(cache.getEstimatedSize() <= cache.getMaxBytes());
+		// the text wrapped to 90 points was used least recently
+		paragraph(context, TEXT, 80).getLines();
+		Assert.assertEquals(2, cache.getHitCount());
+		doc.close();
+	}
+
+	private static long measure(FontContext context) {
+		LineBreakCache cache = new LineBreakCache(Long.MAX_VALUE);
+		context.setLineBreakCache(cache);
+		paragraph(context, TEXT, 80).getLines();
+		return cache.getEstimatedSize();
+	}
+
+	private static Paragraph paragraph(FontContext context, String text, float width) {
+		return new Paragraph(text, context.getFont(), 10, width, HorizontalAlignment.LEFT, null, null, null, 1,
+				context);
+	}
+}
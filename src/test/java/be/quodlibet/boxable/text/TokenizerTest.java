@@ -146,4 +146,25 @@ public class TokenizerTest {
 		}
 	
 	}
+
+	@Test
+	public void testBufferHoldsRangesOfTheText() throws Exception {
+		final String text = "1 <b>123</b><br/>45";
+		final TokenBuffer buffer = Tokenizer.tokenizeToBuffer(text, wrappingFunction);
+		Assert.assertEquals(Tokenizer.tokenize(text, wrappingFunction), buffer.getTokens());
+		Assert.assertEquals(TokenType.TEXT, buffer.getType(0));
+		Assert.assertEquals(0, buffer.getStart(0));
+		Assert.assertEquals(2, buffer.getEnd(0));
+		Assert.assertEquals(TokenType.OPEN_TAG, buffer.getType(2));
+		Assert.assertTrue(buffer.dataEquals(2, "b"));
+		Assert.assertSame(text, buffer.getChars(3));
+
+		// tokens which are not part of the text
+		final int padding = buffer.addPadding(1.5f);
+		final int ordering = buffer.add(TokenType.ORDERING, "1. ");
+		Assert.assertEquals(new Token(TokenType.PADDING, "1.5"), buffer.getToken(padding));
+		Assert.assertEquals(Token.text(TokenType.ORDERING, "1. "), buffer.getToken(ordering));
+		buffer.truncate(padding);
+		Assert.assertEquals(padding, buffer.size());
+	}
 }
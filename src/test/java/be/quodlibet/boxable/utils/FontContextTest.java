@@ -0,0 +1,94 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.BaseTable;
+import be.quodlibet.boxable.Cell;
+
+public class FontContextTest {
+
+	@Test
+	public void testDefaultFontsBelongToOneDocument() throws IOException {
+		PDDocument sansDoc = new PDDocument();
+		PDDocument doc = new PDDocument();
+		FontContext sansContext = new FontContext(sansDoc);
+		sansContext.setSansFontsAsDefault();
+		FontContext context = new FontContext(doc);
+
+		Assert.assertTrue(FontUtils.getDefaultfonts().isEmpty());
+		Assert.assertTrue(sansContext.hasDefaultFonts());
+		Assert.assertFalse(context.hasDefaultFonts());
+		Assert.assertSame(context.getStandardFont(Standard14Fonts.FontName.HELVETICA_BOLD), context.getFontBold());
+
+		Cell<PDPage> sansCell = createCell(sansDoc, sansContext);
+		Cell<PDPage> cell = createCell(doc, context);
+		Assert.assertSame(sansContext.getFont(), sansCell.getFont());
+		Assert.assertSame(sansContext.getFontItalic(), sansCell.getParagraph().getFont(false, true));
+		Assert.assertSame(context.getFont(), cell.getFont());
+		Assert.assertNotSame(sansCell.getFont(), cell.getFont());
+		sansDoc.close();
+		doc.close();
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testOwnDefaultFontsIgnoreStaticDefaultFonts() throws IOException {
+		PDDocument staticDoc = new PDDocument();
+		PDDocument doc = new PDDocument();
+		FontContext context = new FontContext(doc);
+		PDFont[] own = { context.getStandardFont(Standard14Fonts.FontName.TIMES_ROMAN),
+				context.getStandardFont(Standard14Fonts.FontName.TIMES_BOLD),
+				context.getStandardFont(Standard14Fonts.FontName.TIMES_ITALIC),
+				context.getStandardFont(Standard14Fonts.FontName.TIMES_BOLD_ITALIC) };
+		context.setDefaultFonts(own[0], own[1], own[2], own[3]);
+		try {
+			FontUtils.setSansFontsAsDefault(staticDoc);
+			PDFont[] sans = new FontContext(staticDoc).getDefaultFonts();
+			Assert.assertEquals(4, FontUtils.getDefaultfonts().size());
+			Assert.assertArrayEquals(own, context.getDefaultFonts());
+			Assert.assertSame(own[0], context.getFont());
+			Assert.assertSame(own[1], context.getFontBold());
+			Assert.assertSame(own[2], context.getFontItalic());
+			Assert.assertSame(own[3], context.getFontBoldItalic());
+			Assert.assertSame(own[0], createCell(doc, context).getFont());
+
+			FontUtils.addDefaultFonts(sans[3], sans[2], sans[1], sans[0]);
+			Assert.assertArrayEquals(own, context.getDefaultFonts());
+			Assert.assertSame(own[2], createCell(doc, context).getParagraph().getFont(false, true));
+		} finally {
+			FontUtils.clearDefaultFonts();
+			staticDoc.close();
+			doc.close();
+		}
+	}
+
+	@Test
+	public void testMetricsMatchFontUtils() throws IOException {
+		PDDocument doc = new PDDocument();
+		FontContext context = new FontContext(doc);
+		context.setSansFontsAsDefault();
+		PDFont[] fonts = { context.getFont(), context.getFontBold(),
+				context.getStandardFont(Standard14Fonts.FontName.TIMES_ROMAN) };
+		for (PDFont font : fonts) {
+			Assert.assertEquals(FontUtils.getHeight(font, 12), context.getHeight(font, 12), 0);
+			Assert.assertEquals(FontUtils.getAscent(font, 12), context.getAscent(font, 12), 0);
+			Assert.assertEquals(FontUtils.getDescent(font, 12), context.getDescent(font, 12), 0);
+		}
+		doc.close();
+	}
+
+	private static Cell<PDPage> createCell(PDDocument doc, FontContext context) throws IOException {
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		BaseTable table = new BaseTable(700, 700, 50, 500, 50, doc, page, true, true);
+		table.setFontContext(context);
+		return table.createRow(15f).createCell(100, "<i>text</i>");
+	}
+}
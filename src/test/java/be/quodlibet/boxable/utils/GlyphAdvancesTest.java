@@ -0,0 +1,47 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GlyphAdvancesTest {
+
+	private static final String[] TEXTS = { "Boxable", "The quick brown fox jumps over the lazy dog.",
+			"Ærøskøbing, naïve café", "Σωκράτης и Достоевский", "“quoted” – 10 €", "" };
+
+	@Test
+	public void testWidthsMatchPDFBox() throws IOException {
+		PDDocument doc = new PDDocument();
+		FontContext context = new FontContext(doc);
+		context.setSansFontsAsDefault();
+		PDFont[] fonts = { context.getFont(), context.getFontBold(), FontUtils.loadFont(doc, "fonts/FreeMono.ttf") };
+		for (PDFont font : fonts) {
+			GlyphAdvances advances = context.getGlyphAdvances(font);
+			Assert.assertSame(advances, context.getGlyphAdvances(font));
+			for (String text : TEXTS) {
+				Assert.assertEquals(font.getStringWidth(text), advances.getWidth(text), 0);
+				// measuring twice returns the cached widths
+				Assert.assertEquals(font.getStringWidth(text), advances.getWidth(text), 0);
+			}
+			Assert.assertEquals(font.getStringWidth("quick"), advances.getWidth("The quick fox", 4, 9), 0);
+		}
+		doc.close();
+	}
+
+	@Test
+	public void testMonospacedFonts() throws IOException {
+		PDDocument doc = new PDDocument();
+		FontContext context = new FontContext(doc);
+		PDFont courier = context.getStandardFont(Standard14Fonts.FontName.COURIER);
+		GlyphAdvances advances = context.getGlyphAdvances(courier);
+		Assert.assertTrue(advances.isMonospaced());
+		Assert.assertFalse(context.getGlyphAdvances(context.getFont()).isMonospaced());
+		Assert.assertEquals(courier.getStringWidth("monospaced text"), advances.getWidth("monospaced text"), 0);
+		Assert.assertEquals(courier.getStringWidth("naïve"), advances.getWidth("naïve"), 0);
+		doc.close();
+	}
+}
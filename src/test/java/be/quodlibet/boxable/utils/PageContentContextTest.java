@@ -0,0 +1,110 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.BaseTable;
+import be.quodlibet.boxable.PdfAssert;
+import be.quodlibet.boxable.Row;
+
+public class PageContentContextTest {
+
+	private static final String CAPTION = "Inner table caption";
+
+	private static final String INNER_TABLE = "<table><tr><th>Key</th><th>Value</th></tr>"
+			+ "<tr><td>first</td><td>1</td></tr><tr><td>second</td><td>2</td></tr></table>";
+
+	@Test
+	public void testTablesShareOneContentStream() throws IOException {
+		PDDocument doc = createDocument(false);
+		PDDocument sharedDoc = createDocument(true);
+
+		Assert.assertEquals(1, contentStreams(sharedDoc.getPage(0)));
+		Assert.assertTrue(contentStreams(doc.getPage(0)) > 4);
+
+		PdfAssert.assertSameRendering(doc, sharedDoc);
+		doc.close();
+		sharedDoc.close();
+	}
+
+	@Test
+	public void testTableCellDoesNotDrawWhileMeasured() throws IOException {
+		PDDocument doc = new PDDocument();
+		BaseTable table = PdfAssert.createTable(doc);
+		PDPage page = table.getCurrentPage();
+		Row<PDPage> row = table.createRow(10f);
+		row.createTableCell(100, INNER_TABLE, doc, page, 700, 50, 50);
+		row.getHeight();
+
+		Assert.assertEquals(0, contentStreams(page));
+		doc.close();
+	}
+
+	@Test
+	public void testTableCellCaptionIsDrawnOnce() throws IOException {
+		PDDocument doc = new PDDocument();
+		BaseTable table = PdfAssert.createTable(doc);
+		PDPage page = table.getCurrentPage();
+		Row<PDPage> row = table.createRow(10f);
+		row.createTableCell(100, INNER_TABLE.replace("<table>", "<table><caption>" + CAPTION + "</caption>"), doc,
+				page, 700, 50, 50);
+		row.getHeight();
+		// the caption only adds to the height while the cell is measured
+		Assert.assertEquals(0, contentStreams(page));
+
+		table.draw();
+		String text = new PDFTextStripper().getText(doc);
+		Assert.assertEquals(text.indexOf(CAPTION), text.lastIndexOf(CAPTION));
+		Assert.assertTrue(text.contains(CAPTION));
+		doc.close();
+	}
+
+	private static PDDocument createDocument(boolean shared) throws IOException {
+		PDDocument doc = new PDDocument();
+		PDPage page = new PDPage();
+		doc.addPage(page);
+		PageContentContext context = shared ? new PageContentContext(doc) : null;
+		float yStart = 750;
+		for (int t = 0; t < 4; t++) {
+			BaseTable table = new BaseTable(yStart, 750, 50, 240, 50 + (t % 2) * 260, doc, page, true, true);
+			table.setContentContext(context);
+			Row<PDPage> headerRow = table.createRow(15f);
+			headerRow.createCell(40, "Table " + t);
+			headerRow.createCell(60, "Value");
+			table.addHeaderRow(headerRow);
+			for (int i = 0; i < 5; i++) {
+				Row<PDPage> row = table.createRow(10f);
+				row.createCell(40, "Row " + i);
+				row.createCell(60, String.valueOf(t * i));
+			}
+			if (t == 3) {
+				Row<PDPage> row = table.createRow(10f);
+				row.createTableCell(100, INNER_TABLE, doc, page, 0, 50, 50);
+			}
+			float yEnd = table.draw();
+			if (t % 2 == 1) {
+				yStart = yEnd - 20;
+			}
+		}
+		if (context != null) {
+			context.close();
+		}
+		return doc;
+	}
+
+	private static int contentStreams(PDPage page) {
+		COSBase contents = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+		if (contents == null) {
+			return 0;
+		}
+		return contents instanceof COSArray ? ((COSArray) contents).size() : 1;
+	}
+}
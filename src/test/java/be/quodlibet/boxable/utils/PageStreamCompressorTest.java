@@ -0,0 +1,59 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.BaseTable;
+import be.quodlibet.boxable.PdfAssert;
+import be.quodlibet.boxable.Row;
+
+public class PageStreamCompressorTest {
+
+	@Test
+	public void testSameDocumentAsSequentialCompression() throws IOException {
+		byte[] sequential = createDocument(null);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		byte[] parallel = createDocument(executor);
+		executor.shutdown();
+
+		Assert.assertArrayEquals(sequential, parallel);
+	}
+
+	private static byte[] createDocument(ExecutorService executor) throws IOException {
+		PDDocument doc = new PDDocument();
+		BaseTable table = PdfAssert.createTable(doc);
+		table.setContentStreamExecutor(executor);
+
+		Row<PDPage> headerRow = table.createRow(15f);
+		headerRow.createCell(30, "Number");
+		headerRow.createCell(70, "Description");
+		table.addHeaderRow(headerRow);
+		for (int i = 0; i < 500; i++) {
+			Row<PDPage> row = table.createRow(10f);
+			row.createCell(30, String.valueOf(i));
+			row.createCell(70, "Description of row <b>" + i + "</b>");
+		}
+		table.draw();
+		Assert.assertTrue(doc.getNumberOfPages() > 5);
+
+		// the generated document ID depends on the time of saving
+		COSArray id = new COSArray();
+		id.add(new COSString("boxable"));
+		id.add(new COSString("boxable"));
+		doc.getDocument().getTrailer().setItem(COSName.ID, id);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		doc.save(out);
+		doc.close();
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,96 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TrueTypeFontCacheTest {
+
+	@Test
+	public void testFontIsParsedOnceForAllDocuments() throws IOException {
+		TrueTypeFontCache cache = new TrueTypeFontCache(4L << 20);
+		PDDocument first = new PDDocument();
+		PDDocument second = new PDDocument();
+		PDType0Font firstFont = cache.load(first, "fonts/FreeSans.ttf");
+		PDType0Font secondFont = cache.load(second, "fonts/FreeSans.ttf");
+
+		Assert.assertNotSame(firstFont, secondFont);
+		Assert.assertEquals(firstFont.getStringWidth("Boxable"), secondFont.getStringWidth("Boxable"), 0);
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.size());
+		first.close();
+		second.close();
+	}
+
+	@Test
+	public void testLeastRecentlyUsedFontIsEvicted() throws IOException {
+		// room for FreeSans and one of the smaller fonts
+		TrueTypeFontCache cache = new TrueTypeFontCache(2500000);
+		TrueTypeFont sans = cache.getClasspathFont("fonts/FreeSans.ttf");
+		cache.getClasspathFont("fonts/FreeSansBold.ttf");
+		Assert.assertSame(sans, cache.getClasspathFont("fonts/FreeSans.ttf"));
+		cache.getClasspathFont("fonts/FreeSansOblique.ttf");
+
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(1, cache.getEvictionCount());
+		Assert.assertSame(sans, cache.getClasspathFont("fonts/FreeSans.ttf"));
+		Assert.assertEquals(2, cache.getHitCount());
+		Assert.assertEquals(3, cache.getMissCount());
+	}
+
+	@Test
+	public void testFontsLargerThanTheCacheAreNotCached() throws IOException {
+		TrueTypeFontCache cache = new TrueTypeFontCache(1000000);
+		TrueTypeFont sans = cache.getClasspathFont("fonts/FreeSans.ttf");
+		Assert.assertEquals("FreeSans", sans.getName());
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.getByteCount());
+
+		cache.getClasspathFont("fonts/FreeSansBold.ttf");
+		Assert.assertEquals(1, cache.size());
+		Assert.assertTrue(cache.getByteCount() > 0);
+		Assert.assertTrue(cache.getByteCount() <= cache.getMaxBytes());
+	}
+
+	@Test
+	public void testFontFilesAreCached() throws IOException {
+		Path file = Files.createTempFile("boxable", ".ttf");
+		try {
+			copyFont("fonts/FreeSans.ttf", file);
+			TrueTypeFontCache cache = new TrueTypeFontCache(4L << 20);
+			TrueTypeFont font = cache.getFont(file);
+			Assert.assertSame(font, cache.getFont(file));
+			Assert.assertEquals("FreeSans", font.getName());
+			long sansBytes = cache.getByteCount();
+
+			// a changed file replaces the cached font
+			copyFont("fonts/FreeSansBold.ttf", file);
+			Files.setLastModifiedTime(file,
+					FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 60000));
+			TrueTypeFont changed = cache.getFont(file);
+			Assert.assertEquals("FreeSansBold", changed.getName());
+			Assert.assertSame(changed, cache.getFont(file));
+			Assert.assertEquals(1, cache.size());
+			Assert.assertEquals(Files.size(file), cache.getByteCount());
+			Assert.assertTrue(cache.getByteCount() < sansBytes);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private void copyFont(String fontPath, Path file) throws IOException {
+		try (InputStream in = getClass().getClassLoader().getResourceAsStream(fontPath)) {
+			Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}